@@ -0,0 +1,200 @@
+package networkmetrics;
+
+import java.util.Arrays;
+
+/**
+ * A set of arcs between integer vertex ids, kept as one open addressing hash table of packed (source, target)
+ * longs with linear probing. A membership test hashes the pair once and usually reads a single cache line,
+ * instead of following the boxed keys and nested HashMaps of a HashMapGraph. Removal uses backward shift
+ * deletion, so the table never fills with tombstones.
+ *
+ * The table can be fronted by a blocked Bloom filter: every arc sets a few bits inside one 512 bit block, so
+ * a test for an absent arc usually ends after one block read in a structure that is eight times smaller than the
+ * table. Removed arcs cannot be cleared from the filter; it is rebuilt from the table once the removals since
+ * the last rebuild exceed a quarter of the table slots, which keeps the rebuilds at constant amortized cost.
+ */
+public class ArcIndex {
+
+	private static final long   EMPTY          = -1;
+	private static final int    BLOOM_PROBES   = 4;
+	private static final int    BLOCK_WORDS    = 8;
+	private static final double MAX_LOAD       = 0.5;
+
+	private long[] table;
+	private int    mask;
+	private int    size;
+	private long[] bloom;
+	private int    blockMask;
+	private int    staleBloom;
+
+	/**
+	 * Constructs an empty index.
+	 * @param bloomFilter TRUE to front the table with a blocked Bloom filter
+	 */
+	public ArcIndex(boolean bloomFilter){
+		table = new long[16];
+		mask  = table.length - 1;
+		Arrays.fill(table, EMPTY);
+		if(bloomFilter) rebuildBloom();
+	}
+
+	private static long key(int source, int target){
+		return ((long) source << 32) | (target & 0xffffffffL);
+	}
+
+	/**
+	 * The MurmurHash3 finalizer, so that the low bits of the hash depend on both ids.
+	 */
+	private static long hash(long key){
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	private void setBloom(long hash){
+		int  block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+		long bits  = hash * 0x9e3779b97f4a7c15L;
+		for(int i = 0; i < BLOOM_PROBES; i++, bits >>>= 9){
+			int bit = (int) bits & 511;
+			bloom[block + (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private boolean testBloom(long hash){
+		int  block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+		long bits  = hash * 0x9e3779b97f4a7c15L;
+		for(int i = 0; i < BLOOM_PROBES; i++, bits >>>= 9){
+			int bit = (int) bits & 511;
+			if((bloom[block + (bit >>> 6)] & (1L << bit)) == 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sizes the filter to 8 bits per table slot, 16 per arc at the largest load, and fills it from the table.
+	 */
+	private void rebuildBloom(){
+		int blocks = Math.max(1, table.length / 64);
+		bloom      = new long[blocks * BLOCK_WORDS];
+		blockMask  = blocks - 1;
+		staleBloom = 0;
+		for(long key : table) if(key != EMPTY) setBloom(hash(key));
+	}
+
+	/**
+	 * Returns TRUE if the index holds an arc.
+	 * @param source the source id
+	 * @param target the target id
+	 * @return TRUE if the arc is in the index
+	 */
+	public boolean contains(int source, int target){
+		long key  = key(source, target);
+		long hash = hash(key);
+		if(bloom != null && !testBloom(hash)) return false;
+
+		for(int i = (int) hash & mask; ; i = (i + 1) & mask){
+			if(table[i] == key)   return true;
+			if(table[i] == EMPTY) return false;
+		}
+	}
+
+	/**
+	 * Adds an arc.
+	 * @param source the source id, not negative
+	 * @param target the target id, not negative
+	 * @return FALSE if the arc was already in the index
+	 */
+	public boolean add(int source, int target){
+		if(source < 0 || target < 0) throw new IllegalArgumentException();
+
+		if(size + 1 > table.length * MAX_LOAD) resize(table.length * 2);
+
+		long key  = key(source, target);
+		long hash = hash(key);
+		int  i    = (int) hash & mask;
+		for(; table[i] != EMPTY; i = (i + 1) & mask){
+			if(table[i] == key) return false;
+		}
+		table[i] = key;
+		size++;
+		if(bloom != null) setBloom(hash);
+		return true;
+	}
+
+	/**
+	 * Removes an arc.
+	 * @param source the source id
+	 * @param target the target id
+	 * @return FALSE if the arc was not in the index
+	 */
+	public boolean remove(int source, int target){
+		long key = key(source, target);
+		int  i   = (int) hash(key) & mask;
+		for(; table[i] != key; i = (i + 1) & mask){
+			if(table[i] == EMPTY) return false;
+		}
+
+		// shift back the entries of the probe run that would no longer be reachable past the hole
+		table[i] = EMPTY;
+		for(int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask){
+			int home = (int) hash(table[j]) & mask;
+			boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if(reachable) continue;
+
+			table[i] = table[j];
+			table[j] = EMPTY;
+			i = j;
+		}
+		size--;
+
+		if(bloom != null && ++staleBloom > table.length / 4) rebuildBloom();
+		return true;
+	}
+
+	private void resize(int capacity){
+		long[] old = table;
+		table = new long[capacity];
+		mask  = capacity - 1;
+		Arrays.fill(table, EMPTY);
+		for(long key : old){
+			if(key == EMPTY) continue;
+
+			int i = (int) hash(key) & mask;
+			while(table[i] != EMPTY) i = (i + 1) & mask;
+			table[i] = key;
+		}
+		if(bloom != null) rebuildBloom();
+	}
+
+	/**
+	 * Counts the arcs whose reverse arc is also in the index, a self loop counting as its own reverse, with one
+	 * sequential pass over the table and one probe per arc.
+	 * @return the number of reciprocated arcs
+	 */
+	public int reciprocated(){
+		int count = 0;
+		for(long key : table){
+			if(key != EMPTY && contains((int) key, (int) (key >>> 32))) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of arcs in the index.
+	 * @return the number of arcs
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Returns the memory taken by the table and the filter.
+	 * @return the size in bytes
+	 */
+	public long byteSize(){
+		return 8L * table.length + (bloom == null ? 0 : 8L * bloom.length);
+	}
+}
@@ -0,0 +1,370 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One worker process of a DistributedBfs. The worker owns the vertices whose key hashes to its partition and
+ * keeps only their out-arcs. It reads the whole graph file to number the vertices in file order, the same way in
+ * every worker, but it never holds the arcs of the other partitions.
+ *
+ * The workers are connected to each other by one socket per ordered pair. In every level of a search, a worker
+ * expands the frontier vertices it owns, keeps the targets it owns and sends each other target, once per
+ * search, to the worker that owns it, in batches of at most BATCH ids. It then merges the ids the other workers
+ * sent it and tells the coordinator how many new vertices it found and how much it sent.
+ *
+ * Usage: java networkmetrics.BfsWorker --coordinator=HOST:PORT --partition=P --partitions=K FILE
+ * (the coordinator normally starts its workers itself).
+ */
+public class BfsWorker {
+
+	static final int  BATCH  = 1 << 13;
+	static final byte SOURCE = 1;
+	static final byte LEVEL  = 2;
+	static final byte STOP   = 0;
+	static final byte READY  = 3;
+
+	private final int partition;
+	private final int partitions;
+
+	private int      n;
+	private int[]    owner;
+	private int[]    offsets;
+	private int[]    targets;
+	private long     arcs;
+
+	private long[] visited;
+	private long[] sent;
+	private int[]  frontier;
+	private int    frontierSize;
+	private int[]  next;
+	private int    nextSize;
+	private int[]  touched;
+	private int    touchedSize;
+	private int[]  sentIds;
+	private int    sentSize;
+
+	private DataOutputStream[]      peersOut;
+	private BlockingQueue<int[]>[]  inboxes;
+
+	/**
+	 * Constructs the worker of one partition.
+	 * @param partition the partition of this worker
+	 * @param partitions the number of partitions
+	 */
+	public BfsWorker(int partition, int partitions){
+		if(partitions < 1 || partition < 0 || partition >= partitions) throw new IllegalArgumentException();
+
+		this.partition  = partition;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * Returns the partition that owns a vertex key.
+	 * @param key the vertex key
+	 * @param partitions the number of partitions
+	 * @return the partition
+	 */
+	static int partitionOf(String key, int partitions){
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return Math.floorMod(h, partitions);
+	}
+
+	/**
+	 * Reads the vertices of a graph file and the out-arcs of the owned vertices into a CSR over the global ids.
+	 * Duplicate arcs are dropped.
+	 * @param file the graph file, in any GraphReader format
+	 * @throws IOException if the file cannot be read
+	 */
+	public void load(File file) throws IOException{
+		final HashMap<String,Integer> ids = new HashMap<String,Integer>();
+		final String[][] names  = { new String[1024] };
+		final long[][]   packed = { new long[1024] };
+		final int[]      fill   = new int[1];
+
+		GraphReader.read(file, new GraphSink(){
+			public void vertexProperties(String[] properties){}
+
+			public void vertex(String[] fields){
+				id(fields[0]);
+			}
+
+			public void arcProperties(String[] properties){}
+
+			public void arc(String[] fields){
+				int s = id(fields[0]), t = id(fields[1]);
+				if(partitionOf(fields[0], partitions) != partition) return;
+
+				if(fill[0] == packed[0].length) packed[0] = Arrays.copyOf(packed[0], fill[0] * 2);
+				packed[0][fill[0]++] = ((long) s << 32) | t;
+			}
+
+			private int id(String key){
+				Integer id = ids.get(key);
+				if(id != null) return id;
+
+				int v = ids.size();
+				if(v == names[0].length) names[0] = Arrays.copyOf(names[0], v * 2);
+				names[0][v] = key;
+				ids.put(key, v);
+				return v;
+			}
+		});
+
+		n     = ids.size();
+		owner = new int[n];
+		for(int v = 0; v < n; v++) owner[v] = partitionOf(names[0][v], partitions);
+
+		long[] arcs = packed[0];
+		Arrays.sort(arcs, 0, fill[0]);
+		offsets = new int[n + 1];
+		targets = new int[fill[0]];
+		int m = 0;
+		for(int i = 0; i < fill[0]; i++){
+			if(i > 0 && arcs[i] == arcs[i - 1]) continue;
+			offsets[(int) (arcs[i] >>> 32) + 1]++;
+			targets[m++] = (int) arcs[i];
+		}
+		for(int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+		targets   = Arrays.copyOf(targets, m);
+		this.arcs = m;
+
+		visited  = new long[(n + 63) >>> 6];
+		sent     = new long[(n + 63) >>> 6];
+		frontier = new int[16];
+		next     = new int[16];
+		touched  = new int[16];
+		sentIds  = new int[16];
+	}
+
+	/**
+	 * Connects to the coordinator, joins the mesh of workers and answers commands until told to stop.
+	 * @param host the coordinator host
+	 * @param port the coordinator port
+	 * @throws IOException if a connection fails
+	 */
+	public void serve(String host, int port) throws IOException{
+		ServerSocket listener = new ServerSocket(0);
+		Socket coordinator = new Socket(host, port);
+		coordinator.setTcpNoDelay(true);
+		DataInputStream  in  = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+		try{
+			out.writeInt(partition);
+			out.writeInt(listener.getLocalPort());
+			out.writeInt(n);
+			out.writeLong(arcs);
+			out.flush();
+
+			String[] hosts = new String[partitions];
+			int[]    ports = new int[partitions];
+			for(int p = 0; p < partitions; p++){
+				hosts[p] = in.readUTF();
+				ports[p] = in.readInt();
+			}
+
+			// one outgoing socket to every other worker; the incoming ones are read by one thread each
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			BlockingQueue<int[]>[] queues = new BlockingQueue[partitions];
+			peersOut = new DataOutputStream[partitions];
+			inboxes  = queues;
+			for(int p = 0; p < partitions; p++){
+				if(p == partition) continue;
+				inboxes[p] = new LinkedBlockingQueue<int[]>();
+				Socket peer = new Socket(hosts[p], ports[p]);
+				peer.setTcpNoDelay(true);
+				peersOut[p] = new DataOutputStream(new BufferedOutputStream(peer.getOutputStream(), 1 << 16));
+				peersOut[p].writeInt(partition);
+				peersOut[p].flush();
+			}
+			for(int i = 0; i < partitions - 1; i++) receive(listener.accept());
+			listener.close();
+
+			out.writeByte(READY);
+			out.flush();
+
+			while(true){
+				byte command = in.readByte();
+				if(command == STOP) break;
+
+				if(command == SOURCE) start(in.readInt());
+				else                  level(out);
+			}
+		}
+		finally{
+			for(DataOutputStream peer : peersOut == null ? new DataOutputStream[0] : peersOut){
+				if(peer != null) peer.close();
+			}
+			coordinator.close();
+		}
+	}
+
+	/**
+	 * Starts a daemon thread that reads the batches of one incoming peer and queues every level's ids as one
+	 * array.
+	 */
+	private void receive(Socket socket) throws IOException{
+		socket.setTcpNoDelay(true);
+		final DataInputStream in   = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+		final int             peer = in.readInt();
+		Thread reader = new Thread("peer-" + peer){
+			public void run(){
+				try{
+					while(true){
+						int[] ids = new int[0];
+						for(int count = in.readInt(); count > 0; count = in.readInt()){
+							int size = ids.length;
+							ids = Arrays.copyOf(ids, size + count);
+							for(int i = 0; i < count; i++) ids[size + i] = in.readInt();
+						}
+						inboxes[peer].put(ids);
+					}
+				}
+				catch(IOException e){
+					// the peer closed its socket at the end of the run
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Clears the marks of the last search and puts the source in the frontier if this worker owns it.
+	 */
+	private void start(int source){
+		for(int i = 0; i < touchedSize; i++) visited[touched[i] >>> 6] = 0;
+		for(int i = 0; i < sentSize; i++)    sent[sentIds[i] >>> 6]    = 0;
+		touchedSize  = 0;
+		sentSize     = 0;
+		frontierSize = 0;
+		if(owner[source] == partition){
+			visit(source);
+			frontier[0]  = source;
+			frontierSize = 1;
+			nextSize     = 0;
+		}
+	}
+
+	private void visit(int v){
+		visited[v >>> 6] |= 1L << v;
+		if(touchedSize == touched.length) touched = Arrays.copyOf(touched, touchedSize * 2);
+		touched[touchedSize++] = v;
+	}
+
+	private void discover(int v){
+		if((visited[v >>> 6] & (1L << v)) != 0) return;
+
+		visit(v);
+		if(nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+		next[nextSize++] = v;
+	}
+
+	/**
+	 * Runs one level: expands the owned frontier, exchanges the remote targets with the other workers and
+	 * reports the vertices found, the ids, batches and bytes sent to the coordinator. Every batch has a 4 byte
+	 * count, and the ids a worker sends another in one level end with a 4 byte zero count.
+	 */
+	private void level(DataOutputStream coordinator) throws IOException{
+		int[][] outgoing = new int[partitions][];
+		int[]   counts   = new int[partitions];
+		nextSize = 0;
+
+		for(int i = 0; i < frontierSize; i++){
+			int v = frontier[i];
+			for(int a = offsets[v]; a < offsets[v + 1]; a++){
+				int t = targets[a], p = owner[t];
+				if(p == partition){
+					discover(t);
+					continue;
+				}
+				if((sent[t >>> 6] & (1L << t)) != 0) continue;
+
+				sent[t >>> 6] |= 1L << t;
+				if(sentSize == sentIds.length) sentIds = Arrays.copyOf(sentIds, sentSize * 2);
+				sentIds[sentSize++] = t;
+				if(outgoing[p] == null) outgoing[p] = new int[16];
+				else if(counts[p] == outgoing[p].length) outgoing[p] = Arrays.copyOf(outgoing[p], counts[p] * 2);
+				outgoing[p][counts[p]++] = t;
+			}
+		}
+
+		long ids = 0, batches = 0;
+		for(int p = 0; p < partitions; p++){
+			if(p == partition) continue;
+
+			DataOutputStream peer = peersOut[p];
+			for(int from = 0; from < counts[p]; from += BATCH){
+				int count = Math.min(BATCH, counts[p] - from);
+				peer.writeInt(count);
+				for(int i = from; i < from + count; i++) peer.writeInt(outgoing[p][i]);
+				batches++;
+			}
+			peer.writeInt(0);
+			peer.flush();
+			ids += counts[p];
+		}
+
+		try{
+			for(int p = 0; p < partitions; p++){
+				if(p == partition) continue;
+				for(int t : inboxes[p].take()) discover(t);
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted");
+		}
+
+		int[] swap = frontier;
+		frontier     = next;
+		frontierSize = nextSize;
+		next         = swap;
+
+		coordinator.writeByte(LEVEL);
+		coordinator.writeInt(frontierSize);
+		coordinator.writeLong(ids);
+		coordinator.writeLong(batches);
+		coordinator.writeLong(4 * (ids + batches + partitions - 1));
+		coordinator.flush();
+	}
+
+	public static void main(String[] args){
+		String coordinator = null, file = null;
+		int partition = -1, partitions = -1;
+		for(String arg : args){
+			if(arg.startsWith("--coordinator="))     coordinator = arg.substring("--coordinator=".length());
+			else if(arg.startsWith("--partition="))  partition   = Integer.parseInt(arg.substring("--partition=".length()));
+			else if(arg.startsWith("--partitions=")) partitions  = Integer.parseInt(arg.substring("--partitions=".length()));
+			else                                      file        = arg;
+		}
+		if(coordinator == null || file == null || partition < 0 || partitions < 1){
+			System.out.println("Usage: BfsWorker --coordinator=HOST:PORT --partition=P --partitions=K FILE");
+			return;
+		}
+
+		try{
+			BfsWorker worker = new BfsWorker(partition, partitions);
+			worker.load(new File(file));
+			int colon = coordinator.lastIndexOf(':');
+			worker.serve(coordinator.substring(0, colon), Integer.parseInt(coordinator.substring(colon + 1)));
+		}
+		catch(IOException o){ System.out.println("ERROR: worker " + partition + ": " + o.getMessage()); }
+	}
+}
@@ -0,0 +1,244 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of a Graph with the vertices relabelled to dense int ids 0..|V|-1 and both adjacency
+ * directions stored as sorted compressed sparse row arrays. The traversal heavy metrics run on this form so that
+ * the inner loops touch only int arrays instead of HashMaps and annotations.
+ *
+ * The snapshot is taken through the Graph interface, so it reflects the graph as it is seen at the time of the
+ * call, including a transposed graph.
+ *
+ * @param <Key> the vertex keys of the graph the snapshot was taken from
+ */
+public class CompactGraph<Key extends Comparable<Key>> {
+
+	final Object[]             keys;
+	final HashMap<Key,Integer> ids;
+	final int[]                outOffsets;
+	final int[]                outTargets;
+	final int[]                inOffsets;
+	final int[]                inSources;
+
+	/**
+	 * Constructs a snapshot from out-adjacency arrays. The neighbour lists are sorted and the in-adjacency
+	 * arrays are derived from them.
+	 */
+	CompactGraph(Object[] keys, HashMap<Key,Integer> ids, int[] outOffsets, int[] outTargets){
+		this.keys       = keys;
+		this.ids        = ids;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+
+		int n = keys.length;
+		for(int v = 0; v < n; v++)
+			Arrays.sort(outTargets, outOffsets[v], outOffsets[v + 1]);
+
+		inOffsets = new int[n + 1];
+		inSources = new int[outTargets.length];
+
+		for(int i = 0; i < outTargets.length; i++)
+			inOffsets[outTargets[i] + 1]++;
+		for(int v = 0; v < n; v++)
+			inOffsets[v + 1] += inOffsets[v];
+
+		// sources are visited in increasing order, so every in-list comes out sorted
+		int[] next = Arrays.copyOf(inOffsets, n);
+		for(int v = 0; v < n; v++){
+			for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++)
+				inSources[next[outTargets[i]]++] = v;
+		}
+	}
+
+	/**
+	 * Takes a compact snapshot of a graph.
+	 * @param graph the graph to copy
+	 * @return the compact snapshot
+	 */
+	public static <Key extends Comparable<Key>> CompactGraph<Key> of(Graph<Key,?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		int n = graph.vertexCount();
+		Object[]             keys = new Object[n];
+		HashMap<Key,Integer> ids  = new HashMap<Key,Integer>(n * 2);
+
+		Iterator<Key> vertices = graph.vertices();
+		int id = 0;
+		while(vertices.hasNext()){
+			Key key = vertices.next();
+			keys[id] = key;
+			ids.put(key, id++);
+		}
+
+		int[] offsets = new int[n + 1];
+		for(int v = 0; v < n; v++)
+			offsets[v + 1] = offsets[v] + graph.outDegree(key(keys, v));
+
+		int[] targets = new int[offsets[n]];
+		for(int v = 0; v < n; v++){
+			int i = offsets[v];
+			Key key = key(keys, v);
+			Iterator<ArrayList<Key>> out = graph.outAdjacentVertices(key);
+			while(out.hasNext())
+				targets[i++] = ids.get(neighbour(out.next(), key));
+		}
+
+		return new CompactGraph<Key>(keys, ids, offsets, targets);
+	}
+
+	/**
+	 * Returns the other end of an arc listed by an adjacency iterator of vertex, or vertex itself for a loop.
+	 * A transposed HashMapGraph lists its arcs in the stored direction, so the position in the list cannot
+	 * be relied on.
+	 * @param arc the arc, source first
+	 * @param vertex the vertex whose neighbours are iterated
+	 * @return the neighbour
+	 */
+	static <Key> Key neighbour(ArrayList<Key> arc, Key vertex){
+		Key first = arc.get(0);
+		return first.equals(vertex) ? arc.get(1) : first;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <Key> Key key(Object[] keys, int id){
+		return (Key) keys[id];
+	}
+
+	/**
+	 * Returns the snapshot of an induced subgraph of the graph this snapshot was taken of, such as a
+	 * SubgraphView, straight from the arrays of this snapshot instead of through the Graph interface of the
+	 * view. The vertices keep their relative order.
+	 * @param view the induced subgraph; every vertex must be in this snapshot
+	 * @return the snapshot of the subgraph
+	 */
+	public CompactGraph<Key> induced(Graph<Key,?> view){
+		if(view == null) throw new NullPointerException();
+
+		int n = keys.length;
+		boolean[] member = new boolean[n];
+		Iterator<Key> vertices = view.vertices();
+		while(vertices.hasNext()){
+			int v = id(vertices.next());
+			if(v == -1) throw new NoSuchElementException();
+			member[v] = true;
+		}
+
+		int[] rank  = new int[n];
+		int   count = 0, arcs = 0;
+		for(int v = 0; v < n; v++){
+			rank[v] = member[v] ? count++ : -1;
+			if(!member[v]) continue;
+			for(int a = outOffsets[v]; a < outOffsets[v + 1]; a++) if(member[outTargets[a]]) arcs++;
+		}
+
+		Object[]             inducedKeys = new Object[count];
+		HashMap<Key,Integer> inducedIds  = new HashMap<Key,Integer>(count * 2);
+		int[]                offsets     = new int[count + 1];
+		int[]                targets     = new int[arcs];
+		for(int v = 0, i = 0; v < n; v++){
+			int r = rank[v];
+			if(r == -1) continue;
+			inducedKeys[r] = keys[v];
+			inducedIds.put(key(keys, v), r);
+			for(int a = outOffsets[v]; a < outOffsets[v + 1]; a++) if(member[outTargets[a]]) targets[i++] = rank[outTargets[a]];
+			offsets[r + 1] = i;
+		}
+		return new CompactGraph<Key>(inducedKeys, inducedIds, offsets, targets);
+	}
+
+	/**
+	 * Returns a copy of the snapshot with the vertices relabelled, for example by a VertexOrdering.
+	 * @param rank the new id of every vertex, indexed by its current id; a permutation of 0..|V|-1
+	 * @return the relabelled snapshot
+	 */
+	public CompactGraph<Key> permute(int[] rank){
+		int n = keys.length;
+		if(rank == null) throw new NullPointerException();
+
+		if(rank.length != n) throw new IllegalArgumentException();
+
+		Object[]             permutedKeys = new Object[n];
+		HashMap<Key,Integer> permutedIds  = new HashMap<Key,Integer>(n * 2);
+		boolean[]            seen         = new boolean[n];
+		int[]                order        = new int[n];
+		for(int v = 0; v < n; v++){
+			int r = rank[v];
+			if(r < 0 || r >= n || seen[r]) throw new IllegalArgumentException("Not a permutation");
+			seen[r]  = true;
+			order[r] = v;
+			permutedKeys[r] = keys[v];
+			permutedIds.put(key(keys, v), r);
+		}
+
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[outTargets.length];
+		for(int r = 0; r < n; r++){
+			int v = order[r], i = offsets[r];
+			for(int a = outOffsets[v]; a < outOffsets[v + 1]; a++) targets[i++] = rank[outTargets[a]];
+			offsets[r + 1] = i;
+		}
+		return new CompactGraph<Key>(permutedKeys, permutedIds, offsets, targets);
+	}
+
+	/**
+	 * Returns the number of vertices |V|.
+	 * @return the number of vertices |V|
+	 */
+	public int vertexCount(){
+		return keys.length;
+	}
+
+	/**
+	 * Returns the number of arcs |A|.
+	 * @return the number of arcs |A|
+	 */
+	public int arcCount(){
+		return outTargets.length;
+	}
+
+	/**
+	 * Returns the key of the vertex with the given id.
+	 * @param id the dense id
+	 * @return the vertex key
+	 */
+	public Key key(int id){
+		if(id < 0 || id >= keys.length) throw new NoSuchElementException();
+
+		return key(keys, id);
+	}
+
+	/**
+	 * Returns the dense id of a vertex, or -1 if the snapshot does not contain it.
+	 * @param key the vertex key
+	 * @return the dense id or -1
+	 */
+	public int id(Key key){
+		if(key == null) throw new NullPointerException();
+
+		Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the number of arcs outgoing from v.
+	 * @param v the dense id
+	 * @return the out-degree of v
+	 */
+	public int outDegree(int v){
+		return outOffsets[v + 1] - outOffsets[v];
+	}
+
+	/**
+	 * Returns the number of arcs incoming to v.
+	 * @param v the dense id
+	 * @return the in-degree of v
+	 */
+	public int inDegree(int v){
+		return inOffsets[v + 1] - inOffsets[v];
+	}
+}
@@ -0,0 +1,594 @@
+package networkmetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * An immutable Graph that keeps its successor and predecessor lists compressed in byte arrays, in the manner of
+ * WebGraph. Every list is sorted and written as a header, holding its length and its reference, followed by
+ * variable length (7 bits per byte) gaps: the first neighbour relative to the vertex itself, every following
+ * neighbour relative to the one before.
+ *
+ * With reference compression a list may instead copy part of the list of one of the previous window vertices,
+ * which pays off when vertices with nearby ids have similar neighbours, as in crawls ordered by URL. The copied
+ * elements are given as alternating copy and skip block lengths over the referenced list, and only the remaining
+ * elements are gap coded. Reference chains are limited in length so that decoding a list stays cheap.
+ *
+ * Any list can be decoded on its own, so successors and predecessors are available by random access. Vertex and
+ * arc data and arc weights are not stored: the data is null and every weight is 1. A graph streamed from a file
+ * keeps the vertex columns as annotations, as VnaReader.load does. The encoded lists of one direction must fit
+ * in a single byte array (2 GB).
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data type of the Graph interface; always null here
+ */
+public class CompressedGraph<Key extends Comparable<Key>, Data> extends ReadOnlyGraph<Key, Data> {
+
+	/**
+	 * The default number of previous lists a list may refer to.
+	 */
+	public static final int DEFAULT_WINDOW = 7;
+
+	/**
+	 * The default bound on the length of a chain of references.
+	 */
+	public static final int DEFAULT_MAX_CHAIN = 3;
+
+	/**
+	 * A growable byte array written with variable length integers.
+	 */
+	private static final class Output {
+		private byte[] data = new byte[64];
+		private int    size;
+
+		void write(int x){
+			if(size + 5 > data.length){
+				if(data.length == Integer.MAX_VALUE - 8) throw new IllegalStateException("Compressed lists exceed 2 GB");
+				data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, data.length * 2L));
+			}
+			while((x & ~0x7f) != 0){
+				data[size++] = (byte) ((x & 0x7f) | 0x80);
+				x >>>= 7;
+			}
+			data[size++] = (byte) x;
+		}
+
+		void write(Output other){
+			if((long) size + other.size > Integer.MAX_VALUE - 8) throw new IllegalStateException("Compressed lists exceed 2 GB");
+			if(size + other.size > data.length)
+				data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(data.length * 2L, size + other.size)));
+			System.arraycopy(other.data, 0, data, size, other.size);
+			size += other.size;
+		}
+
+		void clear(){
+			size = 0;
+		}
+	}
+
+	/**
+	 * Reads variable length integers from a position of a byte array.
+	 */
+	private static final class Input {
+		private final byte[] data;
+		private int          position;
+
+		Input(byte[] data, int position){
+			this.data     = data;
+			this.position = position;
+		}
+
+		int read(){
+			int x = 0, shift = 0;
+			byte b;
+			do{
+				b = data[position++];
+				x |= (b & 0x7f) << shift;
+				shift += 7;
+			}while(b < 0);
+			return x;
+		}
+	}
+
+	/**
+	 * The compressed lists of one direction.
+	 */
+	private static final class Lists {
+		private final byte[] data;
+		private final int[]  offsets;
+		private final int    window;
+
+		Lists(byte[] data, int[] offsets, int window){
+			this.data    = data;
+			this.offsets = offsets;
+			this.window  = window;
+		}
+
+		int degree(int v){
+			return new Input(data, offsets[v]).read() / (window + 1);
+		}
+
+		int[] list(int v){
+			Input in        = new Input(data, offsets[v]);
+			int   header    = in.read();
+			int[] list      = new int[header / (window + 1)];
+			int   reference = header % (window + 1);
+			int[] copied    = new int[0];
+			int   copies    = 0;
+			if(reference > 0){
+				int[] referenced = list(v - reference);
+				int   blocks     = in.read();
+				copied = new int[list.length];
+				for(int b = 0, i = 0; b < blocks; b++){
+					int length = in.read();
+					if(b % 2 == 0) for(int j = 0; j < length; j++) copied[copies++] = referenced[i + j];
+					i += length;
+				}
+			}
+
+			// merge the copied elements with the gap coded residuals
+			int residuals = list.length - copies;
+			int next = residuals > 0 ? v + unzigzag(in.read()) : 0;
+			for(int k = 0, c = 0, r = 0; k < list.length; k++){
+				if(r < residuals && (c == copies || next < copied[c])){
+					list[k] = next;
+					if(++r < residuals) next += in.read() + 1;
+				}
+				else list[k] = copied[c++];
+			}
+			return list;
+		}
+
+		long byteSize(){
+			return data.length + 4L * offsets.length;
+		}
+	}
+
+	private final Object[]             keys;
+	private final HashMap<Key,Integer> ids;
+	private final int                  arcs;
+	private final Lists                successors;
+	private final Lists                predecessors;
+	private boolean                    transpose;
+
+	private CompressedGraph(Object[] keys, HashMap<Key,Integer> ids, int arcs, Lists successors, Lists predecessors){
+		this.keys         = keys;
+		this.ids          = ids;
+		this.arcs         = arcs;
+		this.successors   = successors;
+		this.predecessors = predecessors;
+	}
+
+	/**
+	 * Compresses a graph with the default reference window and chain length.
+	 * @param graph the graph to compress
+	 * @return the compressed graph
+	 */
+	public static <Key extends Comparable<Key>, Data> CompressedGraph<Key,Data> of(Graph<Key,?> graph){
+		return of(graph, DEFAULT_WINDOW, DEFAULT_MAX_CHAIN);
+	}
+
+	/**
+	 * Compresses a graph. Vertex ids follow the order of graph.vertices().
+	 * @param graph the graph to compress
+	 * @param window the number of previous lists a list may refer to; 0 turns reference compression off
+	 * @param maxChain the longest chain of references
+	 * @return the compressed graph
+	 */
+	public static <Key extends Comparable<Key>, Data> CompressedGraph<Key,Data> of(final Graph<Key,?> graph, int window, int maxChain){
+		if(graph == null) throw new NullPointerException();
+
+		if(window < 0 || maxChain < 1) throw new IllegalArgumentException();
+
+		int                        n    = graph.vertexCount();
+		final Object[]             keys = new Object[n];
+		final HashMap<Key,Integer> ids  = new HashMap<Key,Integer>(n * 2);
+		Iterator<Key> vertices = graph.vertices();
+		for(int v = 0; vertices.hasNext(); v++){
+			Key key = vertices.next();
+			keys[v] = key;
+			ids.put(key, v);
+		}
+
+		Lists successors = encode(n, window, maxChain, new IntFunction<int[]>(){
+			@SuppressWarnings("unchecked")
+			public int[] apply(int v){
+				return neighbours(graph.outAdjacentVertices((Key) keys[v]), (Key) keys[v], ids);
+			}
+		});
+		Lists predecessors = encode(n, window, maxChain, new IntFunction<int[]>(){
+			@SuppressWarnings("unchecked")
+			public int[] apply(int v){
+				return neighbours(graph.inAdjacentVertices((Key) keys[v]), (Key) keys[v], ids);
+			}
+		});
+		return new CompressedGraph<Key,Data>(keys, ids, graph.arcCount(), successors, predecessors);
+	}
+
+	private static <Key> int[] neighbours(Iterator<ArrayList<Key>> arcs, Key vertex, HashMap<Key,Integer> ids){
+		int[] list = new int[8];
+		int   size = 0;
+		while(arcs.hasNext()){
+			if(size == list.length) list = Arrays.copyOf(list, size * 2);
+			list[size++] = ids.get(CompactGraph.neighbour(arcs.next(), vertex));
+		}
+		list = Arrays.copyOf(list, size);
+		Arrays.sort(list);
+		return list;
+	}
+
+	/**
+	 * Streams a graph file straight into a compressed graph, with the default reference window and chain length.
+	 * The arcs are buffered as packed id pairs (8 bytes per arc) while the lists are built; duplicate ties are
+	 * dropped. The vertex columns other than the key become annotations named by the lower case column name.
+	 * @param file the graph file, in any GraphReader format
+	 * @return the compressed graph, with the vertex ids in file order
+	 * @throws IOException if the file cannot be read, is not a valid graph file or a tie names an unknown vertex
+	 */
+	public static CompressedGraph<String,Object> load(File file) throws IOException{
+		return load(file, DEFAULT_WINDOW, DEFAULT_MAX_CHAIN);
+	}
+
+	/**
+	 * Streams a graph file straight into a compressed graph.
+	 * @param file the graph file, in any GraphReader format
+	 * @param window the number of previous lists a list may refer to; 0 turns reference compression off
+	 * @param maxChain the longest chain of references
+	 * @return the compressed graph, with the vertex ids in file order
+	 * @throws IOException if the file cannot be read, is not a valid graph file or a tie names an unknown vertex
+	 */
+	public static CompressedGraph<String,Object> load(File file, int window, int maxChain) throws IOException{
+		if(file == null) throw new NullPointerException();
+
+		if(window < 0 || maxChain < 1) throw new IllegalArgumentException();
+
+		final ArrayList<String>       keys = new ArrayList<String>();
+		final HashMap<String,Integer> ids  = new HashMap<String,Integer>();
+		final long[][]                arcs = { new long[1 << 10] };
+		final int[]                   size = new int[1];
+		final String[][]              properties = { new String[0] };
+		final ArrayList<String[]>     columns    = new ArrayList<String[]>();
+
+		GraphReader.read(file, new GraphSink(){
+			public void vertexProperties(String[] names){
+				properties[0] = new String[names.length];
+				for(int i = 0; i < names.length; i++) properties[0][i] = names[i].toLowerCase();
+			}
+
+			public void vertex(String[] fields) throws IOException{
+				if(ids.containsKey(fields[0])) throw new IOException("Duplicate vertex: " + fields[0]);
+				ids.put(fields[0], keys.size());
+				keys.add(fields[0]);
+				if(fields.length > 1 && properties[0].length > 1) columns.add(fields);
+			}
+
+			public void arcProperties(String[] names){}
+
+			public void arc(String[] fields) throws IOException{
+				Integer source = ids.get(fields[0]), destination = ids.get(fields[1]);
+				if(source == null || destination == null) throw new IOException("Unknown vertex in tie: " + fields[0] + " " + fields[1]);
+
+				if(size[0] == arcs[0].length) arcs[0] = Arrays.copyOf(arcs[0], size[0] * 2);
+				arcs[0][size[0]++] = ExternalCsrBuilder.pack(source, destination);
+			}
+		});
+
+		int    n      = keys.size();
+		long[] packed = arcs[0];
+		int    m      = 0;
+		Arrays.sort(packed, 0, size[0]);
+		for(int i = 0; i < size[0]; i++)
+			if(m == 0 || packed[i] != packed[m - 1]) packed[m++] = packed[i];
+
+		Lists successors = encode(n, window, maxChain, ranges(packed, m));
+		for(int i = 0; i < m; i++) packed[i] = (packed[i] << 32) | (packed[i] >>> 32);
+		Arrays.sort(packed, 0, m);
+		Lists predecessors = encode(n, window, maxChain, ranges(packed, m));
+
+		CompressedGraph<String,Object> graph = new CompressedGraph<String,Object>(keys.toArray(), ids, m, successors, predecessors);
+		for(String[] fields : columns){
+			for(int i = 1; i < fields.length && i < properties[0].length; i++)
+				graph.setAnnotation(fields[0], properties[0][i], fields[i]);
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns the lists of sorted packed pairs, grouped by their high half. The lists must be asked for in
+	 * increasing vertex order, as encode does.
+	 */
+	private static IntFunction<int[]> ranges(final long[] packed, final int m){
+		return new IntFunction<int[]>(){
+			private int next;
+
+			public int[] apply(int v){
+				int start = next;
+				while(next < m && (int) (packed[next] >>> 32) == v) next++;
+				int[] list = new int[next - start];
+				for(int i = 0; i < list.length; i++) list[i] = (int) packed[start + i];
+				return list;
+			}
+		};
+	}
+
+	/**
+	 * Encodes the lists of vertices 0 to n-1, asked for in that order. For each list every reference within the
+	 * window that keeps the chain short enough is tried, and the shortest encoding is kept.
+	 */
+	private static Lists encode(int n, int window, int maxChain, IntFunction<int[]> adjacency){
+		Output  out       = new Output();
+		Output  best      = new Output();
+		Output  candidate = new Output();
+		int[]   offsets   = new int[n + 1];
+		int[][] recent    = new int[window + 1][];
+		int[]   chains    = new int[window + 1];
+
+		for(int v = 0; v < n; v++){
+			int[] list = adjacency.apply(v);
+			offsets[v] = out.size;
+
+			// the header is length * (window + 1) + reference, so a short list with a reference still takes one byte
+			int chain = 0;
+			best.clear();
+			best.write(list.length * (window + 1));
+			writeResiduals(best, v, list, null);
+
+			for(int r = 1; r <= window && r <= v && list.length > 0; r++){
+				int slot = (v - r) % (window + 1);
+				if(chains[slot] >= maxChain || recent[slot].length == 0) continue;
+
+				candidate.clear();
+				candidate.write(list.length * (window + 1) + r);
+				writeResiduals(candidate, v, list, recent[slot]);
+				if(candidate.size < best.size){
+					Output t = best; best = candidate; candidate = t;
+					chain = chains[slot] + 1;
+				}
+			}
+			out.write(best);
+
+			recent[v % (window + 1)] = list;
+			chains[v % (window + 1)] = chain;
+		}
+		offsets[n] = out.size;
+
+		return new Lists(Arrays.copyOf(out.data, out.size), offsets, window);
+	}
+
+	/**
+	 * Writes the copy blocks over a referenced list, if any, followed by the gap coded elements of list that are
+	 * not copied.
+	 */
+	private static void writeResiduals(Output out, int v, int[] list, int[] referenced){
+		boolean[] copied = new boolean[list.length];
+		if(referenced != null){
+			// alternating copy and skip run lengths over the referenced list, starting with a copy run
+			int[] blocks = new int[referenced.length + 1];
+			int   count  = 0, run = 0;
+			boolean copying = true;
+			for(int i = 0, j = 0; i < referenced.length; i++){
+				while(j < list.length && list[j] < referenced[i]) j++;
+				boolean copy = j < list.length && list[j] == referenced[i];
+				if(copy) copied[j] = true;
+				if(copy != copying){
+					blocks[count++] = run;
+					run = 0;
+					copying = copy;
+				}
+				run++;
+			}
+			if(copying) blocks[count++] = run;
+
+			out.write(count);
+			for(int b = 0; b < count; b++) out.write(blocks[b]);
+		}
+
+		int previous = -1;
+		for(int j = 0; j < list.length; j++){
+			if(copied[j]) continue;
+			out.write(previous == -1 ? zigzag(list[j] - v) : list[j] - previous - 1);
+			previous = list[j];
+		}
+	}
+
+	private static int zigzag(int x){
+		return (x << 1) ^ (x >> 31);
+	}
+
+	private static int unzigzag(int x){
+		return (x >>> 1) ^ -(x & 1);
+	}
+
+	/**
+	 * Returns the key of a vertex id.
+	 * @param id the vertex id, between 0 and vertexCount() - 1
+	 * @return the key
+	 */
+	@SuppressWarnings("unchecked")
+	public Key key(int id){
+		return (Key) keys[id];
+	}
+
+	/**
+	 * Returns the id of a vertex.
+	 * @param key the vertex key
+	 * @return the vertex id
+	 */
+	public int id(Key key){
+		if(key == null) throw new NullPointerException();
+
+		Integer id = ids.get(key);
+		if(id == null) throw new NoSuchElementException();
+		return id;
+	}
+
+	/**
+	 * Decodes the sorted successor ids of a vertex, as the graph is currently seen.
+	 * @param id the vertex id
+	 * @return a new array of successor ids
+	 */
+	public int[] successors(int id){
+		return (!transpose ? successors : predecessors).list(id);
+	}
+
+	/**
+	 * Decodes the sorted predecessor ids of a vertex, as the graph is currently seen.
+	 * @param id the vertex id
+	 * @return a new array of predecessor ids
+	 */
+	public int[] predecessors(int id){
+		return (!transpose ? predecessors : successors).list(id);
+	}
+
+	/**
+	 * Returns the number of bits per arc of the compressed successor lists, the usual measure of a compressed
+	 * graph.
+	 * @return the bits per arc
+	 */
+	public double bitsPerArc(){
+		return arcs == 0 ? 0 : 8.0 * successors.data.length / arcs;
+	}
+
+	/**
+	 * Returns the size of both directions of compressed lists with their offsets, without the keys.
+	 * @return the size in bytes
+	 */
+	public long byteSize(){
+		return successors.byteSize() + predecessors.byteSize();
+	}
+
+	protected boolean transposed(){
+		return transpose;
+	}
+
+	public int vertexCount(){
+		return keys.length;
+	}
+
+	public int arcCount(){
+		return arcs;
+	}
+
+	private static <Key> ArrayList<Key> arc(Key sourceKey, Key destinationKey){
+		ArrayList<Key> arc = new ArrayList<Key>(2);
+		arc.add(sourceKey);
+		arc.add(destinationKey);
+		return arc;
+	}
+
+	/**
+	 * Iterates the arcs at one vertex, decoding its list once.
+	 */
+	private Iterator<ArrayList<Key>> adjacent(final int vertex, final boolean out){
+		final int[] list = out ? successors(vertex) : predecessors(vertex);
+		return new Iterator<ArrayList<Key>>(){
+			private int next;
+
+			public boolean hasNext(){
+				return next < list.length;
+			}
+
+			public ArrayList<Key> next(){
+				if(!hasNext()) throw new NoSuchElementException();
+
+				int other = list[next++];
+				return out ? arc(key(vertex), key(other)) : arc(key(other), key(vertex));
+			}
+		};
+	}
+
+	public Iterator<ArrayList<Key>> arcs(){
+		return new Iterator<ArrayList<Key>>(){
+			private int                      vertex = -1;
+			private Iterator<ArrayList<Key>> arcs;
+
+			public boolean hasNext(){
+				while((arcs == null || !arcs.hasNext()) && vertex + 1 < keys.length) arcs = adjacent(++vertex, true);
+				return arcs != null && arcs.hasNext();
+			}
+
+			public ArrayList<Key> next(){
+				if(!hasNext()) throw new NoSuchElementException();
+
+				return arcs.next();
+			}
+		};
+	}
+
+	public Iterator<Key> vertices(){
+		return new Iterator<Key>(){
+			private int next;
+
+			public boolean hasNext(){
+				return next < keys.length;
+			}
+
+			public Key next(){
+				if(!hasNext()) throw new NoSuchElementException();
+
+				return key(next++);
+			}
+		};
+	}
+
+	public boolean arcExists(Key sourceKey, Key destinationKey){
+		if(sourceKey == null || destinationKey == null) throw new NullPointerException();
+
+		if(!vertexExists(sourceKey) || !vertexExists(destinationKey)) return false;
+
+		// decode the shorter of the two lists that would hold the arc
+		int source = id(sourceKey), destination = id(destinationKey);
+		if(outDegree(sourceKey) <= inDegree(destinationKey)) return Arrays.binarySearch(successors(source), destination) >= 0;
+		return Arrays.binarySearch(predecessors(destination), source) >= 0;
+	}
+
+	public boolean vertexExists(Key vertexKey){
+		if(vertexKey == null) throw new NullPointerException();
+
+		return ids.containsKey(vertexKey);
+	}
+
+	public int inDegree(Key vertexKey){
+		return (!transpose ? predecessors : successors).degree(id(vertexKey));
+	}
+
+	public int outDegree(Key vertexKey){
+		return (!transpose ? successors : predecessors).degree(id(vertexKey));
+	}
+
+	public Iterator<ArrayList<Key>> inAdjacentVertices(Key vertexKey){
+		return adjacent(id(vertexKey), false);
+	}
+
+	public Iterator<ArrayList<Key>> outAdjacentVertices(Key vertexKey){
+		return adjacent(id(vertexKey), true);
+	}
+
+	public Data getVertexData(Key vertexKey){
+		id(vertexKey);
+		return null;
+	}
+
+	public Data getArcData(Key sourceKey, Key destinationKey){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+		return null;
+	}
+
+	public Number getArcWeight(Key sourceKey, Key destinationKey){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+		return 1;
+	}
+
+	/**
+	 * Reverses the direction of all arcs by swapping the roles of the successor and predecessor lists.
+	 */
+	public void transposeGraph(){
+		transpose = !transpose;
+	}
+}
@@ -0,0 +1,154 @@
+package networkmetrics;
+
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Computes the core number of every vertex of a CompactGraph with the O(|V|+|A|) bucket algorithm of
+ * Batagelj and Zaversnik. The k-core is the largest induced subgraph in which every vertex has degree at least
+ * k, and the core number of a vertex is the largest k whose k-core contains it. The degree can be the in-degree,
+ * the out-degree or the total degree (in + out, as the Driver uses for the undirected metrics).
+ *
+ * @param <Key> the vertex keys of the graph
+ */
+public class CoreDecomposition<Key extends Comparable<Key>> {
+
+	/**
+	 * The degree that the cores are defined by.
+	 */
+	public enum Degree { IN, OUT, TOTAL }
+
+	private final CompactGraph<Key> graph;
+	private final Degree            degree;
+	private final int[]             core;
+	private final int               maxCore;
+
+	/**
+	 * Computes the core numbers of a graph.
+	 * @param graph the graph
+	 * @param degree the degree that defines the cores
+	 */
+	public CoreDecomposition(CompactGraph<Key> graph, Degree degree){
+		if(graph == null || degree == null) throw new NullPointerException();
+
+		this.graph  = graph;
+		this.degree = degree;
+
+		int n = graph.vertexCount();
+		int[] deg = new int[n];
+		int   max = 0;
+		for(int v = 0; v < n; v++){
+			if(degree != Degree.OUT) deg[v] += graph.inDegree(v);
+			if(degree != Degree.IN)  deg[v] += graph.outDegree(v);
+			if(deg[v] > max) max = deg[v];
+		}
+
+		// bin[d] is the first position of degree d in vert, pos[v] the position of v in vert
+		int[] bin  = new int[max + 2];
+		int[] vert = new int[n];
+		int[] pos  = new int[n];
+		for(int v = 0; v < n; v++) bin[deg[v] + 1]++;
+		for(int d = 0; d <= max; d++) bin[d + 1] += bin[d];
+		int[] fill = new int[max + 1];
+		System.arraycopy(bin, 0, fill, 0, max + 1);
+		for(int v = 0; v < n; v++){
+			pos[v] = fill[deg[v]]++;
+			vert[pos[v]] = v;
+		}
+
+		for(int i = 0; i < n; i++){
+			int v = vert[i];
+			// removing v lowers the in-degree of its out-neighbours and the out-degree of its in-neighbours
+			if(degree != Degree.OUT) lower(v, graph.outOffsets, graph.outTargets, deg, bin, vert, pos);
+			if(degree != Degree.IN)  lower(v, graph.inOffsets, graph.inSources, deg, bin, vert, pos);
+		}
+
+		core = deg;
+		int best = 0;
+		for(int v = 0; v < n; v++) if(core[v] > best) best = core[v];
+		maxCore = best;
+	}
+
+	/**
+	 * Decrements the degree of every neighbour of v that is still above deg[v], moving it to the front of its
+	 * bin first so that the bins stay sorted.
+	 */
+	private static void lower(int v, int[] offsets, int[] neighbours, int[] deg, int[] bin, int[] vert, int[] pos){
+		for(int a = offsets[v]; a < offsets[v + 1]; a++){
+			int u = neighbours[a];
+			if(deg[u] <= deg[v]) continue;
+
+			int du = deg[u];
+			int pu = pos[u];
+			int pw = bin[du];
+			int w  = vert[pw];
+			if(u != w){
+				vert[pu] = w; pos[w] = pu;
+				vert[pw] = u; pos[u] = pw;
+			}
+			bin[du]++;
+			deg[u]--;
+		}
+	}
+
+	/**
+	 * Returns the degree that the cores are defined by.
+	 * @return the degree
+	 */
+	public Degree degree(){
+		return degree;
+	}
+
+	/**
+	 * Returns the core number of a vertex.
+	 * @param v the dense vertex id
+	 * @return the core number of v
+	 */
+	public int coreNumber(int v){
+		return core[v];
+	}
+
+	/**
+	 * Returns the core numbers of all vertices.
+	 * @return a new array indexed by dense vertex id
+	 */
+	public int[] coreNumbers(){
+		return core.clone();
+	}
+
+	/**
+	 * Returns the largest core number, the degeneracy of the graph.
+	 * @return the largest core number
+	 */
+	public int maxCore(){
+		return maxCore;
+	}
+
+	/**
+	 * Returns the keys of the vertices of the k-core.
+	 * @param k the core order
+	 * @return the vertices whose core number is at least k
+	 */
+	public HashSet<Key> kCoreVertices(int k){
+		HashSet<Key> keys = new HashSet<Key>();
+		for(int v = 0; v < core.length; v++){
+			if(core[v] >= k) keys.add(graph.key(v));
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the k-core as a read-only view of the graph the decomposition was computed from. The graph itself
+	 * is not changed.
+	 * @param base the graph the compact graph was taken from
+	 * @param k the core order
+	 * @return the view of the k-core
+	 */
+	public <Data> SubgraphView<Key,Data> kCore(Graph<Key,Data> base, int k){
+		BitSet members = new BitSet(core.length);
+		for(int v = 0; v < core.length; v++){
+			if(core[v] >= k) members.set(v);
+		}
+		return new SubgraphView<Key,Data>(base, new VertexSet<Key>(graph, members));
+	}
+}
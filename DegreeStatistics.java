@@ -0,0 +1,203 @@
+package networkmetrics;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Computes the degree distributions and the degree correlations of a CompactGraph in a single pass: the outer
+ * loop visits every vertex once for the histograms and the per-vertex sums, and the inner loop visits every
+ * arc once for the per-arc sums. All sums are kept in primitive arrays with Neumaier compensated summation, so
+ * the results do not lose precision on graphs with many high degree arcs.
+ *
+ * The directed assortativity r(a,b) is the Pearson correlation, over all arcs u to v, between the a-degree
+ * of u and the b-degree of v (Foster et al.). The undirected degree correlation is the one the Driver has
+ * always reported: the correlation of total degrees with every arc counted in both directions.
+ */
+public class DegreeStatistics {
+
+	private static final CoreDecomposition.Degree[] DEGREES = CoreDecomposition.Degree.values();
+
+	// accumulator indices: source sums, source squares, target sums, target squares, cross products
+	private static final int SOURCE  = 0;
+	private static final int SOURCE2 = 3;
+	private static final int TARGET  = 6;
+	private static final int TARGET2 = 9;
+	private static final int CROSS   = 12;
+	private static final int S1      = 21;
+	private static final int S2      = 22;
+	private static final int S3      = 23;
+	private static final int SE      = 24;
+	private static final int SUMS    = 25;
+
+	private final long     arcs;
+	private final int      vertices;
+	private final long[][] histograms;
+	private final double[] sums;
+
+	/**
+	 * Computes the statistics of a graph.
+	 * @param graph the graph
+	 */
+	public DegreeStatistics(CompactGraph<?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		int   n       = graph.vertexCount();
+		int[] offsets = graph.outOffsets;
+		int[] targets = graph.outTargets;
+
+		vertices   = n;
+		arcs       = graph.arcCount();
+		histograms = new long[DEGREES.length][1];
+		sums       = new double[SUMS];
+		double[] compensation = new double[SUMS];
+		double[] u = new double[DEGREES.length];
+		double[] v = new double[DEGREES.length];
+
+		for(int x = 0; x < n; x++){
+			degrees(graph, x, u);
+
+			for(int d = 0; d < DEGREES.length; d++){
+				int degree = (int) u[d];
+				if(degree >= histograms[d].length)
+					histograms[d] = Arrays.copyOf(histograms[d], Math.max(degree + 1, histograms[d].length * 2));
+				histograms[d][degree]++;
+			}
+
+			double total = u[2];
+			add(sums, compensation, S1, total);
+			add(sums, compensation, S2, total * total);
+			add(sums, compensation, S3, total * total * total);
+
+			for(int a = offsets[x]; a < offsets[x + 1]; a++){
+				degrees(graph, targets[a], v);
+
+				for(int d = 0; d < DEGREES.length; d++){
+					add(sums, compensation, SOURCE + d,  u[d]);
+					add(sums, compensation, SOURCE2 + d, u[d] * u[d]);
+					add(sums, compensation, TARGET + d,  v[d]);
+					add(sums, compensation, TARGET2 + d, v[d] * v[d]);
+					for(int e = 0; e < DEGREES.length; e++)
+						add(sums, compensation, CROSS + d * DEGREES.length + e, u[d] * v[e]);
+				}
+				add(sums, compensation, SE, total * v[2]);
+			}
+		}
+
+		for(int i = 0; i < SUMS; i++) sums[i] += compensation[i];
+		for(int d = 0; d < DEGREES.length; d++){
+			int max = histograms[d].length - 1;
+			while(max > 0 && histograms[d][max] == 0) max--;
+			histograms[d] = Arrays.copyOf(histograms[d], max + 1);
+		}
+	}
+
+	/**
+	 * Fills degree with the in-, out- and total degree of v, in the order of CoreDecomposition.Degree.
+	 */
+	private static void degrees(CompactGraph<?> graph, int v, double[] degree){
+		degree[0] = graph.inDegree(v);
+		degree[1] = graph.outDegree(v);
+		degree[2] = degree[0] + degree[1];
+	}
+
+	/**
+	 * Neumaier's compensated addition of x to sums[i]; the lost low order bits are collected in compensation[i].
+	 */
+	private static void add(double[] sums, double[] compensation, int i, double x){
+		double s = sums[i];
+		double t = s + x;
+		if(Math.abs(s) >= Math.abs(x)) compensation[i] += (s - t) + x;
+		else                           compensation[i] += (x - t) + s;
+		sums[i] = t;
+	}
+
+	/**
+	 * Returns the directed assortativity: the correlation over all arcs between the source degree of one kind
+	 * and the target degree of another kind. r(OUT,IN) is the usual choice for directed graphs.
+	 * @param source the degree of the arc sources
+	 * @param target the degree of the arc targets
+	 * @return the assortativity coefficient, or NaN if either degree is constant over the arcs
+	 */
+	public double assortativity(CoreDecomposition.Degree source, CoreDecomposition.Degree target){
+		if(source == null || target == null) throw new NullPointerException();
+
+		int a = source.ordinal(), b = target.ordinal();
+		double m = arcs;
+
+		double covariance = sums[CROSS + a * DEGREES.length + b] / m - (sums[SOURCE + a] / m) * (sums[TARGET + b] / m);
+		double varianceA  = sums[SOURCE2 + a] / m - (sums[SOURCE + a] / m) * (sums[SOURCE + a] / m);
+		double varianceB  = sums[TARGET2 + b] / m - (sums[TARGET + b] / m) * (sums[TARGET + b] / m);
+
+		if(!(varianceA > 0 && varianceB > 0)) return Double.NaN;
+		return covariance / Math.sqrt(varianceA * varianceB);
+	}
+
+	/**
+	 * Returns the undirected degree correlation of the total degrees,
+	 * (S1*Se - S2^2) / (S1*S3 - S2^2).
+	 * @return the undirected degree correlation
+	 */
+	public double undirectedCorrelation(){
+		double se = 2 * sums[SE];
+		double s2 = sums[S2];
+		return (sums[S1] * se - s2 * s2) / (sums[S1] * sums[S3] - s2 * s2);
+	}
+
+	/**
+	 * Returns the number of vertices of every degree.
+	 * @param degree the kind of degree
+	 * @return a new array indexed by degree, up to the largest degree
+	 */
+	public long[] histogram(CoreDecomposition.Degree degree){
+		return histograms[degree.ordinal()].clone();
+	}
+
+	/**
+	 * Returns the complementary cumulative distribution P(D >= k) for every degree k.
+	 * @param degree the kind of degree
+	 * @return a new array indexed by degree, up to the largest degree
+	 */
+	public double[] ccdf(CoreDecomposition.Degree degree){
+		long[]   histogram = histograms[degree.ordinal()];
+		double[] ccdf      = new double[histogram.length];
+		long     atLeast   = 0;
+		for(int k = histogram.length - 1; k >= 0; k--){
+			atLeast += histogram[k];
+			ccdf[k] = (double) atLeast / vertices;
+		}
+		return ccdf;
+	}
+
+	/**
+	 * Writes the three degree distributions in logarithmic bins [0], [1], [2,3], [4,7], ... One line per bin
+	 * holds the bin bounds and, for the in-, out- and total degree, the number of vertices in the bin and the
+	 * CCDF at the lower bound.
+	 * @param out the destination
+	 */
+	public void writeLogBinned(PrintWriter out){
+		if(out == null) throw new NullPointerException();
+
+		long[][]   counts = new long[DEGREES.length][];
+		double[][] ccdfs  = new double[DEGREES.length][];
+		int        max    = 0;
+		for(int d = 0; d < DEGREES.length; d++){
+			counts[d] = histograms[d];
+			ccdfs[d]  = ccdf(DEGREES[d]);
+			max = Math.max(max, counts[d].length - 1);
+		}
+
+		out.println("# from\tto\tin.count\tin.ccdf\tout.count\tout.ccdf\ttotal.count\ttotal.ccdf");
+		for(long from = 0; from <= max; from = from == 0 ? 1 : from * 2){
+			long to = from == 0 ? 0 : from * 2 - 1;
+			out.print(from + "\t" + to);
+			for(int d = 0; d < DEGREES.length; d++){
+				long count = 0;
+				for(long k = from; k <= to && k < counts[d].length; k++) count += counts[d][(int) k];
+				double ccdf = from < ccdfs[d].length ? ccdfs[d][(int) from] : 0;
+				out.print("\t" + count + "\t" + (float) ccdf);
+			}
+			out.println();
+		}
+		out.flush();
+	}
+}
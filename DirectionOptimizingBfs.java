@@ -0,0 +1,298 @@
+package networkmetrics;
+
+import java.util.Arrays;
+
+/**
+ * Breadth first search over a CompactGraph that switches between top-down and bottom-up steps (Beamer et al.).
+ * A top-down step expands the out-arcs of every frontier vertex. A bottom-up step instead lets every unvisited
+ * vertex scan its in-arcs for a parent in the frontier and stop at the first one found, which examines far fewer
+ * arcs once the frontier holds a large part of the graph, as it does in the middle levels of low diameter
+ * networks. The frontier of a bottom-up step is a bitset.
+ *
+ * The search switches to bottom-up when the out-arcs of the frontier exceed 1/ALPHA of the out-arcs of the
+ * unvisited vertices, and back to top-down when the frontier shrinks below 1/BETA of the vertices.
+ *
+ * The searches follow the out-arcs by default; they can follow the in-arcs instead, or the arcs in both directions,
+ * and can stop at a given depth, which makes them usable for k-hop ego networks.
+ *
+ * An instance keeps its work arrays between searches and is not thread safe.
+ */
+public class DirectionOptimizingBfs {
+
+	private static final int ALPHA = 14;
+	private static final int BETA  = 24;
+
+	private final CompactGraph<?> graph;
+	private final long[]          visited;
+	private final long[]          frontier;
+	private final int[]           queue;
+	private long[]                levels;
+	private boolean               directionOptimizing;
+	private int                   maxDepth;
+
+	private int[][] forwardOffsets;
+	private int[][] forwardTargets;
+	private int[][] backwardOffsets;
+	private int[][] backwardSources;
+
+	private int[]  vertices;
+	private long[] allowed;
+	private long   allowedArcs;
+
+	private int  depth;
+	private int  reached;
+	private long arcsExamined;
+	private long topDownSteps;
+	private long bottomUpSteps;
+
+	/**
+	 * Constructs a direction optimizing search over all vertices of a graph.
+	 * @param graph the graph
+	 */
+	public DirectionOptimizingBfs(CompactGraph<?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		this.graph = graph;
+		int words  = (graph.vertexCount() + 63) >>> 6;
+		visited    = new long[words];
+		frontier   = new long[words];
+		queue      = new int[graph.vertexCount()];
+		levels     = new long[16];
+		directionOptimizing = true;
+		maxDepth   = Integer.MAX_VALUE;
+		setDirection(CoreDecomposition.Degree.OUT);
+	}
+
+	/**
+	 * Sets the arcs the searches follow: OUT from a vertex to its successors, IN to its predecessors, TOTAL both.
+	 * @param direction the direction of the searches
+	 */
+	public void setDirection(CoreDecomposition.Degree direction){
+		if(direction == null) throw new NullPointerException();
+
+		int[][] out = { graph.outOffsets, graph.outTargets };
+		int[][] in  = { graph.inOffsets, graph.inSources };
+		int[][] forward  = direction == CoreDecomposition.Degree.IN ? in : out;
+		int[][] backward = direction == CoreDecomposition.Degree.IN ? out : in;
+		if(direction == CoreDecomposition.Degree.TOTAL){
+			forwardOffsets  = new int[][]{ out[0], in[0] };
+			forwardTargets  = new int[][]{ out[1], in[1] };
+			backwardOffsets = new int[][]{ in[0], out[0] };
+			backwardSources = new int[][]{ in[1], out[1] };
+		}
+		else{
+			forwardOffsets  = new int[][]{ forward[0] };
+			forwardTargets  = new int[][]{ forward[1] };
+			backwardOffsets = new int[][]{ backward[0] };
+			backwardSources = new int[][]{ backward[1] };
+		}
+		setVertices(vertices);
+	}
+
+	/**
+	 * Stops the searches at a depth: vertices further from the source are not visited.
+	 * @param maxDepth the largest distance searched, at least 0
+	 */
+	public void setMaxDepth(int maxDepth){
+		if(maxDepth < 0) throw new IllegalArgumentException();
+
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Returns the number of arcs followed from v in the search direction.
+	 */
+	private int forwardDegree(int v){
+		int degree = 0;
+		for(int[] offsets : forwardOffsets) degree += offsets[v + 1] - offsets[v];
+		return degree;
+	}
+
+	/**
+	 * Limits the searches to a set of vertices: other vertices are never visited and arcs through them are
+	 * ignored.
+	 * @param vertices the vertex ids, or null for all vertices
+	 */
+	public void setVertices(int[] vertices){
+		int n = graph.vertexCount();
+		if(vertices == null){
+			this.vertices = null;
+			allowed       = null;
+			allowedArcs   = (long) graph.arcCount() * forwardOffsets.length;
+			return;
+		}
+
+		this.vertices = vertices.clone();
+		allowed       = new long[visited.length];
+		allowedArcs   = 0;
+		for(int v : vertices){
+			if(v < 0 || v >= n) throw new IllegalArgumentException();
+			allowed[v >>> 6] |= 1L << v;
+			allowedArcs += forwardDegree(v);
+		}
+	}
+
+	/**
+	 * Turns the bottom-up steps on or off. With them off every step is top-down.
+	 * @param directionOptimizing FALSE for a plain top-down search
+	 */
+	public void setDirectionOptimizing(boolean directionOptimizing){
+		this.directionOptimizing = directionOptimizing;
+	}
+
+	private static boolean get(long[] bits, int v){
+		return (bits[v >>> 6] & (1L << v)) != 0;
+	}
+
+	private boolean isAllowed(int v){
+		return allowed == null || get(allowed, v);
+	}
+
+	/**
+	 * Searches from a source. The number of vertices found at every distance is then available from
+	 * levelSize, up to depth.
+	 * @param source the source vertex id
+	 * @return the number of vertices reached, not counting the source
+	 */
+	public int search(int source){
+		int    n        = vertices == null ? graph.vertexCount() : vertices.length;
+		long[] visited  = this.visited;
+		long[] frontier = this.frontier;
+		long[] allowed  = this.allowed;
+		int[]  queue    = this.queue;
+		int[]  degrees  = forwardOffsets[0];
+		int[]  extra    = forwardOffsets.length > 1 ? forwardOffsets[1] : null;
+
+		if(!isAllowed(source)) throw new IllegalArgumentException();
+
+		queue[0] = source;
+		visited[source >>> 6] |= 1L << source;
+		int  levelStart = 0, levelEnd = 1, tail = 1;
+		long unvisitedArcs = allowedArcs - forwardDegree(source);
+		long frontierArcs  = forwardDegree(source);
+		long examined = 0;
+		boolean bottomUp = false;
+		depth = 0;
+
+		while(levelStart < levelEnd && tail < n && depth < maxDepth){
+			int frontierSize = levelEnd - levelStart;
+			if(directionOptimizing){
+				if(!bottomUp && frontierArcs > unvisitedArcs / ALPHA) bottomUp = true;
+				else if(bottomUp && frontierSize < n / BETA)           bottomUp = false;
+			}
+
+			frontierArcs = 0;
+			if(!bottomUp){
+				topDownSteps++;
+				for(int p = 0; p < forwardOffsets.length; p++){
+					int[] offsets = forwardOffsets[p];
+					int[] targets = forwardTargets[p];
+					for(int i = levelStart; i < levelEnd; i++){
+						int x = queue[i];
+						for(int a = offsets[x]; a < offsets[x + 1]; a++){
+							examined++;
+							int z = targets[a];
+							if((visited[z >>> 6] & (1L << z)) != 0 || (allowed != null && (allowed[z >>> 6] & (1L << z)) == 0)) continue;
+
+							visited[z >>> 6] |= 1L << z;
+							queue[tail++] = z;
+							frontierArcs += degrees[z + 1] - degrees[z] + (extra == null ? 0 : extra[z + 1] - extra[z]);
+						}
+					}
+				}
+			}
+			else{
+				bottomUpSteps++;
+				for(int i = levelStart; i < levelEnd; i++) frontier[queue[i] >>> 6] |= 1L << queue[i];
+
+				for(int i = 0; i < n; i++){
+					int z = vertices == null ? i : vertices[i];
+					if((visited[z >>> 6] & (1L << z)) != 0) continue;
+
+					parent:
+					for(int p = 0; p < backwardOffsets.length; p++){
+						int[] offsets = backwardOffsets[p];
+						int[] sources = backwardSources[p];
+						for(int a = offsets[z]; a < offsets[z + 1]; a++){
+							examined++;
+							int u = sources[a];
+							if((frontier[u >>> 6] & (1L << u)) != 0){
+								visited[z >>> 6] |= 1L << z;
+								queue[tail++] = z;
+								frontierArcs += degrees[z + 1] - degrees[z] + (extra == null ? 0 : extra[z + 1] - extra[z]);
+								break parent;
+							}
+						}
+					}
+				}
+
+				for(int i = levelStart; i < levelEnd; i++) frontier[queue[i] >>> 6] = 0;
+			}
+
+			unvisitedArcs -= frontierArcs;
+			if(tail > levelEnd){
+				depth++;
+				if(depth >= levels.length) levels = Arrays.copyOf(levels, levels.length * 2);
+				levels[depth] = tail - levelEnd;
+			}
+			levelStart = levelEnd;
+			levelEnd   = tail;
+		}
+
+		for(int i = 0; i < tail; i++) visited[queue[i] >>> 6] = 0;
+		arcsExamined += examined;
+		reached = tail;
+		return tail - 1;
+	}
+
+	/**
+	 * Returns the vertices found by the last search, the source first, in order of distance.
+	 * @return a new array of vertex ids
+	 */
+	public int[] reached(){
+		return Arrays.copyOf(queue, reached);
+	}
+
+	/**
+	 * Returns the largest distance found by the last search.
+	 * @return the eccentricity of the last source
+	 */
+	public int depth(){
+		return depth;
+	}
+
+	/**
+	 * Returns the number of vertices the last search found at a distance.
+	 * @param distance the distance, from 1 to depth
+	 * @return the number of vertices at that distance
+	 */
+	public long levelSize(int distance){
+		if(distance < 1 || distance > depth) throw new IllegalArgumentException();
+
+		return levels[distance];
+	}
+
+	/**
+	 * Returns the number of arcs examined by all searches so far.
+	 * @return the number of arcs examined
+	 */
+	public long arcsExamined(){
+		return arcsExamined;
+	}
+
+	/**
+	 * Returns the number of top-down steps taken by all searches so far.
+	 * @return the number of top-down steps
+	 */
+	public long topDownSteps(){
+		return topDownSteps;
+	}
+
+	/**
+	 * Returns the number of bottom-up steps taken by all searches so far.
+	 * @return the number of bottom-up steps
+	 */
+	public long bottomUpSteps(){
+		return bottomUpSteps;
+	}
+}
@@ -0,0 +1,344 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Coordinator of a breadth first search from every source over a graph partitioned between worker processes
+ * (see BfsWorker). The vertices are partitioned by a hash of their keys and every worker holds the out-arcs of
+ * its own vertices only. The searches run level synchronously: for every level the coordinator tells all the
+ * workers to expand their part of the frontier, the workers exchange the targets owned by other workers over
+ * their sockets, and each reports the new vertices it found. A search ends at the first level that finds none.
+ *
+ * The number of vertices found at every distance gives the same mean geodesic path and directed diameter as
+ * GeodesicMetrics. The coordinator also sums, for every BFS level over all the sources, the vertex ids, bytes
+ * and batches the workers sent each other, which is the communication volume of the partitioning. The last
+ * level of a search finds nothing but still exchanges the end markers, so it is counted too.
+ *
+ * By default the coordinator starts its workers as child JVMs on this machine, with the same class path and JVM
+ * options. With --spawn=false it waits for workers started by hand, for instance on other machines that see the
+ * same file:
+ *    java networkmetrics.BfsWorker --coordinator=HOST:PORT --partition=P --partitions=K FILE
+ * The coordinator checks its spawned workers every POLL_MILLIS while it waits for them, and fails with the
+ * number of a worker that exited instead of waiting forever.
+ *
+ * Usage: java networkmetrics.DistributedBfs FILE [--workers=K] [--port=P] [--spawn=false]
+ */
+public class DistributedBfs {
+
+	static final int POLL_MILLIS = 1000;
+
+	private final int                       partitions;
+	private final ArrayList<DataInputStream>  in;
+	private final ArrayList<DataOutputStream> out;
+	private final ArrayList<Socket>           sockets;
+	private List<Process>                     workers;
+
+	private int    vertexCount;
+	private long   arcCount;
+	private long   totalPath;
+	private long   pairs;
+	private long[] found;
+	private long[] ids;
+	private long[] batches;
+	private long[] bytes;
+	private int    levels;
+
+	/**
+	 * Constructs a coordinator of a number of workers.
+	 * @param partitions the number of workers
+	 */
+	public DistributedBfs(int partitions){
+		if(partitions < 1) throw new IllegalArgumentException();
+
+		this.partitions = partitions;
+		in      = new ArrayList<DataInputStream>();
+		out     = new ArrayList<DataOutputStream>();
+		sockets = new ArrayList<Socket>();
+		workers = Collections.emptyList();
+		found   = new long[16];
+		ids     = new long[16];
+		batches = new long[16];
+		bytes   = new long[16];
+	}
+
+	/**
+	 * Accepts the connections of all the workers, checks that they loaded the same graph and sends every
+	 * worker the addresses of the others.
+	 * @param listener the socket the workers connect to
+	 * @throws IOException if a connection fails or the workers disagree
+	 */
+	public void connect(ServerSocket listener) throws IOException{
+		connect(listener, Collections.<Process>emptyList());
+	}
+
+	/**
+	 * Accepts the connections of workers started as processes, and fails as soon as one of them exits.
+	 * @param listener the socket the workers connect to
+	 * @param workers the worker processes, by partition
+	 * @throws IOException if a connection fails, a worker exits or the workers disagree
+	 */
+	public void connect(ServerSocket listener, List<Process> workers) throws IOException{
+		this.workers = workers;
+		String[] hosts = new String[partitions];
+		int[]    ports = new int[partitions];
+		Socket[] order = new Socket[partitions];
+		DataInputStream[] inputs = new DataInputStream[partitions];
+		listener.setSoTimeout(POLL_MILLIS);
+		for(int i = 0; i < partitions; i++){
+			Socket socket;
+			try{
+				socket = listener.accept();
+			}
+			catch(SocketTimeoutException e){
+				checkWorkers();
+				i--;
+				continue;
+			}
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			int p = input.readInt();
+			if(p < 0 || p >= partitions || order[p] != null) throw new IOException("Unexpected worker " + p);
+
+			order[p]  = socket;
+			inputs[p] = input;
+			hosts[p]  = socket.getInetAddress().getHostAddress();
+			ports[p]  = input.readInt();
+			int n = input.readInt();
+			if(i > 0 && n != vertexCount) throw new IOException("Worker " + p + " read " + n + " vertices, not " + vertexCount);
+			vertexCount = n;
+			arcCount   += input.readLong();
+			// the commands that follow may wait for a long level, see await
+			socket.setSoTimeout(POLL_MILLIS);
+		}
+
+		for(int p = 0; p < partitions; p++){
+			sockets.add(order[p]);
+			in.add(inputs[p]);
+			out.add(new DataOutputStream(new BufferedOutputStream(order[p].getOutputStream())));
+		}
+		for(DataOutputStream worker : out){
+			for(int p = 0; p < partitions; p++){
+				worker.writeUTF(hosts[p]);
+				worker.writeInt(ports[p]);
+			}
+			worker.flush();
+		}
+		for(DataInputStream worker : in){
+			if(await(worker) != BfsWorker.READY) throw new IOException("Worker failed to join");
+		}
+	}
+
+	/**
+	 * Reads the first byte of a reply, checking the worker processes whenever it takes longer than POLL_MILLIS.
+	 * The rest of a reply is flushed with its first byte.
+	 */
+	private byte await(DataInputStream worker) throws IOException{
+		while(true){
+			try{
+				return worker.readByte();
+			}
+			catch(SocketTimeoutException e){
+				checkWorkers();
+			}
+		}
+	}
+
+	private void checkWorkers() throws IOException{
+		for(int p = 0; p < workers.size(); p++){
+			if(!workers.get(p).isAlive()) throw new IOException("Worker " + p + " exited with status " + workers.get(p).exitValue());
+		}
+	}
+
+	/**
+	 * Runs a search from every vertex.
+	 * @throws IOException if a worker fails
+	 */
+	public void run() throws IOException{
+		totalPath = 0;
+		pairs     = 0;
+		levels    = 0;
+		Arrays.fill(found, 0);
+		Arrays.fill(ids, 0);
+		Arrays.fill(batches, 0);
+		Arrays.fill(bytes, 0);
+
+		for(int source = 0; source < vertexCount; source++){
+			for(DataOutputStream worker : out){
+				worker.writeByte(BfsWorker.SOURCE);
+				worker.writeInt(source);
+			}
+			for(int depth = 1; ; depth++){
+				for(DataOutputStream worker : out){
+					worker.writeByte(BfsWorker.LEVEL);
+					worker.flush();
+				}
+				long levelFound = 0, levelIds = 0, levelBatches = 0, levelBytes = 0;
+				for(DataInputStream worker : in){
+					if(await(worker) != BfsWorker.LEVEL) throw new IOException("Worker out of step");
+					levelFound   += worker.readInt();
+					levelIds     += worker.readLong();
+					levelBatches += worker.readLong();
+					levelBytes   += worker.readLong();
+				}
+
+				if(depth >= found.length){
+					found   = Arrays.copyOf(found, depth * 2);
+					ids     = Arrays.copyOf(ids, depth * 2);
+					batches = Arrays.copyOf(batches, depth * 2);
+					bytes   = Arrays.copyOf(bytes, depth * 2);
+				}
+				ids[depth]     += levelIds;
+				batches[depth] += levelBatches;
+				bytes[depth]   += levelBytes;
+				levels = Math.max(levels, depth);
+				if(levelFound == 0) break;
+
+				found[depth] += levelFound;
+				totalPath    += depth * levelFound;
+				pairs        += levelFound;
+			}
+		}
+	}
+
+	/**
+	 * Tells the workers to exit and closes their connections.
+	 * @throws IOException if a connection fails
+	 */
+	public void stop() throws IOException{
+		for(DataOutputStream worker : out){
+			worker.writeByte(BfsWorker.STOP);
+			worker.flush();
+		}
+		for(Socket socket : sockets) socket.close();
+	}
+
+	public int vertexCount(){ return vertexCount; }
+
+	public long arcCount(){ return arcCount; }
+
+	public long reachablePairs(){ return pairs; }
+
+	/**
+	 * Returns the mean length of the shortest paths between the pairs of distinct vertices that are connected.
+	 * Check reachablePairs() first: with no connected pairs there is no mean.
+	 * @param scale the number of decimals
+	 * @return the mean geodesic path
+	 */
+	public BigDecimal meanGeodesic(int scale){
+		return new BigDecimal(totalPath).divide(new BigDecimal(pairs), scale, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Returns the longest distance found.
+	 * @return the directed diameter
+	 */
+	public int diameter(){
+		int d = found.length - 1;
+		while(d > 0 && found[d] == 0) d--;
+		return d;
+	}
+
+	/**
+	 * Formats the communication volume of every level as a table.
+	 * @return the table
+	 */
+	public String volumeTable(){
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%-6s %14s %14s %14s %10s%n", "LEVEL", "FOUND", "IDS SENT", "BYTES SENT", "BATCHES"));
+		long totalIds = 0, totalBatches = 0, totalBytes = 0;
+		for(int d = 1; d <= levels; d++){
+			table.append(String.format("%-6d %14d %14d %14d %10d%n", d, found[d], ids[d], bytes[d], batches[d]));
+			totalIds     += ids[d];
+			totalBatches += batches[d];
+			totalBytes   += bytes[d];
+		}
+		table.append(String.format("%-6s %14d %14d %14d %10d%n", "TOTAL", pairs, totalIds, totalBytes, totalBatches));
+		return table.toString();
+	}
+
+	/**
+	 * Starts the workers as child JVMs with the class path and options of this one.
+	 */
+	private static ArrayList<Process> spawn(String file, int partitions, int port) throws IOException{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ArrayList<Process> processes = new ArrayList<Process>();
+		for(int p = 0; p < partitions; p++){
+			ArrayList<String> command = new ArrayList<String>();
+			command.add(java);
+			command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(BfsWorker.class.getName());
+			command.add("--coordinator=localhost:" + port);
+			command.add("--partition=" + p);
+			command.add("--partitions=" + partitions);
+			command.add(file);
+			processes.add(new ProcessBuilder(command).inheritIO().start());
+		}
+		return processes;
+	}
+
+	public static void main(String[] args){
+		String file = null;
+		int     partitions = 4;
+		int     port       = 0;
+		boolean spawn      = true;
+		for(String arg : args){
+			if(arg.startsWith("--workers="))    partitions = Integer.parseInt(arg.substring("--workers=".length()));
+			else if(arg.startsWith("--port="))  port       = Integer.parseInt(arg.substring("--port=".length()));
+			else if(arg.equals("--spawn=false")) spawn     = false;
+			else                                 file       = arg;
+		}
+		if(file == null || partitions < 1){
+			System.out.println("Usage: DistributedBfs FILE [--workers=K] [--port=P] [--spawn=false]");
+			return;
+		}
+
+		ArrayList<Process> processes = new ArrayList<Process>();
+		try(ServerSocket listener = new ServerSocket(port)){
+			if(spawn) processes = spawn(file, partitions, listener.getLocalPort());
+			else      System.out.println("Waiting for " + partitions + " workers on port " + listener.getLocalPort());
+
+			long start = System.nanoTime();
+			DistributedBfs bfs = new DistributedBfs(partitions);
+			bfs.connect(listener, processes);
+			long loaded = System.nanoTime();
+			bfs.run();
+			long searched = System.nanoTime();
+			bfs.stop();
+
+			System.out.println("-----------------------------------------------");
+			System.out.println("    Graph   <" + file + "> (distributed, " + partitions + " workers)");
+			System.out.println("-----------------------------------------------");
+			System.out.println("|V| = " + bfs.vertexCount());
+			System.out.println("|E| = " + bfs.arcCount());
+			System.out.println("Mean Geodesic Path ~= " + (bfs.reachablePairs() == 0 ? "no pairs covered" : bfs.meanGeodesic(2)));
+			System.out.println("Directed Diameter~= " + bfs.diameter());
+			System.out.print(bfs.volumeTable());
+			System.out.println(String.format("load %.1f ms, searches %.1f ms", (loaded - start) / 1e6, (searched - loaded) / 1e6));
+			System.out.println("-----------------------------------------------");
+
+			for(Process process : processes) process.waitFor();
+		}
+		catch(IOException o){ System.out.println("ERROR: " + o.getMessage()); }
+		catch(InterruptedException e){ System.out.println("Interrupted"); }
+		finally{
+			for(Process process : processes) process.destroy();
+		}
+	}
+}
@@ -8,61 +8,186 @@ import java.math.RoundingMode;
 public class Driver<Key extends Comparable<Key>>{
 
    public static <Key extends Comparable<Key>> void main(String[] args){
+      Graph offHeap = null;
       try{
-      HashMapGraph G = new HashMapGraph();
-         
          String fileName = args[0];
-         String currentScan; 
-         String nodeProp;
-         String edgeProp;
          
-         Scanner scan = new Scanner(new File(args[0]));
+         StageProfiler profiler = new StageProfiler(fileName);
          
-         //BEGIN INSERTING NODES
+         //OUT-OF-CORE PATH (--external OR --external=TMPDIR): THE ARCS ARE NEVER HELD IN THE HEAP
          
-         String current = scan.nextLine();
-         if(current.equals("*node data ") 
-         || current.equals("*Node properties") 
-         || current.equals("*Node data"))
-         {
-            nodeProp = scan.nextLine();
+         if(option(args,"--external",null) != null){
+            runExternal(args, profiler);
+            return;
          }
-         else{ System.out.println("Invalid VNA file"); }
          
-         currentScan = "nodes";
+         //FOLLOW MODE (--follow OR --follow=SECONDS): THE FILE IS TAILED AS IT GROWS AND THE DEGREE, DENSITY AND
+         //RECIPROCITY METRICS ARE UPDATED WITH EVERY BATCH OF NEW ARCS AND PRINTED AT A FIXED INTERVAL
+         
+         if(option(args,"--follow",null) != null){
+            runFollow(args);
+            return;
+         }
          
-         while(scan.hasNextLine() && currentScan == "nodes"){
-            current = scan.nextLine();
-            if(current.equals("*tie data ") || current.equals("*Tie data")){ currentScan = "edges"; }//ENDS LOOP AND MOVES ON TO EDGES.
+         //RESULT CACHE (--cache OR --cache=DIR, --cache-size=MB). A RUN ON AN UNCHANGED FILE WITH THE SAME OPTIONS
+         //PRINTS THE STORED REPORT WITHOUT LOADING THE GRAPH, OTHER RUNS REUSE THE STORED DEGREES AND DISTANCES
+         
+         ResultCache cache = null;
+         String digest = null;
+         String reportKey = null;
+         String cacheOption = option(args,"--cache",null);
+         if(cacheOption != null){
+            profiler.start("cache");
+            File cacheDirectory = cacheOption.isEmpty() ? new File(System.getProperty("java.io.tmpdir"),"networkmetrics-cache")
+                                                        : new File(cacheOption);
+            cache = new ResultCache(cacheDirectory, Long.parseLong(option(args,"--cache-size","256"))<<20);
+            digest = ResultCache.digest(new File(fileName));
+            if(option(args,"--degree-dist",null) == null){
+               reportKey = ResultCache.key(digest,"report",fileName,metricOptions(args));
+            }
+            Map<String,Object> cached = reportKey == null ? null : cache.get(reportKey);
+            profiler.stop();
+            if(cached != null){
+               System.out.print(cached.get("report"));
+               printProfile(args, profiler);
+               return;
+            }
+         }
+         
+         //BEGIN INSERTING NODES AND EDGES (key1,key2,null data,weight given)
+         
+         //OFF-HEAP ADJACENCY (--offheap COPIES THE LOADED GRAPH OUT OF THE HEAP, --offheap=SNAPSHOT MAPS THE
+         //SNAPSHOT FILE, WRITING IT FIRST FROM THE VNA FILE IF IT IS MISSING, OLDER THAN THE VNA FILE OR UNREADABLE).
+         //THE DEGREE, RECIPROCITY AND CLUSTERING STAGES READ THE NATIVE MEMORY, BUT WITHOUT A SNAPSHOT THE FILE IS
+         //STILL PARSED INTO A HASHMAPGRAPH FIRST, AND THE COMPACT SNAPSHOT OF THE LATER STAGES IS ON THE HEAP
+         
+         Graph G = null;
+         CompressedGraph compressed = null;
+         String offHeapOption = option(args,"--offheap",null);
+         if(offHeapOption != null && !offHeapOption.isEmpty() && new File(offHeapOption).exists()
+               && new File(offHeapOption).lastModified() >= new File(fileName).lastModified()){
+            profiler.start("load");
+            try{
+               G = offHeap = (Graph)callOffHeap(null,"open",File.class,new File(offHeapOption));
+            }
+            catch(IOException o){
+               System.out.println("Rewriting <"+offHeapOption+">: "+o.getMessage());
+            }
+            profiler.stop();
+         }
+         if(G == null){
+            //COMPRESSED ADJACENCY (--compressed OR --compressed=WINDOW): THE VNA FILE IS STREAMED STRAIGHT INTO
+            //GAP CODED LISTS, WITH REFERENCE COMPRESSION OVER THE GIVEN WINDOW (0 TURNS IT OFF)
+            
+            String compressedOption = option(args,"--compressed",null);
+            profiler.start("load");
+            if(compressedOption != null){
+               int window = compressedOption.isEmpty() ? CompressedGraph.DEFAULT_WINDOW : Integer.parseInt(compressedOption);
+               G = compressed = CompressedGraph.load(new File(fileName), window, CompressedGraph.DEFAULT_MAX_CHAIN);
+            }
             else{
-               String[] split = current.split("\\s+");
-               G.insertVertex(split[0]);
-            }  
+               //ARC INDEX (--arc-index OR --arc-index=bloom): THE ARCS ARE ALSO KEPT IN A HASH SET OF ID PAIRS,
+               //WHICH SPEEDS UP THE DUPLICATE CHECKS OF THE LOAD AND THE ARC LOOKUPS OF THE RECIPROCITY
+               
+               HashMapGraph<String,String> graph = new HashMapGraph<String,String>();
+               String arcIndexOption = option(args,"--arc-index",null);
+               if(arcIndexOption != null) graph.setArcIndex(true,arcIndexOption.equals("bloom"));
+               G = GraphReader.load(new File(fileName),graph);
+            }
+            profiler.stop();
+            
+            if(offHeapOption != null){
+               profiler.start("offheap");
+               G = offHeap = (Graph)callOffHeap(null,"of",Graph.class,G);
+               if(!offHeapOption.isEmpty()) callOffHeap(offHeap,"write",File.class,new File(offHeapOption));
+               profiler.stop();
+            }
          }
          
-         //BEGIN INSERTING EDGES
+         //SUBGRAPH (--subgraph=PROPERTY=VALUE): THE METRICS RUN ON A READ-ONLY VIEW OF THE VERTICES WHOSE VNA
+         //VERTEX COLUMN PROPERTY HAS THE GIVEN VALUE, SUCH AS --subgraph=source=Blogarama
          
-         edgeProp = scan.nextLine();
+         String title = fileName;
+         CompactGraph compact = null;
+         String subgraphOption = option(args,"--subgraph",null);
+         if(subgraphOption != null && offHeap != null){
+            throw new IllegalArgumentException("--subgraph needs the vertex columns, which --offheap graphs do not keep");
+         }
+         if(subgraphOption != null){
+            profiler.start("subgraph");
+            String[] filter = subgraphOption.split("=",2);
+            if(filter.length < 2) throw new IllegalArgumentException("--subgraph=PROPERTY=VALUE");
+            G = SubgraphView.where(G,filter[0].toLowerCase(),filter[1]);
+            profiler.stop();
+            title = title+"> <"+filter[0].toLowerCase()+" = "+filter[1];
+         }
          
-         while(scan.hasNextLine()){ //INSERTS ALL EDGES (key1,key2,null data,weight given)
-            current = scan.nextLine();
-            String[] split = current.split("\\s+");
-            if(split.length == 2){
-               G.insertArc(split[0],split[1]);
-            }else{
-               G.insertArc(split[0],split[1],split[2]);
+         //EGO NETWORK (--ego=KEY OR --ego=KEY,HOPS OR --ego=KEY,HOPS,in|out|total): THE METRICS RUN ON A VIEW
+         //OF THE VERTICES WITHIN HOPS (DEFAULT 1) OF KEY, FOLLOWING THE ARCS IN BOTH DIRECTIONS BY DEFAULT.
+         //THE EGO AND K-CORE STAGES SHARE ONE COMPACT SNAPSHOT, CUT DOWN TO EVERY NEW VIEW FROM ITS OWN ARRAYS
+         
+         String egoOption = option(args,"--ego",null);
+         if(egoOption != null){
+            profiler.start("ego");
+            String[] ego = egoOption.split(",");
+            int hops = ego.length > 1 ? Integer.parseInt(ego[1]) : 1;
+            CoreDecomposition.Degree direction = ego.length > 2 ? CoreDecomposition.Degree.valueOf(ego[2].toUpperCase())
+                                                                : CoreDecomposition.Degree.TOTAL;
+            if(compact == null) compact = CompactGraph.of(G);
+            G = SubgraphView.ego(G,compact,ego[0],hops,direction);
+            compact = compact.induced(G);
+            profiler.stop();
+            title = title+"> <"+hops+"-hop ego network of "+ego[0]+", "+direction.toString().toLowerCase()+" arcs";
+         }
+         
+         //K-CORE (--kcore=K OR --kcore=K,in|out|total). THE METRICS RUN ON A READ-ONLY VIEW OF THE K-CORE
+         
+         String kcoreOption = option(args,"--kcore",null);
+         if(kcoreOption != null){
+            profiler.start("kcore");
+            String[] kcore = kcoreOption.split(",");
+            int k = Integer.parseInt(kcore[0]);
+            CoreDecomposition.Degree mode = kcore.length > 1 ? CoreDecomposition.Degree.valueOf(kcore[1].toUpperCase())
+                                                             : CoreDecomposition.Degree.TOTAL;
+            if(compact == null) compact = CompactGraph.of(G);
+            CoreDecomposition cores = new CoreDecomposition(compact, mode);
+            if(k > cores.maxCore()){
+               profiler.stop();
+               System.out.println("The "+k+"-core of <"+title+"> is empty: the degeneracy ("+mode.toString().toLowerCase()
+                                  +" degree) is "+cores.maxCore());
+               return;
             }
+            G = cores.kCore(G,k);
+            compact = compact.induced(G);
+            profiler.stop();
+            title = title+"> <"+k+"-core, "+mode.toString().toLowerCase()+" degree, degeneracy "+cores.maxCore();
+         }
+         
+         //A GRAPH OR VIEW WITHOUT ARCS HAS NO METRICS TO REPORT
+         
+         if(G.arcCount() == 0){
+            System.out.println("<"+title+"> has "+G.vertexCount()+" vertices and no arcs");
+            return;
          }
          
          //INDEGREE CALCULATION
          
+         String viewKey = (subgraphOption == null ? "" : subgraphOption)+"|"+(egoOption == null ? "" : egoOption)
+                          +"|"+(kcoreOption == null ? "" : kcoreOption);
+         String degreesKey = cache == null ? null : ResultCache.key(digest,"degrees",viewKey);
+         Map<String,Object> cachedDegrees = cache == null ? null : cache.get(degreesKey);
+         
+         profiler.start("in-degree");
+         
+         int[] inDegrees = cachedDegrees != null ? (int[])cachedDegrees.get("in") : new int[G.vertexCount()];
+         Iterator vertices = G.vertices();
+         for(int i = 0; cachedDegrees == null && vertices.hasNext(); i++){
+            inDegrees[i] = G.inDegree((Key)vertices.next());
+         }
          double inmin = 1000000.0; 
          double intotal= 0;
          double inmax = 0; 
-         Iterator vertices = G.vertices();
-         while(vertices.hasNext()){
-            Key o = (Key)vertices.next();
-            double degree = G.inDegree(o);
+         for(double degree : inDegrees){
             if(degree > inmax){
                inmax = degree;
             }
@@ -72,17 +197,22 @@ public class Driver<Key extends Comparable<Key>>{
             intotal = intotal + degree;
          }
          double inaverage = intotal/G.vertexCount();
+         profiler.stop();
       
       
          //OUTDEGREE CALCULATION
          
+         profiler.start("out-degree");
+         
+         int[] outDegrees = cachedDegrees != null ? (int[])cachedDegrees.get("out") : new int[G.vertexCount()];
+         vertices = G.vertices();
+         for(int i = 0; cachedDegrees == null && vertices.hasNext(); i++){
+            outDegrees[i] = G.outDegree((Key)vertices.next());
+         }
          double outmin = 1000000.0; 
          double outtotal= 0;
          double outmax = 0; 
-         vertices = G.vertices();
-         while(vertices.hasNext()){
-            Key o = (Key)vertices.next();
-            double degree = G.outDegree(o);
+         for(double degree : outDegrees){
             if(degree > outmax){
                outmax = degree;
             }
@@ -92,6 +222,14 @@ public class Driver<Key extends Comparable<Key>>{
             outtotal = outtotal + degree;            
          }
          double outaverage = outtotal/G.vertexCount();
+         profiler.stop();
+         
+         if(cache != null && cachedDegrees == null){
+            Map<String,Object> entry = new LinkedHashMap<String,Object>();
+            entry.put("in",inDegrees);
+            entry.put("out",outDegrees);
+            cache.put(degreesKey,entry);
+         }
          
          //GRAPH DENSITY
          
@@ -99,89 +237,64 @@ public class Driver<Key extends Comparable<Key>>{
          
          //RECIPROCITY
          
+         profiler.start("reciprocity");
          int rec =0;
          Iterator arcs = G.arcs();
-         while(arcs.hasNext()){
-            ArrayList<Key> list = (ArrayList<Key>)arcs.next();
-            if(G.arcExists(list.get(1),list.get(0))){
-               rec++;
-            }   
+         if(G instanceof HashMapGraph && ((HashMapGraph)G).arcIndex() != null){
+            rec = ((HashMapGraph)G).arcIndex().reciprocated();
+         }
+         else{
+            while(arcs.hasNext()){
+               ArrayList<Key> list = (ArrayList<Key>)arcs.next();
+               if(G.arcExists(list.get(1),list.get(0))){
+                  rec++;
+               }   
+            }
          }
          double reciprocity = (double)rec/G.arcCount();
+         profiler.stop();
          
-         //DEGREE CORRELATION
+         //COMPACT SNAPSHOT USED BY THE DEGREE CORRELATION, SCC, GEODESIC AND CENTRALITY STAGES
          
-         //               S1SE - (S2)^2
-         //     r  =     ---------------  
-         //               S1S3 - (S2)^2   
+         profiler.start("compact");
+         if(compact == null) compact = CompactGraph.of(G);
+         profiler.stop();
          
-         BigDecimal Se = new BigDecimal(0);
-         arcs = G.arcs(); //restarts arcs iterator
+         //VERTEX REORDERING (--reorder=degree|rcm|community) SO THAT NEIGHBOURS GET NEARBY IDS BEFORE THE
+         //TRAVERSAL STAGES. THE METRICS DO NOT DEPEND ON THE ORDER
+         
+         String reorder = option(args,"--reorder",null);
+         if(reorder != null){
+            profiler.start("reorder");
+            VertexOrdering.Method method = VertexOrdering.Method.valueOf(reorder.isEmpty() ? "RCM" : reorder.toUpperCase());
+            compact = compact.permute(VertexOrdering.order(compact, method));
+            profiler.stop();
+         }
+         
+         //DEGREE CORRELATION AND DEGREE DISTRIBUTIONS
          
-         while(arcs.hasNext()){
-            ArrayList<Key> list = (ArrayList<Key>)arcs.next();
-            
-            //SE
-            double degreeUin = G.inDegree(list.get(0));
-            double degreeUout = G.outDegree(list.get(0));
-            double degreeVin = G.inDegree(list.get(1));
-            double degreeVout = G.outDegree(list.get(1));
-            
-            double degreeU = degreeUin + degreeUout;
-            double degreeV = degreeVin + degreeVout;
-            BigDecimal x = new BigDecimal(degreeU*degreeV);
-            Se =Se.add(x);
-            
-        }
-        Se =Se.multiply(new BigDecimal(2));
-            
-        //S1
-        
-        BigDecimal S_one = new BigDecimal(0);
-        vertices = G.vertices();
-        while(vertices.hasNext()){
-           Key o = (Key)vertices.next();
-           BigDecimal x = new BigDecimal(G.inDegree(o)+G.outDegree(o));
-           S_one = S_one.add(x);
-        }
-            
-        //S2
-        
-        BigDecimal S_two = new BigDecimal(0);
-        vertices = G.vertices();
-        while(vertices.hasNext()){
-           Key o = (Key)vertices.next();
-           BigDecimal x = new BigDecimal(G.inDegree(o)+G.outDegree(o));
-           BigDecimal y = x.multiply(x);
-           S_two = S_two.add(y);
-           
-        }
-            
-        //S3
-        
-        BigDecimal S_three = new BigDecimal(0);
-        vertices = G.vertices();
-        while(vertices.hasNext()){
-           Key o = (Key)vertices.next();
-           BigDecimal x = new BigDecimal(G.inDegree(o)+G.outDegree(o));
-           BigDecimal y = (x.multiply(x)).multiply(x);//
-           S_three = S_three.add(y);
-        }
-            
          //               S1SE - (S2)^2
          //     r  =     ---------------  
-         //               S1S3 - (S2)^2    
-            
-         BigDecimal S1_times_SE = S_one.multiply(Se);
-         BigDecimal S1_times_S3 = S_one.multiply(S_three);
-         BigDecimal S22 = S_two.multiply(S_two);    
-                        
-                                           //(S1*SE)      -   (S2*S2)      /            S1*S3    -         S2*S2
-         BigDecimal degreeCorrelation = ((   S1_times_SE.subtract(S22)  ).divide(   (S1_times_S3.subtract(S22)),2,RoundingMode.HALF_UP));
+         //               S1S3 - (S2)^2   
+         //
+         //   PLUS THE DIRECTED ASSORTATIVITY r(a,b) OF EVERY SOURCE/TARGET DEGREE PAIR, ALL IN ONE PASS
+         
+         profiler.start("degree-correlation");
+         DegreeStatistics degreeStats = new DegreeStatistics(compact);
+         String degreeDist = option(args,"--degree-dist",null);
+         if(degreeDist != null){
+            PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(degreeDist)));
+            out.println("# degree distributions of "+fileName+", log2 bins");
+            degreeStats.writeLogBinned(out);
+            out.close();
+         }
+         profiler.stop();
          
          
          //CLUSTERING COEFFICIENT
          
+         profiler.start("clustering");
+         
             //NUMBER OF TRIANGLES
          BigDecimal not = new BigDecimal(0);
          arcs = G.arcs();
@@ -205,84 +318,581 @@ public class Driver<Key extends Comparable<Key>>{
             noct = noct.add((degV.multiply(half)).multiply((degV.subtract(one))));
           }
          
-         BigDecimal cluster = (not.multiply(new BigDecimal(3))).divide(noct,2,RoundingMode.HALF_UP );
+         BigDecimal cluster = noct.signum() == 0 ? null : (not.multiply(new BigDecimal(3))).divide(noct,2,RoundingMode.HALF_UP );
+         profiler.stop();
          
-         //GEODESIC 
+         //STRONGLY CONNECTED COMPONENTS
          
-         BigDecimal totalpath = new BigDecimal(0);
-         BigDecimal totallength = new BigDecimal(0);
-         BigDecimal maxpath = new BigDecimal(0);
+         profiler.start("scc");
+         StronglyConnectedComponents scc = new StronglyConnectedComponents(compact);
+         int giant = scc.largestComponent();
+         profiler.stop();
          
-         vertices = G.vertices();
-         Iterator vertices2 = G.vertices();
+         //GEODESIC 
          
-         while(vertices.hasNext()){
+            //ONE BFS PER SOURCE OVER THE COMPACT GRAPH. SOURCES THAT REACH NOTHING ARE SKIPPED,
+            //WITH --geodesic=scc ONLY THE PAIRS INSIDE THE LARGEST SCC ARE MEASURED. THE SEARCHES SWITCH TO
+            //BOTTOM-UP STEPS OVER THE IN-ARCS WHEN THE FRONTIER IS LARGE, UNLESS --bfs=topdown IS GIVEN.
+            //WITH --checkpoint[=FILE] THE PARTIAL SUMS ARE SAVED EVERY --checkpoint-every=SECONDS (DEFAULT 60)
+            //AND AN INTERRUPTED RUN WITH THE SAME OPTIONS RESUMES FROM THE LAST CHECKPOINT.
+            //--progress[=SECONDS] PRINTS THE SOURCES DONE, ARCS PER SECOND AND ETA TO STDERR. --time-budget=SECONDS,
+            //--work-budget=ARCS OR CTRL-C STOP THE SEARCHES EARLY, AND THE REPORT GIVES THE ESTIMATE FROM THE
+            //SOURCES COVERED (A RANDOM SAMPLE) INSTEAD OF THE EXACT VALUES
+         profiler.start("geodesic");
+         boolean giantOnly = "scc".equals(option(args,"--geodesic","all"));
+         boolean topDown = "topdown".equals(option(args,"--bfs","auto"));
+         GeodesicMetrics geodesic = new GeodesicMetrics(compact, scc);
+         geodesic.setDirectionOptimizing(!topDown);
+         if(giantOnly && giant != -1){
+            geodesic.restrictToComponent(giant);
+         }
+         String geodesicKey = cache == null ? null : ResultCache.key(digest,"geodesic",viewKey,giantOnly ? "scc" : "all",topDown ? "topdown" : "auto");
+         Map<String,Object> cachedGeodesic = cache == null ? null : cache.get(geodesicKey);
+         if(cachedGeodesic != null){
+            long[] work = (long[])cachedGeodesic.get("work");
+            geodesic.restore((long[])cachedGeodesic.get("histogram"), (int)work[0], (int)work[1], work[2], work[3], work[4]);
+         }
+         else{
+            final Progress progress = new Progress("geodesic");
+            if(option(args,"--time-budget",null) != null){
+               progress.setTimeBudget((long)(Double.parseDouble(option(args,"--time-budget",null))*1000));
+            }
+            if(option(args,"--work-budget",null) != null){
+               progress.setWorkBudget(Long.parseLong(option(args,"--work-budget",null)));
+            }
+            geodesic.setProgress(progress);
+            String progressOption = option(args,"--progress",null);
+            Thread reporter = progressOption == null ? null : startReporter(progress,
+               (long)(Double.parseDouble(progressOption.isEmpty() ? "5" : progressOption)*1000));
+            final Thread main = Thread.currentThread();
+            Thread interrupt = new Thread(){
+               public void run(){
+                  progress.cancel();
+                  try{ main.join(); }
+                  catch(InterruptedException e){ }
+               }
+            };
+            Runtime.getRuntime().addShutdownHook(interrupt);
             
-            //BFS
-            Key o = (Key)vertices.next(); //S
-            vertices2 = G.vertices();
-            while(vertices2.hasNext()){
-                  
-               Key o2 = (Key)vertices2.next();
-               G.setAnnotation(o2,"COLOR","WHITE"); 
-               G.setAnnotation(o2,"D","INFINITY");
-               G.setAnnotation(o2,"PARENT","NIL");
+            String checkpointOption = option(args,"--checkpoint",null);
+            if(checkpointOption == null){
+               geodesic.run();
             }
-               G.setAnnotation(o,"COLOR","GRAY"); 
-               G.setAnnotation(o,"D",0);
-               G.setAnnotation(o,"PARENT","NIL");            
-            Queue<Key> Q = new LinkedList<Key>();
-            Q.add(o);
-            while(Q.peek() != null){
-               Key x = Q.poll();
-               
-               Iterator outV = G.outAdjacentVertices(x);
-               while(outV.hasNext()){
-                  ArrayList<Key> list = (ArrayList<Key>)outV.next();
-                  
-                  Key z = list.get(1);
-                  if(G.getAnnotation(z,"COLOR").equals("WHITE")){
-                       G.setAnnotation(z,"COLOR","GRAY"); 
-                       G.setAnnotation(z,"D",(Integer)(G.getAnnotation(x,"D"))+1);
-                       
-                       BigDecimal pathlength = new BigDecimal((Integer)G.getAnnotation(z,"D"));
-                       BigDecimal one = new BigDecimal(1);
-                       totalpath = totalpath.add(pathlength); //Adds all "d"
-                       totallength = totallength.add(one); //increments by one for every d
-                       if(pathlength.compareTo(maxpath) > 0){
-                           maxpath = pathlength;
-                       }
-                                              
-                       G.setAnnotation(z,"PARENT",x);  
-                       Q.add(z);                   
-                  }
-                  G.setAnnotation(x,"COLOR","BLACK");
+            else{
+               File checkpoint = new File(checkpointOption.isEmpty() ? fileName+".geodesic.checkpoint" : checkpointOption);
+               geodesic.run(checkpoint, (long)(Double.parseDouble(option(args,"--checkpoint-every","60"))*1000));
+               if(geodesic.resumedAt() > 0){
+                  System.out.println("Resumed the geodesic searches after "+geodesic.resumedAt()+" sources from <"+checkpoint+">");
                }
             }
+            
+            try{ Runtime.getRuntime().removeShutdownHook(interrupt); }
+            catch(IllegalStateException e){ }
+            if(reporter != null) reporter.interrupt();
+            String last = progress.report();
+            if(reporter != null) System.err.println(last);
+            if(!geodesic.isComplete()){
+               reportKey = null;
+            }
+            else if(cache != null){
+               Map<String,Object> entry = new LinkedHashMap<String,Object>();
+               entry.put("histogram",geodesic.distanceHistogram());
+               entry.put("work",new long[]{geodesic.searchedSources(), geodesic.skippedSources(),
+                                           geodesic.arcsExamined(), geodesic.topDownSteps(), geodesic.bottomUpSteps()});
+               cache.put(geodesicKey,entry);
+            }
+         }
+         profiler.stop();
+         
+         //BETWEENNESS CENTRALITY (--betweenness FOR EXACT, --betweenness=N FOR N SAMPLED PIVOTS)
+         
+         String betweennessOption = option(args,"--betweenness",null);
+         int top = Integer.parseInt(option(args,"--top","10"));
+         double[] betweenness = null;
+         if(betweennessOption != null){
+            profiler.start("betweenness");
+            BetweennessCentrality brandes = new BetweennessCentrality(compact);
+            if(betweennessOption.isEmpty()) betweenness = brandes.exact();
+            else betweenness = brandes.sampled(Integer.parseInt(betweennessOption), 42L);
+            profiler.stop();
+         }
+         
+         //PAGERANK (--pagerank OR --pagerank=DAMPING) AND HITS (--hits)
+         
+         String pageRankOption = option(args,"--pagerank",null);
+         PageRank pageRank = null;
+         double[] ranks = null;
+         if(pageRankOption != null){
+            profiler.start("pagerank");
+            pageRank = new PageRank(compact);
+            if(!pageRankOption.isEmpty()) pageRank.setDamping(Double.parseDouble(pageRankOption));
+            ranks = pageRank.run();
+            profiler.stop();
          }
          
+         Hits hits = null;
+         if(option(args,"--hits",null) != null){
+            profiler.start("hits");
+            hits = new Hits(compact);
+            hits.run();
+            profiler.stop();
+         }
+         
+         //TRIAD CENSUS (--triads): THE NUMBER OF VERTEX TRIPLES OF EACH OF THE 16 DIRECTED TRIAD TYPES
+         
+         TriadCensus triads = null;
+         if(option(args,"--triads",null) != null){
+            profiler.start("triads");
+            triads = new TriadCensus(compact);
+            triads.run();
+            profiler.stop();
+         }
+         
+         //COMMUNITIES (--louvain OR --louvain=FILE): LOUVAIN ON THE WEIGHTED UNDIRECTED PROJECTION, THE VNA STRENGTH
+         //COLUMN GIVING THE WEIGHTS. THE COMMUNITY IDS BECOME THE "community" VERTEX ANNOTATION, AND WITH A FILE
+         //ARE ALSO WRITTEN TO IT AS A VNA NODE DATA SECTION
+         
+         String louvainOption = option(args,"--louvain",null);
+         Louvain louvain = null;
+         if(louvainOption != null){
+            profiler.start("louvain");
+            louvain = new Louvain(G);
+            louvain.run();
+            louvain.annotate("community");
+            if(!louvainOption.isEmpty()) louvain.write(new File(louvainOption));
+            profiler.stop();
+         }
+         
+         //SIMILAR VERTICES (--similar=KEY, WITH --similarity=common|jaccard|adamic-adar AND --similar-by=out|in|total):
+         //THE TOP VERTICES BY NEIGHBOURHOOD OVERLAP WITH KEY, THE NEIGHBOUR LISTS INTERSECTED BY THE INTERSECTION KERNELS
+         
+         String similarOption = option(args,"--similar",null);
+         NeighbourhoodOverlap.Measure measure = NeighbourhoodOverlap.Measure.valueOf(
+            option(args,"--similarity","jaccard").toUpperCase().replace('-','_'));
+         CoreDecomposition.Degree similarBy = CoreDecomposition.Degree.valueOf(option(args,"--similar-by","total").toUpperCase());
+         int[] similar = null;
+         double[] similarity = new double[Math.max(0,top)];
+         if(similarOption != null){
+            int v = compact.id(similarOption);
+            if(v == -1) throw new NoSuchElementException("--similar: no vertex "+similarOption);
+            profiler.start("similar");
+            similar = new NeighbourhoodOverlap(compact,similarBy).mostSimilar(measure,v,top,similarity);
+            profiler.stop();
+         }
+         
+         //DISTANCE INDEX (--distance-index OR --distance-index=FILE, ANSWERING EVERY --distance=SOURCE,TARGET).
+         //A PRUNED LANDMARK LABELING OF THE GRAPH GIVES EXACT POINT-TO-POINT DISTANCES WITHOUT A BFS PER QUERY.
+         //WITH A FILE THE INDEX IS READ FROM IT IF IT WAS BUILT FOR THE SAME FILE CONTENTS AND VIEW OPTIONS,
+         //OTHERWISE BUILT AND WRITTEN
+         
+         String distanceIndexOption = option(args,"--distance-index",null);
+         PrunedLandmarkLabeling distances = null;
+         double queryMicros = 0, bfsMillis = 0;
+         if(distanceIndexOption != null){
+            profiler.start("distance-index");
+            File indexFile = distanceIndexOption.isEmpty() ? null : new File(distanceIndexOption);
+            String fingerprint = (digest != null ? digest : ResultCache.digest(new File(fileName)))+"|"+viewKey;
+            if(indexFile != null && indexFile.exists()){
+               try{
+                  distances = PrunedLandmarkLabeling.read(indexFile,fingerprint);
+               }
+               catch(IOException o){
+                  System.out.println("Rewriting <"+distanceIndexOption+">: "+o.getMessage());
+               }
+            }
+            if(distances == null){
+               distances = PrunedLandmarkLabeling.build(compact);
+               if(indexFile != null) distances.write(indexFile,fingerprint);
+            }
+            profiler.stop();
+            
+            //QUERY COST AGAINST THE BFS IT REPLACES, FROM FIXED RANDOM PAIRS AND SOURCES
+            
+            int n = compact.vertexCount();
+            Random random = new Random(42L);
+            long sum = 0, start = System.nanoTime();
+            for(int i = 0; i < DISTANCE_SAMPLES; i++) sum += distances.distance(random.nextInt(n),random.nextInt(n));
+            queryMicros = (System.nanoTime()-start)/1e3/DISTANCE_SAMPLES;
+            DirectionOptimizingBfs bfs = new DirectionOptimizingBfs(compact);
+            start = System.nanoTime();
+            for(int i = 0; i < BFS_SAMPLES; i++) sum += bfs.search(random.nextInt(n));
+            bfsMillis = (System.nanoTime()-start)/1e6/BFS_SAMPLES;
+         }
          
 
          
-         System.out.println("-----------------------------------------------");
-         System.out.println("    Graph   <"+fileName+">");
-         System.out.println("-----------------------------------------------");
-         System.out.println("|V| = "+G.vertexCount());
-         System.out.println("|E| = "+G.arcCount());
-         System.out.println("Density ~= "+density);
-         System.out.println("INDEGREE: minimum~= "+inmin);
-         System.out.println("INDEGREE: maximum~= "+inmax);
-         System.out.println("INDEGREE: average~= "+inaverage);
-         System.out.println("OUTDEGREE: minimum~= "+outmin);
-         System.out.println("OUTDEGREE: maximum~= "+outmax);
-         System.out.println("OUTDEGREE: average~= "+outaverage);
-         System.out.println("Reciprocity percentage: ~= "+ reciprocity);
-         System.out.println("Undirected Degree Correlation: ~= "+ degreeCorrelation);
-         System.out.println(" (!Inaccurate) Clustering coefficient: ~= "+ cluster);
-         System.out.println("Mean Geodesic Path ~= "+ totalpath.divide(totallength,2,RoundingMode.HALF_UP));
-         System.out.println("Directed Diameter~= "+ maxpath);
+         ByteArrayOutputStream report = new ByteArrayOutputStream();
+         PrintStream out = new PrintStream(report);
+         out.println("-----------------------------------------------");
+         out.println("    Graph   <"+title+">");
+         out.println("-----------------------------------------------");
+         out.println("|V| = "+G.vertexCount());
+         out.println("|E| = "+G.arcCount());
+         if(compressed != null){
+            out.println("Compressed adjacency ~= "+(float)compressed.bitsPerArc()+" bits/arc ("
+               +(float)((double)compressed.byteSize()/compressed.arcCount())+" bytes/arc with predecessors and offsets)");
+         }
+         out.println("Density ~= "+density);
+         out.println("INDEGREE: minimum~= "+inmin);
+         out.println("INDEGREE: maximum~= "+inmax);
+         out.println("INDEGREE: average~= "+inaverage);
+         out.println("OUTDEGREE: minimum~= "+outmin);
+         out.println("OUTDEGREE: maximum~= "+outmax);
+         out.println("OUTDEGREE: average~= "+outaverage);
+         out.println("Reciprocity percentage: ~= "+ reciprocity);
+         out.println("Undirected Degree Correlation: ~= "+ degreeStats.undirectedCorrelation());
+         out.println("Directed Assortativity r(out,in) ~= "+ degreeStats.assortativity(CoreDecomposition.Degree.OUT,CoreDecomposition.Degree.IN));
+         out.println("Directed Assortativity r(out,out) ~= "+ degreeStats.assortativity(CoreDecomposition.Degree.OUT,CoreDecomposition.Degree.OUT));
+         out.println("Directed Assortativity r(in,in) ~= "+ degreeStats.assortativity(CoreDecomposition.Degree.IN,CoreDecomposition.Degree.IN));
+         out.println("Directed Assortativity r(in,out) ~= "+ degreeStats.assortativity(CoreDecomposition.Degree.IN,CoreDecomposition.Degree.OUT));
+         out.println(" (!Inaccurate) Clustering coefficient: ~= "+ (cluster == null ? "n/a" : cluster));
+         String within = giantOnly ? " (largest SCC)" : "";
+         out.println("Mean Geodesic Path"+within+" ~= "+ (geodesic.reachablePairs() == 0 ? "no pairs covered" : geodesic.meanGeodesic(2).toString()));
+         out.println("Directed Diameter"+within+"~= "+ geodesic.diameter());
+         if(!geodesic.isComplete()){
+            out.println("Geodesic sources covered = "+geodesic.coveredSources()+" of "+geodesic.sourceCount()+" ("
+               +new BigDecimal(100.0*geodesic.coveredSources()/geodesic.sourceCount()).setScale(2,RoundingMode.HALF_UP)+"%, "
+               +"random sample): mean geodesic path estimated, diameter is a lower bound");
+         }
+         out.println("Strongly connected components = "+ scc.componentCount());
+         if(giant != -1){
+            out.println("Largest SCC = "+ scc.size(giant)+" vertices ("
+               + new BigDecimal(100.0*scc.size(giant)/G.vertexCount()).setScale(2,RoundingMode.HALF_UP)+"%)");
+         }
+         out.println("SCC size distribution (size:count) = "+ scc.sizeDistribution());
+         out.println("BFS sources searched = "+ geodesic.searchedSources()+", skipped (reach nothing) = "+ geodesic.skippedSources());
+         out.println("BFS arcs examined = "+ geodesic.arcsExamined()+" (top-down steps "+ geodesic.topDownSteps()
+                     +", bottom-up steps "+ geodesic.bottomUpSteps()+")");
+         if(betweenness != null){
+            printTop("Betweenness centrality ("+(betweennessOption.isEmpty() ? "exact" : betweennessOption+" sampled pivots")+")",
+                     compact, betweenness, top, out);
+         }
+         if(ranks != null){
+            printTop("PageRank ("+pageRank.iterations()+" iterations, L1 delta "+pageRank.delta()+")", compact, ranks, top, out);
+         }
+         if(hits != null){
+            printTop("HITS hubs ("+hits.iterations()+" iterations)", compact, hits.hubs(), top, out);
+            printTop("HITS authorities", compact, hits.authorities(), top, out);
+         }
+         if(triads != null){
+            out.println("Triad census:");
+            for(int t = 0; t < TriadCensus.NAMES.length; t++){
+               out.println("   "+TriadCensus.NAMES[t]+" = "+triads.count(t));
+            }
+         }
+         if(louvain != null){
+            StringBuilder levels = new StringBuilder();
+            for(double q : louvain.levelModularity()){
+               levels.append(levels.length() == 0 ? "" : ", ").append(new BigDecimal(q).setScale(4,RoundingMode.HALF_UP));
+            }
+            out.println("Louvain communities = "+louvain.communityCount()+", modularity ~= "
+               +new BigDecimal(louvain.modularity()).setScale(4,RoundingMode.HALF_UP)+" (levels "+levels+")");
+            int[] sizes = louvain.sizes();
+            out.println("Largest communities = "+Arrays.toString(Arrays.copyOf(sizes,Math.min(top,sizes.length))));
+         }
+         if(similar != null){
+            out.println("Most similar to "+similarOption+" ("+measure.toString().toLowerCase().replace('_','-')+", "
+               +similarBy.toString().toLowerCase()+" neighbours, "+Intersection.kernel()+") top "+similar.length+":");
+            for(int i = 0; i < similar.length; i++){
+               out.println("   "+(i+1)+". "+compact.key(similar[i])+" ~= "+similarity[i]);
+            }
+         }
+         if(distances != null){
+            out.println("Distance index ~= "+distances.labelEntries()+" label entries ("
+               +new BigDecimal((double)distances.labelEntries()/Math.max(1,distances.vertexCount())).setScale(1,RoundingMode.HALF_UP)
+               +" per vertex, "+distances.byteSize()/1024+" KB), "+(distances.buildNanos() == 0 ? "read from "+distanceIndexOption
+               : "built in "+distances.buildNanos()/1000000+" ms"));
+            out.println("Distance query ~= "+new BigDecimal(queryMicros).setScale(3,RoundingMode.HALF_UP)+" us (one BFS ~= "
+               +new BigDecimal(bfsMillis).setScale(3,RoundingMode.HALF_UP)+" ms)");
+            for(String arg : args){
+               if(!arg.startsWith("--distance=")) continue;
+               String[] pair = arg.substring("--distance=".length()).split(",");
+               if(pair.length != 2) throw new IllegalArgumentException("--distance=SOURCE,TARGET");
+               if(distances.id(pair[0]) == -1 || distances.id(pair[1]) == -1){
+                  out.println("Distance "+pair[0]+" -> "+pair[1]+": no such vertex");
+                  continue;
+               }
+               int d = distances.distance(distances.id(pair[0]),distances.id(pair[1]));
+               out.println("Distance "+pair[0]+" -> "+pair[1]+" = "+(d == -1 ? "unreachable" : ""+d));
+            }
+         }
+         
+         out.flush();
+         System.out.print(report);
+         if(reportKey != null){
+            Map<String,Object> entry = new LinkedHashMap<String,Object>();
+            entry.put("report",report.toString());
+            cache.put(reportKey,entry);
+         }
+         
+         printProfile(args, profiler);
          
       }
       catch (IOException o){ System.out.println("ERROR: "+o.getMessage()); }
+      finally{
+         if(offHeap instanceof AutoCloseable){
+            try{
+               ((AutoCloseable)offHeap).close();
+            }
+            catch(Exception e){ }
+         }
+      }
+   }
+   
+   /**
+    * Calls a method of OffHeapGraph through reflection: a static method when target is null, a method without
+    * arguments when type is null. Driver names OffHeapGraph nowhere else, so it compiles and runs without it
+    * (OffHeapGraph needs the Foreign Function & Memory API of JDK 22) unless --offheap is given.
+    */
+   static Object callOffHeap(Object target, String method, Class<?> type, Object argument) throws IOException{
+      try{
+         Class<?> offHeapGraph = Class.forName("networkmetrics.OffHeapGraph");
+         if(type == null) return offHeapGraph.getMethod(method).invoke(target);
+         return offHeapGraph.getMethod(method,type).invoke(target,argument);
+      }
+      catch(java.lang.reflect.InvocationTargetException e){
+         if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+         if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+         if(e.getCause() instanceof Error) throw (Error)e.getCause();
+         throw new RuntimeException(e.getCause());
+      }
+      catch(ReflectiveOperationException | LinkageError e){
+         throw new UnsupportedOperationException("--offheap needs OffHeapGraph, compiled and run on JDK 22+ or with "
+                                                 +"--enable-preview on JDK 21",e);
+      }
+   }
+   
+   /**
+    * Tails the file given first in args into a StreamingMetrics and prints a snapshot every --follow=SECONDS
+    * (default 10) and every --follow-arcs=N arcs. --window=N keeps the last N arcs, --window=Ns the arcs of the
+    * last N seconds. --batch=N bounds the arcs applied between snapshot checks, --follow-idle=SECONDS stops
+    * after the file has not grown for that long. --follow-geodesic[=SECONDS] publishes a snapshot of the graph
+    * every SECONDS (default 60) and computes its geodesic metrics on a background thread while the arcs keep
+    * arriving, one snapshot at a time.
+    */
+   static void runFollow(String[] args) throws IOException{
+      String fileName = args[0];
+      String interval = option(args,"--follow","");
+      long everyMillis = (long)(1000*Double.parseDouble(interval.isEmpty() ? "10" : interval));
+      long everyArcs = Long.parseLong(option(args,"--follow-arcs","0"));
+      int batch = Integer.parseInt(option(args,"--batch","100000"));
+      String idle = option(args,"--follow-idle",null);
+      long idleMillis = idle == null ? Long.MAX_VALUE : (long)(1000*Double.parseDouble(idle));
+      
+      StreamingMetrics metrics = new StreamingMetrics();
+      String window = option(args,"--window",null);
+      if(window != null && window.endsWith("s")){
+         metrics.setWindowMillis((long)(1000*Double.parseDouble(window.substring(0,window.length()-1))));
+      }
+      else if(window != null){
+         metrics.setWindowArcs(Integer.parseInt(window));
+      }
+      
+      String geodesicInterval = option(args,"--follow-geodesic",null);
+      long geodesicMillis = geodesicInterval == null ? 0 : (long)(1000*Double.parseDouble(geodesicInterval.isEmpty() ? "60" : geodesicInterval));
+      metrics.setVersioning(geodesicInterval != null);
+      
+      EdgeLogFollower follower = new EdgeLogFollower(new File(fileName), metrics);
+      long start = System.currentTimeMillis();
+      long lastSnapshot = start, lastGrowth = start, arcsSinceSnapshot = 0;
+      long lastGeodesic = start;
+      Thread geodesic = null;
+      System.out.println("Following <"+fileName+">"+(window == null ? "" : ", window "+window));
+      while(true){
+         long now = System.currentTimeMillis();
+         int arcs = follower.poll(batch,now);
+         arcsSinceSnapshot += arcs;
+         if(arcs > 0) lastGrowth = now;
+         
+         if(now - lastSnapshot >= everyMillis || (everyArcs > 0 && arcsSinceSnapshot >= everyArcs)){
+            System.out.println(String.format("[%8.1fs] ",(now-start)/1000.0)+metrics.snapshot(now));
+            lastSnapshot = now;
+            arcsSinceSnapshot = 0;
+         }
+         
+            //THE GEODESIC METRICS OF A PUBLISHED EPOCH ARE COMPUTED ON A BACKGROUND THREAD FROM AN IMMUTABLE
+            //SNAPSHOT, SO THE ARCS KEEP ARRIVING WHILE THEY RUN. A NEW EPOCH IS ONLY TAKEN WHEN THE LAST RUN IS DONE
+         if(geodesicInterval != null && (geodesic == null || !geodesic.isAlive()) && now - lastGeodesic >= geodesicMillis){
+            geodesic = startFollowGeodesic(metrics.versions().publish(), start);
+            lastGeodesic = now;
+         }
+         if(now - lastGrowth >= idleMillis){
+            System.out.println(String.format("[%8.1fs] ",(now-start)/1000.0)+metrics.snapshot(now));
+            if(geodesic != null){
+               try{
+                  geodesic.join();
+               }
+               catch(InterruptedException e){ }
+            }
+            return;
+         }
+         if(arcs < batch){
+            try{
+               Thread.sleep(FOLLOW_POLL_MILLIS);
+            }
+            catch(InterruptedException e){
+               return;
+            }
+         }
+      }
+   }
+   
+   /**
+    * Starts a daemon thread that computes and prints the geodesic metrics of one snapshot of a followed graph.
+    */
+   static Thread startFollowGeodesic(final GraphSnapshot<String,String> snapshot, final long start){
+      Thread thread = new Thread("follow-geodesic"){
+         public void run(){
+            long begin = System.currentTimeMillis();
+            CompactGraph<String> compact = snapshot.compact();
+            GeodesicMetrics geodesic = new GeodesicMetrics(compact, new StronglyConnectedComponents(compact));
+            geodesic.run();
+            long end = System.currentTimeMillis();
+            System.out.println(String.format("[%8.1fs] ",(end-start)/1000.0)+"epoch "+snapshot.epoch()
+                  +": |V| = "+compact.vertexCount()+", |E| = "+compact.arcCount()
+                  +", mean geodesic ~= "+(geodesic.reachablePairs() == 0 ? "n/a" : geodesic.meanGeodesic(2).toString())
+                  +", diameter = "+geodesic.diameter()+" ("+(end-begin)+" ms)");
+         }
+      };
+      thread.setDaemon(true);
+      thread.start();
+      return thread;
+   }
+   
+   static final long FOLLOW_POLL_MILLIS = 250;
+   static final int DISTANCE_SAMPLES = 100000;
+   static final int BFS_SAMPLES = 10;
+   
+   /**
+    * Streams the VNA file into sorted runs, merges them into a memory mapped CSR file and computes the metrics
+    * that only need sequential or binary-search access to the arcs.
+    */
+   static void runExternal(String[] args, StageProfiler profiler) throws IOException{
+      String fileName = args[0];
+      String tmp = option(args,"--external","");
+      File tempDirectory = tmp.isEmpty() ? new File(System.getProperty("java.io.tmpdir")) : new File(tmp);
+      tempDirectory.mkdirs();
+      File csr = File.createTempFile("graph", ".csr", tempDirectory);
+      
+      try{
+         profiler.start("external-build");
+         ExternalCsrBuilder builder = new ExternalCsrBuilder(tempDirectory);
+         builder.setRunArcs(Integer.parseInt(option(args,"--run-arcs",""+ExternalCsrBuilder.defaultRunArcs())));
+         builder.build(new File(fileName), csr);
+         profiler.stop();
+         
+         MappedCsrGraph G = new MappedCsrGraph(csr);
+         try{
+            ExternalMetrics metrics = new ExternalMetrics(G);
+            profiler.start("degree");
+            metrics.degrees();
+            profiler.stop();
+            profiler.start("reciprocity");
+            metrics.reciprocity();
+            profiler.stop();
+            profiler.start("geodesic");
+            metrics.geodesic();
+            profiler.stop();
+            
+            System.out.println("-----------------------------------------------");
+            System.out.println("    Graph   <"+fileName+"> (out-of-core, "+builder.runCount()+" runs)");
+            System.out.println("-----------------------------------------------");
+            System.out.println("|V| = "+G.vertexCount());
+            System.out.println("|E| = "+G.arcCount());
+            if(builder.duplicateCount() > 0) System.out.println("Duplicate arcs dropped = "+builder.duplicateCount());
+            System.out.println("Density ~= "+metrics.density());
+            System.out.println("INDEGREE: minimum~= "+(double)metrics.inMinimum());
+            System.out.println("INDEGREE: maximum~= "+(double)metrics.inMaximum());
+            System.out.println("INDEGREE: average~= "+metrics.averageDegree());
+            System.out.println("OUTDEGREE: minimum~= "+(double)metrics.outMinimum());
+            System.out.println("OUTDEGREE: maximum~= "+(double)metrics.outMaximum());
+            System.out.println("OUTDEGREE: average~= "+metrics.averageDegree());
+            System.out.println("Reciprocity percentage: ~= "+ metrics.reciprocityFraction());
+            System.out.println("Mean Geodesic Path ~= "+ (metrics.reachablePairs() == 0 ? "no pairs covered" : metrics.meanGeodesic(2).toString()));
+            System.out.println("Directed Diameter~= "+ metrics.diameter());
+         }
+         finally{
+            G.close();
+         }
+      }
+      finally{
+         csr.delete();
+      }
+      
+      printProfile(args, profiler);
+   }
+   
+   /**
+    * Prints the stage profile if --profile or --profile=json is given.
+    */
+   static void printProfile(String[] args, StageProfiler profiler){
+      String profile = option(args,"--profile",null);
+      if(profile != null){
+         System.out.println("-----------------------------------------------");
+         if(profile.equals("json")) System.out.println(profiler.toJson());
+         else System.out.print(profiler.toTable());
+      }
+   }
+   
+   /**
+    * Returns the options that change the printed report, sorted so that their order does not matter. The
+    * profiling, cache, off-heap, arc index, checkpoint, progress and budget options only change how the report is
+    * computed; a report cut short by a budget is never cached.
+    */
+   static String metricOptions(String[] args){
+      ArrayList<String> options = new ArrayList<String>();
+      for(int i = 1; i < args.length; i++){
+         if(!args[i].startsWith("--profile") && !args[i].startsWith("--cache") && !args[i].startsWith("--offheap")
+               && !args[i].startsWith("--arc-index") && !args[i].startsWith("--checkpoint")
+               && !args[i].startsWith("--progress") && !args[i].startsWith("--time-budget")
+               && !args[i].startsWith("--work-budget")){
+            options.add(args[i]);
+         }
+      }
+      Collections.sort(options);
+      return String.join(" ",options);
+   }
+   
+   /**
+    * Starts a daemon thread that prints the progress to stderr every interval until it is interrupted.
+    */
+   static Thread startReporter(final Progress progress, final long intervalMillis){
+      Thread reporter = new Thread("progress"){
+         public void run(){
+            try{
+               while(true){
+                  Thread.sleep(intervalMillis);
+                  System.err.println(progress.report());
+               }
+            }
+            catch(InterruptedException e){ }
+         }
+      };
+      reporter.setDaemon(true);
+      reporter.start();
+      return reporter;
+   }
+   
+   /**
+    * Prints the k vertices with the highest scores, highest first.
+    */
+   static void printTop(String title, CompactGraph compact, double[] scores, int k, PrintStream out){
+      int[] best = Ranking.top(scores,k);
+      out.println(title+" top "+best.length+":");
+      for(int i = 0; i < best.length; i++){
+         out.println("   "+(i+1)+". "+compact.key(best[i])+" ~= "+scores[best[i]]);
+      }
+   }
+   
+   /**
+    * Returns the value of a command line option given as --name=value, an empty String if the option is given
+    * without a value, or fallback if it is absent. args[0] is always the file name and is never an option.
+    */
+   static String option(String[] args, String name, String fallback){
+      for(int i = 1; i < args.length; i++){
+         if(args[i].equals(name)) return "";
+         if(args[i].startsWith(name+"=")) return args[i].substring(name.length()+1);
+      }
+      return fallback;
    }
 }
@@ -0,0 +1,77 @@
+package networkmetrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Streams a plain edge list into a GraphSink: one arc per line, "source target" followed by any other values
+ * (a weight, a timestamp), separated by whitespace or commas, as in the SNAP and KONECT collections. Lines starting
+ * with '#' or '%' are comments. An edge list has no vertex section, so every vertex is passed to the sink just
+ * before the first arc that names it, with its key as its only field.
+ */
+public class EdgeListReader {
+
+	private EdgeListReader(){}
+
+	/**
+	 * Reads edge list text into a sink.
+	 * @param in the edge list text
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the text cannot be read or a line has a single field
+	 */
+	public static void read(BufferedReader in, GraphSink sink) throws IOException{
+		if(in == null || sink == null) throw new NullPointerException();
+
+		HashSet<String> seen = new HashSet<String>();
+		sink.vertexProperties(new String[0]);
+		sink.arcProperties(new String[0]);
+
+		String line;
+		while((line = in.readLine()) != null){
+			String[] fields = fields(line);
+			if(fields.length == 0 || fields[0].startsWith("#") || fields[0].startsWith("%")) continue;
+			if(fields.length < 2) throw new IOException("Invalid edge: " + line);
+
+			if(seen.add(fields[0])) sink.vertex(new String[]{ fields[0] });
+			if(seen.add(fields[1])) sink.vertex(new String[]{ fields[1] });
+			sink.arc(fields);
+		}
+	}
+
+	/**
+	 * Splits a line at runs of whitespace and commas, as VnaReader.fields splits at whitespace.
+	 */
+	static String[] fields(String line){
+		ArrayList<String> fields = null;
+		String first = null;
+		int n = line.length(), i = 0, count = 0;
+
+		while(i < n){
+			while(i < n && isSeparator(line.charAt(i))) i++;
+			if(i == n) break;
+			int start = i;
+			while(i < n && !isSeparator(line.charAt(i))) i++;
+			String field = line.substring(start, i);
+
+			if(count == 0) first = field;
+			else{
+				if(fields == null){
+					fields = new ArrayList<String>(4);
+					fields.add(first);
+				}
+				fields.add(field);
+			}
+			count++;
+		}
+
+		if(count == 0) return new String[0];
+		if(count == 1) return new String[]{ first };
+		return fields.toArray(new String[count]);
+	}
+
+	private static boolean isSeparator(char c){
+		return c == ',' || Character.isWhitespace(c);
+	}
+}
@@ -0,0 +1,143 @@
+package networkmetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Follows a growing VNA file or edge log, in the manner of tail -f, and streams the lines appended since the
+ * previous poll into a StreamingMetrics. A VNA file is read section by section as VnaReader reads it; a file
+ * that does not start with a VNA header is an edge log with one "source target ..." arc per line. Lines are
+ * applied only once their newline has been written, so a line being appended is never split.
+ *
+ * If the file shrinks it was truncated or replaced, and it is read again from the start into cleared metrics.
+ */
+public class EdgeLogFollower {
+
+	private static final int BUFFER = 1 << 16;
+
+	private final File             file;
+	private final StreamingMetrics metrics;
+	private final byte[]           buffer;
+	private ByteArrayOutputStream  partial;
+	private long                   position;
+	private boolean                started;
+	private boolean                vertexSection;
+	private boolean                columnNames;
+	private long                   lines;
+
+	/**
+	 * Constructs a follower that has read nothing yet.
+	 * @param file the VNA file or edge log
+	 * @param metrics the receiver of the vertices and arcs
+	 */
+	public EdgeLogFollower(File file, StreamingMetrics metrics){
+		if(file == null || metrics == null) throw new NullPointerException();
+
+		this.file    = file;
+		this.metrics = metrics;
+		buffer       = new byte[BUFFER];
+		partial      = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Applies the complete lines appended since the previous poll, at most maxArcs of them, then expires the
+	 * arcs that have left the window.
+	 * @param maxArcs the largest number of arcs applied, so that a large backlog is applied in batches
+	 * @param now the arrival time given to the arcs in milliseconds
+	 * @return the number of arcs applied
+	 * @throws IOException if the file cannot be read or a tie line is invalid
+	 */
+	public int poll(int maxArcs, long now) throws IOException{
+		if(maxArcs < 1) throw new IllegalArgumentException();
+
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try{
+			if(in.length() < position){
+				metrics.clear();
+				position      = 0;
+				lines         = 0;
+				started       = false;
+				vertexSection = false;
+				columnNames   = false;
+				partial.reset();
+			}
+
+			int arcs = 0;
+			in.seek(position);
+			while(arcs < maxArcs){
+				int read = in.read(buffer);
+				if(read <= 0) break;
+
+				int lineStart = 0, i = 0;
+				for(; i < read && arcs < maxArcs; i++){
+					if(buffer[i] != '\n') continue;
+
+					partial.write(buffer, lineStart, i - lineStart);
+					if(line(partial.toString(StandardCharsets.UTF_8), now)) arcs++;
+					partial.reset();
+					lineStart = i + 1;
+				}
+				// a batch that ends mid-buffer resumes after its last line
+				if(arcs == maxArcs && i < read){
+					position += lineStart;
+					break;
+				}
+				partial.write(buffer, lineStart, read - lineStart);
+				position += read;
+			}
+			// the unterminated tail is read again by the next poll
+			position -= partial.size();
+			partial.reset();
+
+			metrics.expire(now);
+			return arcs;
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Applies one line and returns TRUE if it was an arc.
+	 */
+	private boolean line(String line, long now) throws IOException{
+		lines++;
+		if(!started){
+			started       = !line.trim().isEmpty();
+			vertexSection = VnaReader.isNodeHeader(line);
+			columnNames   = vertexSection;
+			if(!started || vertexSection) return false;
+		}
+		if(VnaReader.isTieHeader(line)){
+			vertexSection = false;
+			columnNames   = true;
+			return false;
+		}
+		if(columnNames){
+			columnNames = false;
+			return false;
+		}
+
+		String[] fields = VnaReader.fields(line);
+		if(fields.length == 0 || fields[0].startsWith("#")) return false;
+		if(vertexSection){
+			metrics.insertVertex(fields[0]);
+			return false;
+		}
+		if(fields.length < 2) throw new IOException("Invalid tie at line "+lines+": "+line);
+
+		metrics.insertArc(fields[0], fields[1], now);
+		return true;
+	}
+
+	/**
+	 * Returns the number of bytes of the file applied so far.
+	 * @return the offset of the first unread line
+	 */
+	public long position(){
+		return position;
+	}
+}
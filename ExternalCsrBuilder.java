@@ -0,0 +1,263 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builds a disk resident CSR file (see MappedCsrGraph) from a graph file whose arcs do not fit in the heap.
+ * The tie section is streamed into a buffer of packed (source,destination) ids; every time the buffer is full
+ * it is sorted and written out as a run. The runs are then merged into the sorted target array of the CSR file
+ * while the degrees are counted. Duplicate arcs are dropped.
+ *
+ * Heap use is bounded by the run buffer plus O(|V|): the map from vertex keys to ids and the degree arrays.
+ */
+public class ExternalCsrBuilder {
+
+	private static final int BUFFER = 1 << 16;
+
+	private final File tempDirectory;
+	private int        runArcs;
+	private int        runs;
+	private long       duplicates;
+
+	/**
+	 * Returns the run size used when none is set: a quarter of the maximum heap, between 1K and 64M arcs.
+	 * @return the default run size in arcs
+	 */
+	public static int defaultRunArcs(){
+		long arcs = Runtime.getRuntime().maxMemory() / 4 / 8;
+		return (int) Math.max(1 << 10, Math.min(1 << 26, arcs));
+	}
+
+	/**
+	 * Constructs a builder that keeps its runs in the given directory.
+	 * @param tempDirectory the directory for the sorted runs
+	 */
+	public ExternalCsrBuilder(File tempDirectory){
+		if(tempDirectory == null) throw new NullPointerException();
+
+		this.tempDirectory = tempDirectory;
+		runArcs = defaultRunArcs();
+	}
+
+	/**
+	 * Sets the number of arcs buffered in the heap before a run is written (8 bytes per arc).
+	 * @param runArcs the run size in arcs
+	 */
+	public void setRunArcs(int runArcs){
+		if(runArcs < 1) throw new IllegalArgumentException();
+
+		this.runArcs = runArcs;
+	}
+
+	/**
+	 * Streams a graph file into a CSR file.
+	 * @param vna the graph file, in any GraphReader format
+	 * @param csr the CSR file to write
+	 * @throws IOException if a file cannot be read or written, or a tie names an unknown vertex
+	 */
+	public void build(File vna, File csr) throws IOException{
+		if(vna == null || csr == null) throw new NullPointerException();
+
+		final HashMap<String,Integer> ids   = new HashMap<String,Integer>();
+		final ArrayList<File>         files = new ArrayList<File>();
+		final long[]                  buffer = new long[runArcs];
+		final int[]                   fill   = new int[1];
+
+		runs       = 0;
+		duplicates = 0;
+		tempDirectory.mkdirs();
+
+		try{
+			GraphReader.read(vna, new GraphSink(){
+				public void vertexProperties(String[] names){}
+
+				public void vertex(String[] fields) throws IOException{
+					if(ids.containsKey(fields[0])) throw new IOException("Duplicate vertex: " + fields[0]);
+					ids.put(fields[0], ids.size());
+				}
+
+				public void arcProperties(String[] names){}
+
+				public void arc(String[] fields) throws IOException{
+					Integer source = ids.get(fields[0]), destination = ids.get(fields[1]);
+					if(source == null || destination == null) throw new IOException("Unknown vertex in tie: " + fields[0] + " " + fields[1]);
+
+					buffer[fill[0]++] = pack(source, destination);
+					if(fill[0] == buffer.length){
+						files.add(writeRun(buffer, fill[0]));
+						fill[0] = 0;
+					}
+				}
+			});
+			if(fill[0] > 0 || files.isEmpty()) files.add(writeRun(buffer, fill[0]));
+
+			merge(files, ids.size(), csr);
+		}
+		finally{
+			for(File file : files) file.delete();
+		}
+	}
+
+	/**
+	 * Returns the number of sorted runs written by the last build.
+	 * @return the number of runs
+	 */
+	public int runCount(){
+		return runs;
+	}
+
+	/**
+	 * Returns the number of duplicate arcs dropped by the last build.
+	 * @return the number of duplicates
+	 */
+	public long duplicateCount(){
+		return duplicates;
+	}
+
+	static long pack(int source, int destination){
+		return ((long) source << 32) | (destination & 0xffffffffL);
+	}
+
+	private File writeRun(long[] buffer, int length) throws IOException{
+		Arrays.sort(buffer, 0, length);
+
+		File file = File.createTempFile("run", ".arcs", tempDirectory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER));
+		try{
+			for(int i = 0; i < length; i++) out.writeLong(buffer[i]);
+		}
+		finally{
+			out.close();
+		}
+		runs++;
+		return file;
+	}
+
+	/**
+	 * Merges the sorted runs with a binary heap of run heads. The targets go to a temporary file while the
+	 * degrees are counted, then the CSR file is written as header, offsets, in-degrees and targets.
+	 */
+	private void merge(ArrayList<File> files, int n, File csr) throws IOException{
+		int k = files.size();
+		DataInputStream[] in   = new DataInputStream[k];
+		long[]            head = new long[k];
+		int[]             heap = new int[k];
+		int               size = 0;
+
+		int[] outDegree = new int[n];
+		int[] inDegree  = new int[n];
+		long  arcs      = 0;
+
+		File targets = File.createTempFile("targets", ".ids", tempDirectory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targets), BUFFER));
+		try{
+			for(int i = 0; i < k; i++){
+				in[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(files.get(i)), BUFFER));
+				if(next(in[i], head, i)){
+					heap[size] = i;
+					up(heap, size++, head);
+				}
+			}
+
+			long last = -1;
+			while(size > 0){
+				int  run = heap[0];
+				long arc = head[run];
+
+				if(arc != last){
+					int source = (int) (arc >>> 32), destination = (int) arc;
+					out.writeInt(destination);
+					outDegree[source]++;
+					inDegree[destination]++;
+					arcs++;
+					last = arc;
+				}
+				else duplicates++;
+
+				if(!next(in[run], head, run)) heap[0] = heap[--size];
+				down(heap, size, head);
+			}
+		}
+		finally{
+			for(DataInputStream stream : in) if(stream != null) stream.close();
+			out.close();
+		}
+
+		try{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(csr), BUFFER));
+			try{
+				out.writeInt(MappedCsrGraph.MAGIC);
+				out.writeInt(MappedCsrGraph.VERSION);
+				out.writeInt(n);
+				out.writeLong(arcs);
+				out.writeInt(0);
+
+				long offset = 0;
+				for(int v = 0; v < n; v++){
+					out.writeLong(offset);
+					offset += outDegree[v];
+				}
+				out.writeLong(offset);
+				for(int v = 0; v < n; v++) out.writeInt(inDegree[v]);
+
+				DataInputStream copy = new DataInputStream(new BufferedInputStream(new FileInputStream(targets), BUFFER));
+				try{
+					byte[] block = new byte[BUFFER];
+					int read;
+					while((read = copy.read(block)) > 0) out.write(block, 0, read);
+				}
+				finally{
+					copy.close();
+				}
+			}
+			finally{
+				out.close();
+			}
+		}
+		finally{
+			targets.delete();
+		}
+	}
+
+	private static boolean next(DataInputStream in, long[] head, int run) throws IOException{
+		try{
+			head[run] = in.readLong();
+			return true;
+		}
+		catch(EOFException e){
+			return false;
+		}
+	}
+
+	private static void up(int[] heap, int i, long[] head){
+		while(i > 0){
+			int parent = (i - 1) / 2;
+			if(head[heap[parent]] <= head[heap[i]]) break;
+			int t = heap[parent]; heap[parent] = heap[i]; heap[i] = t;
+			i = parent;
+		}
+	}
+
+	private static void down(int[] heap, int size, long[] head){
+		int i = 0;
+		while(true){
+			int least = i, l = 2 * i + 1, r = l + 1;
+			if(l < size && head[heap[l]] < head[heap[least]]) least = l;
+			if(r < size && head[heap[r]] < head[heap[least]]) least = r;
+			if(least == i) return;
+			int t = heap[least]; heap[least] = heap[i]; heap[i] = t;
+			i = least;
+		}
+	}
+}
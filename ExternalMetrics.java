@@ -0,0 +1,171 @@
+package networkmetrics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Computes the degree, density, reciprocity and geodesic metrics of a MappedCsrGraph. The arcs are only read
+ * through the mapping; the heap holds O(|V|) ints for the breadth first searches.
+ */
+public class ExternalMetrics {
+
+	private final MappedCsrGraph graph;
+
+	private int    inMin, inMax, outMin, outMax;
+	private long   reciprocated;
+	private long   totalPath;
+	private long   pairs;
+	private int    diameter;
+	private long[] histogram;
+
+	/**
+	 * Constructs the metrics of a graph.
+	 * @param graph the graph
+	 */
+	public ExternalMetrics(MappedCsrGraph graph){
+		if(graph == null) throw new NullPointerException();
+
+		this.graph = graph;
+		histogram  = new long[0];
+	}
+
+	/**
+	 * Computes the minimum and maximum in- and out-degrees.
+	 */
+	public void degrees(){
+		int n = graph.vertexCount();
+		inMin = outMin = n == 0 ? 0 : Integer.MAX_VALUE;
+		inMax = outMax = 0;
+		for(int v = 0; v < n; v++){
+			int in = graph.inDegree(v), out = graph.outDegree(v);
+			if(in < inMin)   inMin  = in;
+			if(in > inMax)   inMax  = in;
+			if(out < outMin) outMin = out;
+			if(out > outMax) outMax = out;
+		}
+	}
+
+	/**
+	 * Counts the arcs whose reverse arc exists, with a binary search in the reverse arc's source list.
+	 */
+	public void reciprocity(){
+		reciprocated = 0;
+		int n = graph.vertexCount();
+		for(int u = 0; u < n; u++){
+			long end = graph.outStart(u + 1);
+			for(long a = graph.outStart(u); a < end; a++){
+				if(graph.arcExists(graph.target(a), u)) reciprocated++;
+			}
+		}
+	}
+
+	/**
+	 * Runs a breadth first search from every vertex that has an outgoing arc.
+	 */
+	public void geodesic(){
+		int   n     = graph.vertexCount();
+		int[] dist  = new int[n];
+		int[] queue = new int[n];
+		long[] counts = new long[16];
+		Arrays.fill(dist, -1);
+
+		totalPath = 0;
+		pairs     = 0;
+		diameter  = 0;
+
+		for(int source = 0; source < n; source++){
+			if(graph.outDegree(source) == 0) continue;
+
+			int head = 0, tail = 0;
+			queue[tail++] = source;
+			dist[source]  = 0;
+
+			while(head < tail){
+				int  x   = queue[head++];
+				int  dx  = dist[x] + 1;
+				long end = graph.outStart(x + 1);
+				for(long a = graph.outStart(x); a < end; a++){
+					int z = graph.target(a);
+					if(dist[z] != -1) continue;
+
+					dist[z] = dx;
+					queue[tail++] = z;
+					totalPath += dx;
+					pairs++;
+					if(dx > diameter) diameter = dx;
+					if(dx >= counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+					counts[dx]++;
+				}
+			}
+			for(int i = 0; i < tail; i++) dist[queue[i]] = -1;
+		}
+		histogram = Arrays.copyOf(counts, diameter + 1);
+	}
+
+	public int inMinimum(){ return inMin; }
+
+	public int inMaximum(){ return inMax; }
+
+	public int outMinimum(){ return outMin; }
+
+	public int outMaximum(){ return outMax; }
+
+	/**
+	 * Returns the average in-degree, which equals the average out-degree.
+	 * @return |A| / |V|
+	 */
+	public double averageDegree(){
+		return (double) graph.arcCount() / graph.vertexCount();
+	}
+
+	/**
+	 * Returns the density |A| / (|V| (|V|-1)).
+	 * @return the density
+	 */
+	public double density(){
+		return (double) graph.arcCount() / ((double) graph.vertexCount() * ((double) graph.vertexCount() - 1));
+	}
+
+	/**
+	 * Returns the fraction of arcs whose reverse arc exists.
+	 * @return the reciprocity
+	 */
+	public double reciprocityFraction(){
+		return (double) reciprocated / graph.arcCount();
+	}
+
+	/**
+	 * Returns the number of ordered pairs (u,v), u != v, such that v is reachable from u.
+	 * @return the number of reachable pairs
+	 */
+	public long reachablePairs(){
+		return pairs;
+	}
+
+	/**
+	 * Returns the mean geodesic path rounded to the given number of decimal places.
+	 * Check reachablePairs() first: with no reachable pairs there is no mean.
+	 * @param scale the number of decimal places
+	 * @return the mean geodesic path
+	 */
+	public BigDecimal meanGeodesic(int scale){
+		return new BigDecimal(totalPath).divide(new BigDecimal(pairs), scale, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Returns the longest shortest path found.
+	 * @return the directed diameter
+	 */
+	public int diameter(){
+		return diameter;
+	}
+
+	/**
+	 * Returns the number of reachable pairs at each distance.
+	 * @return a new array indexed by distance
+	 */
+	public long[] distanceHistogram(){
+		return histogram.clone();
+	}
+}
@@ -0,0 +1,427 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Computes the mean geodesic path and the directed diameter with a breadth first search from every source of a
+ * CompactGraph. The searches are direction optimizing (see DirectionOptimizingBfs) unless that is turned off.
+ * The strongly connected components are used to skip the work that cannot find any pair:
+ * sources that reach no other vertex are not searched at all, and when the computation is restricted to a
+ * single component the search never leaves that component and stops as soon as all of its members are found.
+ * Every shortest path between two vertices of a component stays inside the component, so the restricted
+ * distances are exact.
+ *
+ * A long run can write checkpoints: the number of sources done, in their fixed order, and the partial sums and
+ * counters. A run given the same checkpoint file resumes after the last source the file records, and its results
+ * are the same as those of an uninterrupted run.
+ *
+ * A run can also be given a Progress, which it advances after every source and which can stop it early, on
+ * cancellation or when a time or work budget runs out. The sources are searched in a fixed random order, so the
+ * sources covered by a stopped run are a uniform sample: the mean geodesic path is then an estimate, and the
+ * diameter and the pair counts are lower bounds. The results themselves do not depend on the order.
+ */
+public class GeodesicMetrics {
+
+	private static final int MAGIC   = 0x4e4d4743;
+	private static final int VERSION = 2;
+	private static final long ORDER_SEED = 0x4e4d4f52L;
+
+	private final CompactGraph<?>             graph;
+	private final StronglyConnectedComponents components;
+	private int                               restrictTo;
+	private boolean                           directionOptimizing;
+
+	private long   totalPath;
+	private long   pairs;
+	private int    diameter;
+	private long[] histogram;
+	private int    searched;
+	private int    skipped;
+	private long   arcsExamined;
+	private long   topDownSteps;
+	private long   bottomUpSteps;
+	private int    resumedAt;
+	private int    covered;
+	private int    sourceCount;
+	private Progress progress;
+
+	/**
+	 * Constructs the computation over all pairs of the graph.
+	 * @param graph the graph
+	 * @param components the strongly connected components of graph
+	 */
+	public GeodesicMetrics(CompactGraph<?> graph, StronglyConnectedComponents components){
+		if(graph == null || components == null) throw new NullPointerException();
+
+		this.graph      = graph;
+		this.components = components;
+		restrictTo      = -1;
+		histogram       = new long[0];
+		directionOptimizing = true;
+	}
+
+	/**
+	 * Turns the bottom-up search steps on or off.
+	 * @param directionOptimizing FALSE for plain top-down searches
+	 */
+	public void setDirectionOptimizing(boolean directionOptimizing){
+		this.directionOptimizing = directionOptimizing;
+	}
+
+	/**
+	 * Restricts the computation to the pairs inside one strongly connected component.
+	 * @param component the component id
+	 */
+	public void restrictToComponent(int component){
+		if(component < 0 || component >= components.componentCount()) throw new IllegalArgumentException();
+
+		restrictTo = component;
+	}
+
+	/**
+	 * Sets the progress that the searches advance and that can stop them early.
+	 * @param progress the progress, or null for none
+	 */
+	public void setProgress(Progress progress){
+		this.progress = progress;
+	}
+
+	/**
+	 * Runs the breadth first searches. Results of an earlier run are discarded.
+	 */
+	public void run(){
+		try{
+			run(null, 0);
+		}
+		catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Runs the breadth first searches with checkpoints. If the checkpoint file holds a checkpoint of the same
+	 * computation (same graph, component restriction and search mode) the run resumes from it; a checkpoint of
+	 * another computation is ignored and overwritten. The file is deleted when the run completes; a run that
+	 * the progress stopped early leaves a checkpoint of the sources it covered, so that a later run continues.
+	 * @param checkpoint the checkpoint file, or null for none
+	 * @param intervalMillis the least time between two checkpoints
+	 * @throws IOException if the checkpoint cannot be read or written
+	 */
+	public void run(File checkpoint, long intervalMillis) throws IOException{
+		int n = graph.vertexCount();
+
+		totalPath = 0;
+		pairs     = 0;
+		diameter  = 0;
+		searched  = 0;
+		skipped   = 0;
+		resumedAt = 0;
+		long[] counts = new long[16];
+		long[] work   = new long[3];
+
+		int[] sources = restrictTo == -1 ? null : components.members(restrictTo);
+		int   limit   = restrictTo == -1 ? n : sources.length;
+
+		long fingerprint = fingerprint();
+		if(checkpoint != null && checkpoint.exists()){
+			counts = resume(checkpoint, fingerprint, work);
+			if(counts == null) counts = new long[16];
+		}
+		long lastCheckpoint = System.currentTimeMillis();
+
+		DirectionOptimizingBfs bfs = new DirectionOptimizingBfs(graph);
+		bfs.setVertices(sources);
+		bfs.setDirectionOptimizing(directionOptimizing);
+
+		int[] order = sourceOrder(limit);
+		sourceCount = limit;
+		covered     = resumedAt;
+		if(progress != null) progress.start(limit, resumedAt);
+
+		for(int s = resumedAt; s < limit; s++){
+			if(checkpoint != null && System.currentTimeMillis() - lastCheckpoint >= intervalMillis){
+				checkpoint(checkpoint, fingerprint, s, counts, work, bfs);
+				lastCheckpoint = System.currentTimeMillis();
+			}
+			if(progress != null && progress.stopRequested()) break;
+			covered = s + 1;
+
+			int source = sources == null ? order[s] : sources[order[s]];
+
+			if(!components.reachesOthers(source)){
+				skipped++;
+				if(progress != null) progress.advance(0);
+				continue;
+			}
+			searched++;
+
+			long before = bfs.arcsExamined();
+			bfs.search(source);
+			if(progress != null) progress.advance(bfs.arcsExamined() - before);
+			int depth = bfs.depth();
+			if(depth > diameter) diameter = depth;
+			if(depth >= counts.length) counts = Arrays.copyOf(counts, Math.max(depth + 1, counts.length * 2));
+			for(int d = 1; d <= depth; d++){
+				long found = bfs.levelSize(d);
+				totalPath += d * found;
+				pairs     += found;
+				counts[d] += found;
+			}
+		}
+
+		histogram     = Arrays.copyOf(counts, diameter + 1);
+		arcsExamined  = work[0] + bfs.arcsExamined();
+		topDownSteps  = work[1] + bfs.topDownSteps();
+		bottomUpSteps = work[2] + bfs.bottomUpSteps();
+		if(checkpoint != null){
+			if(covered < limit) checkpoint(checkpoint, fingerprint, covered, counts, work, bfs);
+			else                checkpoint.delete();
+		}
+	}
+
+	/**
+	 * Returns the order in which the sources are searched: a shuffle of the source indexes with a fixed seed, the
+	 * same on every run so that a checkpoint can record the sources done as a count.
+	 */
+	private static int[] sourceOrder(int limit){
+		int[] order = new int[limit];
+		for(int i = 0; i < limit; i++) order[i] = i;
+		Random random = new Random(ORDER_SEED);
+		for(int i = limit - 1; i > 0; i--){
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * Returns TRUE if the last run searched all the sources, FALSE if it was stopped early.
+	 * @return TRUE if the results are exact
+	 */
+	public boolean isComplete(){
+		return covered == sourceCount;
+	}
+
+	/**
+	 * Returns the number of sources the last run covered, searched or skipped, including those of a resumed
+	 * checkpoint.
+	 * @return the number of sources covered
+	 */
+	public int coveredSources(){
+		return covered;
+	}
+
+	/**
+	 * Returns the number of sources of the computation.
+	 * @return the number of sources
+	 */
+	public int sourceCount(){
+		return sourceCount;
+	}
+
+	/**
+	 * Identifies the computation a checkpoint belongs to: the graph, the component restriction and the search
+	 * mode, which decides the work counters.
+	 */
+	private long fingerprint(){
+		long hash = graph.vertexCount() * 31L + graph.arcCount();
+		hash = hash * 31 + Arrays.hashCode(graph.outOffsets);
+		hash = hash * 31 + Arrays.hashCode(graph.outTargets);
+		hash = hash * 31 + restrictTo;
+		return hash * 31 + (directionOptimizing ? 1 : 0);
+	}
+
+	/**
+	 * Writes the state before source index next to a temporary file and renames it over the checkpoint, so that
+	 * a crash while writing leaves the previous checkpoint intact.
+	 */
+	private void checkpoint(File file, long fingerprint, int next, long[] counts, long[] work, DirectionOptimizingBfs bfs)
+			throws IOException{
+		File temporary = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(fingerprint);
+			out.writeInt(next);
+			out.writeLong(totalPath);
+			out.writeLong(pairs);
+			out.writeInt(diameter);
+			out.writeInt(searched);
+			out.writeInt(skipped);
+			out.writeLong(work[0] + bfs.arcsExamined());
+			out.writeLong(work[1] + bfs.topDownSteps());
+			out.writeLong(work[2] + bfs.bottomUpSteps());
+			out.writeInt(diameter + 1);
+			for(int d = 0; d <= diameter; d++) out.writeLong(counts[d]);
+		}
+		finally{
+			out.close();
+		}
+		if(!temporary.renameTo(file)){
+			file.delete();
+			if(!temporary.renameTo(file)) throw new IOException("Cannot write checkpoint: " + file);
+		}
+	}
+
+	/**
+	 * Restores the state of a checkpoint of this computation into the fields and work, returning its distance
+	 * counts, or null if the file belongs to another computation.
+	 */
+	private long[] resume(File file, long fingerprint, long[] work) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint) return null;
+
+			resumedAt = in.readInt();
+			totalPath = in.readLong();
+			pairs     = in.readLong();
+			diameter  = in.readInt();
+			searched  = in.readInt();
+			skipped   = in.readInt();
+			work[0]   = in.readLong();
+			work[1]   = in.readLong();
+			work[2]   = in.readLong();
+			long[] counts = new long[Math.max(16, in.readInt())];
+			for(int d = 0; d <= diameter; d++) counts[d] = in.readLong();
+			return counts;
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the index, in the fixed source order, of the source the last run resumed at; 0 if it started from
+	 * the beginning.
+	 * @return the number of sources done before the last run started
+	 */
+	public int resumedAt(){
+		return resumedAt;
+	}
+
+	/**
+	 * Loads the results of an earlier run, for example from a ResultCache, instead of running the searches. The
+	 * total path length, the number of pairs and the diameter follow from the histogram.
+	 * @param histogram the number of reachable pairs at each distance, as returned by distanceHistogram
+	 * @param searched the number of searched sources
+	 * @param skipped the number of skipped sources
+	 * @param arcsExamined the number of arcs examined
+	 * @param topDownSteps the number of top-down steps
+	 * @param bottomUpSteps the number of bottom-up steps
+	 */
+	public void restore(long[] histogram, int searched, int skipped, long arcsExamined, long topDownSteps, long bottomUpSteps){
+		if(histogram == null) throw new NullPointerException();
+
+		totalPath = 0;
+		pairs     = 0;
+		for(int d = 1; d < histogram.length; d++){
+			totalPath += d * histogram[d];
+			pairs     += histogram[d];
+		}
+		diameter       = Math.max(0, histogram.length - 1);
+		this.histogram = histogram.clone();
+		this.searched  = searched;
+		this.skipped   = skipped;
+		this.arcsExamined  = arcsExamined;
+		this.topDownSteps  = topDownSteps;
+		this.bottomUpSteps = bottomUpSteps;
+		covered            = searched + skipped;
+		sourceCount        = covered;
+	}
+
+	/**
+	 * Returns the sum of the lengths of all shortest paths found.
+	 * @return the total path length
+	 */
+	public long totalPathLength(){
+		return totalPath;
+	}
+
+	/**
+	 * Returns the number of ordered pairs (u,v), u != v, such that v is reachable from u.
+	 * @return the number of reachable pairs
+	 */
+	public long reachablePairs(){
+		return pairs;
+	}
+
+	/**
+	 * Returns the longest shortest path found.
+	 * @return the directed diameter
+	 */
+	public int diameter(){
+		return diameter;
+	}
+
+	/**
+	 * Returns the number of reachable pairs at each distance. Index 0 is always 0.
+	 * @return a new array indexed by distance
+	 */
+	public long[] distanceHistogram(){
+		return histogram.clone();
+	}
+
+	/**
+	 * Returns the number of sources that were searched.
+	 * @return the number of searched sources
+	 */
+	public int searchedSources(){
+		return searched;
+	}
+
+	/**
+	 * Returns the number of sources that were skipped because they reach no other vertex.
+	 * @return the number of skipped sources
+	 */
+	public int skippedSources(){
+		return skipped;
+	}
+
+	/**
+	 * Returns the number of arcs examined by the searches of the last run.
+	 * @return the number of arcs examined
+	 */
+	public long arcsExamined(){
+		return arcsExamined;
+	}
+
+	/**
+	 * Returns the number of top-down steps of the last run, over all searches.
+	 * @return the number of top-down steps
+	 */
+	public long topDownSteps(){
+		return topDownSteps;
+	}
+
+	/**
+	 * Returns the number of bottom-up steps of the last run, over all searches.
+	 * @return the number of bottom-up steps
+	 */
+	public long bottomUpSteps(){
+		return bottomUpSteps;
+	}
+
+	/**
+	 * Returns the mean geodesic path rounded to the given number of decimal places.
+	 * Check reachablePairs() first: with no reachable pairs, or a budget spent before the first search, there is no mean.
+	 * @param scale the number of decimal places
+	 * @return the mean geodesic path
+	 */
+	public BigDecimal meanGeodesic(int scale){
+		return new BigDecimal(totalPath).divide(new BigDecimal(pairs), scale, RoundingMode.HALF_UP);
+	}
+}
@@ -0,0 +1,69 @@
+package networkmetrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * A client of a GraphServer. It sends GET requests and returns the plain text responses, and its main sends the
+ * requests given on the command line.
+ *
+ * Usage: java networkmetrics.GraphClient [--url=http://localhost:8088] REQUEST...
+ * e.g.   java networkmetrics.GraphClient "/summary?graph=political-blogs.vna" "/distance?graph=political-blogs.vna&source=1&target=2"
+ */
+public class GraphClient {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private final HttpClient http;
+	private final String     url;
+
+	/**
+	 * Constructs a client of the server at a base URL.
+	 * @param url the base URL, such as http://localhost:8088
+	 */
+	public GraphClient(String url){
+		if(url == null) throw new NullPointerException();
+
+		this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+		http     = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(TIMEOUT).build();
+	}
+
+	/**
+	 * Sends one request.
+	 * @param request the path and parameters, such as /degree?graph=G&vertex=V
+	 * @return the status code and the response text
+	 * @throws IOException if the server cannot be reached
+	 */
+	public HttpResponse<String> get(String request) throws IOException{
+		try{
+			return http.send(HttpRequest.newBuilder(URI.create(url + request)).timeout(TIMEOUT).GET().build(), HttpResponse.BodyHandlers.ofString());
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted: " + request);
+		}
+	}
+
+	public static void main(String[] args){
+		String url = "http://localhost:" + GraphServer.DEFAULT_PORT;
+		GraphClient client = null;
+		try{
+			for(String arg : args){
+				if(arg.startsWith("--url=")){
+					url = arg.substring("--url=".length());
+					continue;
+				}
+				if(client == null) client = new GraphClient(url);
+				HttpResponse<String> response = client.get(arg);
+				if(response.statusCode() != 200) System.out.print(response.statusCode() + " ");
+				System.out.print(response.body());
+			}
+			if(client == null) System.out.println("Usage: GraphClient [--url=URL] REQUEST...");
+		}
+		catch(IOException o){ System.out.println("ERROR: " + o.getMessage()); }
+	}
+}
@@ -0,0 +1,66 @@
+package networkmetrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Writes a random directed graph as a VNA file, streaming it so that files far larger than the heap can be
+ * generated. Every vertex gets the same number of arcs (give or take one) and the targets are skewed towards
+ * low ids, which gives the heavy tailed in-degrees of crawled networks. There are no duplicate arcs or loops.
+ *
+ * Usage: java networkmetrics.GraphGenerator FILE VERTICES ARCS [SEED]
+ */
+public class GraphGenerator {
+
+	public static void main(String[] args){
+		if(args.length < 3){
+			System.out.println("Usage: GraphGenerator FILE VERTICES ARCS [SEED]");
+			return;
+		}
+
+		int  vertices = Integer.parseInt(args[1]);
+		long arcs     = Long.parseLong(args[2]);
+		long seed     = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+
+		try{
+			PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(args[0]), 1 << 16));
+			write(out, vertices, arcs, new Random(seed));
+			out.close();
+		}
+		catch(IOException o){ System.out.println("ERROR: "+o.getMessage()); }
+	}
+
+	/**
+	 * Writes a random graph in VNA format.
+	 * @param out the destination
+	 * @param vertices the number of vertices
+	 * @param arcs the number of arcs
+	 * @param random the source of randomness
+	 */
+	public static void write(PrintWriter out, int vertices, long arcs, Random random){
+		out.println("*Node data");
+		out.println("ID");
+		for(int v = 0; v < vertices; v++) out.println(v);
+
+		out.println("*Tie data");
+		out.println("from to strength");
+		HashSet<Integer> targets = new HashSet<Integer>();
+		for(int source = 0; source < vertices; source++){
+			long degree = arcs / vertices + (source < arcs % vertices ? 1 : 0);
+			degree = Math.min(degree, vertices - 1);
+
+			targets.clear();
+			while(targets.size() < degree){
+				// u^3 concentrates the targets on low ids
+				double u = random.nextDouble();
+				int target = (int) (u * u * u * vertices);
+				if(target != source && targets.add(target))
+					out.println(source + " " + target + " " + (1 + random.nextInt(3)));
+			}
+		}
+	}
+}
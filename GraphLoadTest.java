@@ -0,0 +1,119 @@
+package networkmetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of a GraphServer. It sends a fixed mix of requests about random vertices from a number of concurrent
+ * virtual threads and prints the throughput and the latency percentiles. Given a VNA file instead of a URL, it
+ * starts a server on that file in the same JVM first, so it needs nothing else running.
+ *
+ * The mix is 40% degree, 20% neighbour, 15% arc and 15% distance requests and 5% each of summary and pagerank
+ * requests; the last two, and the first distance request, are answered from the memo after their first run.
+ *
+ * Usage: java networkmetrics.GraphLoadTest (--url=URL GRAPH | FILE) [--requests=N] [--concurrency=C] [--seed=S]
+ */
+public class GraphLoadTest {
+
+	public static void main(String[] args){
+		String url = null, graph = null;
+		int  requests    = 10000;
+		int  concurrency = 64;
+		long seed        = 1L;
+		for(String arg : args){
+			if(arg.startsWith("--url="))              url         = arg.substring("--url=".length());
+			else if(arg.startsWith("--requests="))    requests    = Integer.parseInt(arg.substring("--requests=".length()));
+			else if(arg.startsWith("--concurrency=")) concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+			else if(arg.startsWith("--seed="))        seed        = Long.parseLong(arg.substring("--seed=".length()));
+			else                                       graph       = arg;
+		}
+		if(graph == null || requests < 1 || concurrency < 1){
+			System.out.println("Usage: GraphLoadTest (--url=URL GRAPH | FILE) [--requests=N] [--concurrency=C] [--seed=S]");
+			return;
+		}
+
+		GraphServer server = null;
+		try{
+			if(url == null){
+				server = new GraphServer();
+				graph  = server.load(new File(graph));
+				url    = "http://localhost:" + server.start(0);
+			}
+			run(new GraphClient(url), graph, requests, concurrency, seed);
+		}
+		catch(IOException o){ System.out.println("ERROR: " + o.getMessage()); }
+		catch(InterruptedException e){ System.out.println("Interrupted"); }
+		finally{
+			if(server != null) server.stop();
+		}
+	}
+
+	private static String request(String graph, String[] vertices, Random random){
+		String a = URLEncoder.encode(vertices[random.nextInt(vertices.length)], StandardCharsets.UTF_8);
+		String b = URLEncoder.encode(vertices[random.nextInt(vertices.length)], StandardCharsets.UTF_8);
+		int    r = random.nextInt(100);
+		if(r < 40) return "/degree?graph=" + graph + "&vertex=" + a;
+		if(r < 60) return "/neighbours?graph=" + graph + "&vertex=" + a + (r < 50 ? "" : "&direction=in");
+		if(r < 75) return "/arc?graph=" + graph + "&source=" + a + "&target=" + b;
+		if(r < 90) return "/distance?graph=" + graph + "&source=" + a + "&target=" + b;
+		if(r < 95) return "/summary?graph=" + graph;
+		return "/pagerank?graph=" + graph + "&top=10";
+	}
+
+	private static void run(final GraphClient client, String graph, int requests, int concurrency, long seed)
+			throws IOException, InterruptedException{
+		HttpResponse<String> listing = client.get("/vertices?graph=" + graph);
+		if(listing.statusCode() != 200) throw new IOException(listing.body().trim());
+		String[] vertices = listing.body().split("\n");
+
+		Random   random = new Random(seed);
+		String[] paths  = new String[requests];
+		for(int i = 0; i < requests; i++) paths[i] = request(graph, vertices, random);
+
+		final long[]        latencies = new long[requests];
+		final AtomicInteger errors    = new AtomicInteger();
+		final Semaphore     slots     = new Semaphore(concurrency);
+		long start = System.nanoTime();
+		try(ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()){
+			for(int i = 0; i < requests; i++){
+				slots.acquire();
+				final int    index = i;
+				final String path  = paths[i];
+				threads.submit(() -> {
+					long sent = System.nanoTime();
+					try{
+						if(client.get(path).statusCode() != 200) errors.incrementAndGet();
+					}
+					catch(IOException e){
+						errors.incrementAndGet();
+					}
+					finally{
+						latencies[index] = System.nanoTime() - sent;
+						slots.release();
+					}
+				});
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		System.out.println(graph + ": " + requests + " requests, " + concurrency + " concurrent, " + errors.get() + " errors");
+		System.out.println(String.format("throughput %.0f requests/s, latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+		                   requests / (elapsed / 1e9), percentile(latencies, 50), percentile(latencies, 90),
+		                   percentile(latencies, 99), latencies[requests - 1] / 1e6));
+		System.out.print(client.get("/stats").body());
+	}
+
+	private static double percentile(long[] sorted, int p){
+		return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * p / 100))] / 1e6;
+	}
+}
@@ -0,0 +1,202 @@
+package networkmetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams a GraphML file into a GraphSink with the StAX pull parser, one element at a time, without building a
+ * document tree. The &lt;key&gt; declarations for nodes and edges become the vertex and arc columns, in the order
+ * they are declared, except that an edge key named "weight" comes first so that it is the third arc field, the
+ * one VnaReader.load keeps as the arc data. A missing value is the default of its key, or empty.
+ *
+ * A vertex is passed when its &lt;node&gt; element ends, an arc when its &lt;edge&gt; element ends, edges of an
+ * undirected graph (edgedefault="undirected", or directed="false") as the two opposite arcs. An edge that names
+ * a vertex not yet passed passes it first with its key only; the node element that comes later is then skipped.
+ * Nodes of nested graphs are nodes of the one graph; hyperedges and ports are ignored.
+ */
+public class GraphMLReader {
+
+	private GraphMLReader(){}
+
+	/**
+	 * Reads GraphML into a sink.
+	 * @param in the GraphML document
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the document cannot be read or is not valid GraphML
+	 */
+	public static void read(InputStream in, GraphSink sink) throws IOException{
+		if(in == null || sink == null) throw new NullPointerException();
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		try{
+			XMLStreamReader xml = factory.createXMLStreamReader(in);
+			try{
+				read(xml, sink);
+			}
+			finally{
+				xml.close();
+			}
+		}
+		catch(XMLStreamException o){
+			throw new IOException("Invalid GraphML: " + o.getMessage(), o);
+		}
+	}
+
+	private static void read(XMLStreamReader xml, GraphSink sink) throws XMLStreamException, IOException{
+		Columns nodes = new Columns(new String[]{ "ID" });
+		Columns edges = new Columns(new String[]{ "from", "to" });
+		HashSet<String> passed = new HashSet<String>();
+		ArrayList<Boolean> directed = new ArrayList<Boolean>();
+
+		String   keyId   = null;
+		String   id      = null, source = null, target = null;
+		Boolean  arcDirected = null;
+		String[] values  = null;
+		Columns  element = null;
+		boolean  started = false;
+
+		while(xml.hasNext()){
+			int event = xml.next();
+			if(event == XMLStreamConstants.START_ELEMENT){
+				String name = xml.getLocalName();
+				if(name.equals("key")){
+					String domain = attribute(xml, "for");
+					String column = attribute(xml, "attr.name");
+					keyId = attribute(xml, "id");
+					if(keyId == null) throw new IOException("GraphML key without an id");
+					if(column == null) column = keyId;
+					if(domain == null || domain.equals("all") || domain.equals("node")) nodes.declare(keyId, column);
+					if(domain == null || domain.equals("all") || domain.equals("edge")) edges.declare(keyId, column);
+				}
+				else if(name.equals("default") && keyId != null){
+					String value = xml.getElementText().trim();
+					nodes.setDefault(keyId, value);
+					edges.setDefault(keyId, value);
+				}
+				else if(name.equals("graph")){
+					if(!started){
+						started = true;
+						sink.vertexProperties(nodes.names());
+						sink.arcProperties(edges.names());
+					}
+					directed.add(!"undirected".equals(attribute(xml, "edgedefault")));
+				}
+				else if(name.equals("node")){
+					id = attribute(xml, "id");
+					if(id == null) throw new IOException("GraphML node without an id");
+					element = nodes;
+					values  = nodes.values();
+				}
+				else if(name.equals("edge")){
+					source = attribute(xml, "source");
+					target = attribute(xml, "target");
+					if(source == null || target == null) throw new IOException("GraphML edge without a source or target");
+					String value = attribute(xml, "directed");
+					arcDirected = value == null ? null : Boolean.valueOf(value);
+					element = edges;
+					values  = edges.values();
+				}
+				else if(name.equals("data") && element != null){
+					int column = element.column(attribute(xml, "key"));
+					String value = xml.getElementText().trim();
+					if(column >= 0) values[column] = value;
+				}
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT){
+				String name = xml.getLocalName();
+				if(name.equals("key")) keyId = null;
+				else if(name.equals("graph")) directed.remove(directed.size() - 1);
+				else if(name.equals("node") && element == nodes){
+					if(passed.add(id)) sink.vertex(nodes.fields(id, null, values));
+					element = null;
+				}
+				else if(name.equals("edge") && element == edges){
+					if(passed.add(source)) sink.vertex(new String[]{ source });
+					if(passed.add(target)) sink.vertex(new String[]{ target });
+					sink.arc(edges.fields(source, target, values));
+					boolean isDirected = arcDirected != null ? arcDirected : directed.isEmpty() || directed.get(directed.size() - 1);
+					if(!isDirected && !source.equals(target)) sink.arc(edges.fields(target, source, values));
+					element = null;
+				}
+			}
+		}
+		if(!started) throw new IOException("Invalid GraphML: no graph element");
+	}
+
+	private static String attribute(XMLStreamReader xml, String name){
+		return xml.getAttributeValue(null, name);
+	}
+
+	/**
+	 * The columns of the vertices or of the arcs: the fixed leading columns, then one per declared key.
+	 */
+	private static class Columns {
+		private final String[]                fixed;
+		private final ArrayList<String>       names    = new ArrayList<String>();
+		private final ArrayList<String>       defaults = new ArrayList<String>();
+		private final HashMap<String,Integer> columns  = new HashMap<String,Integer>();
+
+		Columns(String[] fixed){
+			this.fixed = fixed;
+		}
+
+		void declare(String key, String name){
+			if(columns.containsKey(key)) return;
+			int column = fixed.length == 2 && name.equalsIgnoreCase("weight") ? 0 : names.size();
+			for(String other : columns.keySet()) if(columns.get(other) >= column) columns.put(other, columns.get(other) + 1);
+			columns.put(key, column);
+			names.add(column, name);
+			defaults.add(column, null);
+		}
+
+		void setDefault(String key, String value){
+			Integer column = columns.get(key);
+			if(column != null) defaults.set(column, value);
+		}
+
+		int column(String key){
+			Integer column = key == null ? null : columns.get(key);
+			return column == null ? -1 : column;
+		}
+
+		String[] names(){
+			String[] all = new String[fixed.length + names.size()];
+			System.arraycopy(fixed, 0, all, 0, fixed.length);
+			for(int i = 0; i < names.size(); i++) all[fixed.length + i] = names.get(i);
+			return all;
+		}
+
+		String[] values(){
+			return new String[names.size()];
+		}
+
+		/**
+		 * Returns the key fields followed by the values, missing values taking the key defaults and trailing
+		 * missing values left out.
+		 */
+		String[] fields(String first, String second, String[] values){
+			int lead = second == null ? 1 : 2, size = values.length;
+			while(size > 0 && values[size - 1] == null && defaults.get(size - 1) == null) size--;
+
+			String[] fields = new String[lead + size];
+			fields[0] = first;
+			if(second != null) fields[1] = second;
+			for(int i = 0; i < size; i++){
+				String value = values[i] != null ? values[i] : defaults.get(i);
+				fields[lead + i] = value != null ? value : "";
+			}
+			return fields;
+		}
+	}
+}
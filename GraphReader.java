@@ -0,0 +1,167 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a graph file of any supported format into a GraphSink: Netdraw VNA, plain edge lists, Pajek .net and
+ * GraphML. The format is detected from the first lines of the file, and gzip compressed files (of any format) are
+ * recognised by their magic number and decompressed as they are read, so a file is read once whatever its format.
+ *
+ *  - VNA: the first line is "*Node data" or "*Node properties"
+ *  - GraphML: the first character is '&lt;'
+ *  - Pajek: the first line that is not a '%' comment starts with '*' ("*Network", "*Vertices", ...)
+ *  - edge list: anything else
+ */
+public class GraphReader {
+
+	/**
+	 * A graph file format.
+	 */
+	public enum Format { VNA, EDGE_LIST, PAJEK, GRAPHML }
+
+	private static final int BUFFER = 1 << 16;
+	private static final int SNIFF  = 1 << 13;
+
+	private GraphReader(){}
+
+	/**
+	 * Reads a graph file of a detected format into a sink.
+	 * @param file the graph file, possibly gzip compressed
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the file cannot be read or is not valid in its format
+	 */
+	public static void read(File file, GraphSink sink) throws IOException{
+		read(file, null, sink);
+	}
+
+	/**
+	 * Reads a graph file into a sink.
+	 * @param file the graph file, possibly gzip compressed
+	 * @param format the format of the file, or null to detect it
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the file cannot be read or is not valid in its format
+	 */
+	public static void read(File file, Format format, GraphSink sink) throws IOException{
+		if(file == null || sink == null) throw new NullPointerException();
+
+		InputStream in = open(file);
+		try{
+			read(in, format == null ? detect(in) : format, sink);
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the format of a graph file.
+	 * @param file the graph file, possibly gzip compressed
+	 * @return the format detected from its first lines
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Format detect(File file) throws IOException{
+		if(file == null) throw new NullPointerException();
+
+		InputStream in = open(file);
+		try{
+			return detect(in);
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads a graph file of a detected format into a new HashMapGraph, as VnaReader.load does for VNA files.
+	 * @param file the graph file, possibly gzip compressed
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not valid in its format
+	 */
+	public static HashMapGraph<String,String> load(File file) throws IOException{
+		return load(file, new HashMapGraph<String,String>());
+	}
+
+	/**
+	 * Loads a graph file of a detected format into a graph, as VnaReader.load does for VNA files. An edge list,
+	 * a Pajek file or an undirected GraphML file may give an arc twice, so for these formats repeated arcs are
+	 * dropped, the first one keeping its data.
+	 * @param file the graph file, possibly gzip compressed
+	 * @param graph the graph that receives the vertices and arcs
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not valid in its format
+	 */
+	public static HashMapGraph<String,String> load(File file, HashMapGraph<String,String> graph) throws IOException{
+		if(file == null || graph == null) throw new NullPointerException();
+
+		InputStream in = open(file);
+		try{
+			Format format = detect(in);
+			read(in, format, VnaReader.sink(graph, format != Format.VNA));
+		}
+		finally{
+			in.close();
+		}
+		return graph;
+	}
+
+	/**
+	 * Opens a file for reading, decompressing it if it starts with the gzip magic number. The stream supports
+	 * mark and reset, so that detect can look ahead.
+	 */
+	static InputStream open(File file) throws IOException{
+		InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER);
+		try{
+			in.mark(2);
+			int first = in.read(), second = in.read();
+			in.reset();
+			if(first == 0x1f && second == 0x8b) in = new BufferedInputStream(new GZIPInputStream(in, BUFFER), BUFFER);
+			return in;
+		}
+		catch(IOException o){
+			in.close();
+			throw o;
+		}
+	}
+
+	/**
+	 * Detects the format from the first bytes of a stream opened by open, leaving the stream where it was.
+	 */
+	static Format detect(InputStream in) throws IOException{
+		byte[] head = new byte[SNIFF];
+		in.mark(SNIFF);
+		int size = 0, read;
+		while(size < SNIFF && (read = in.read(head, size, SNIFF - size)) > 0) size += read;
+		in.reset();
+
+		String text = new String(head, 0, size, StandardCharsets.UTF_8);
+		if(text.startsWith("\uFEFF")) text = text.substring(1);
+		if(text.trim().startsWith("<")) return Format.GRAPHML;
+
+		for(String line : text.split("\r?\n")){
+			String trimmed = line.trim();
+			if(trimmed.isEmpty() || trimmed.startsWith("%")) continue;
+			if(VnaReader.isNodeHeader(trimmed)) return Format.VNA;
+			return trimmed.startsWith("*") ? Format.PAJEK : Format.EDGE_LIST;
+		}
+		return Format.EDGE_LIST;
+	}
+
+	private static void read(InputStream in, Format format, GraphSink sink) throws IOException{
+		if(format == Format.GRAPHML){
+			GraphMLReader.read(in, sink);
+			return;
+		}
+		BufferedReader text = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER);
+		if(format == Format.VNA)        VnaReader.read(text, sink);
+		else if(format == Format.PAJEK) PajekReader.read(text, sink);
+		else                            EdgeListReader.read(text, sink);
+	}
+}
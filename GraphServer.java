@@ -0,0 +1,387 @@
+package networkmetrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps graphs resident and answers metric, degree, neighbour and distance requests over HTTP, so that a query
+ * does not pay for JVM startup and a VNA parse. Every request runs on its own virtual thread. The graphs are
+ * loaded once into CompactGraphs with an ArcIndex and never change, so the requests share them without locks.
+ *
+ * The results of the expensive requests (summary, geodesic, pagerank and the distance index) are memoized per
+ * graph: the first request computes them, later and concurrent requests wait for and reuse the same result.
+ *
+ * Every response is plain text. The requests are GET requests with URL parameters:
+ *
+ *   /graphs                                      the resident graphs
+ *   /vertices?graph=G&limit=N                    the keys of the first N (default all) vertices
+ *   /summary?graph=G                             size, density, degrees, reciprocity, degree correlation
+ *   /geodesic?graph=G                            mean geodesic path, diameter, strongly connected components
+ *   /pagerank?graph=G&top=K                      the K (default 10) vertices of highest PageRank
+ *   /degree?graph=G&vertex=V                     the in- and out-degree of V
+ *   /neighbours?graph=G&vertex=V&direction=D     the successors (D = out, the default) or predecessors of V
+ *   /arc?graph=G&source=S&target=T               whether the arc S to T exists
+ *   /distance?graph=G&source=S&target=T          the directed distance from S to T, by pruned landmark labeling
+ *   /stats                                       requests served and memo hits and misses
+ *
+ * Usage: java networkmetrics.GraphServer [--port=N] [--bind=ADDRESS] FILE...
+ * Graph names are the file names without their directory. The server listens on the loopback address only,
+ * unless --bind names another address, such as 0.0.0.0 for every interface; it has no authentication.
+ */
+public class GraphServer {
+
+	public static final int DEFAULT_PORT = 8088;
+
+	/**
+	 * A resident graph.
+	 */
+	static class Resident {
+		final String               name;
+		final CompactGraph<String> graph;
+		final ArcIndex             arcs;
+		final long                 loadNanos;
+
+		Resident(String name, CompactGraph<String> graph, ArcIndex arcs, long loadNanos){
+			this.name      = name;
+			this.graph     = graph;
+			this.arcs      = arcs;
+			this.loadNanos = loadNanos;
+		}
+	}
+
+	/**
+	 * A request error, answered with its HTTP status.
+	 */
+	static class RequestException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		RequestException(int status, String message){
+			super(message);
+			this.status = status;
+		}
+	}
+
+	private final Map<String,Resident>                                graphs;
+	private final ConcurrentHashMap<String,CompletableFuture<Object>> memo;
+	private final AtomicLong                                          requests;
+	private final AtomicLong                                          memoHits;
+	private final AtomicLong                                          memoMisses;
+	private HttpServer                                                server;
+	private ExecutorService                                           executor;
+
+	/**
+	 * Constructs a server without graphs.
+	 */
+	public GraphServer(){
+		graphs     = new LinkedHashMap<String,Resident>();
+		memo       = new ConcurrentHashMap<String,CompletableFuture<Object>>();
+		requests   = new AtomicLong();
+		memoHits   = new AtomicLong();
+		memoMisses = new AtomicLong();
+	}
+
+	/**
+	 * Loads a graph file and keeps it resident under its file name. Graphs must be loaded before start.
+	 * @param file the graph file, in any GraphReader format
+	 * @return the name of the graph
+	 * @throws IOException if the file cannot be read
+	 */
+	public String load(File file) throws IOException{
+		if(server != null) throw new IllegalStateException();
+
+		long start = System.nanoTime();
+		CompactGraph<String> graph = CompactGraph.of(GraphReader.load(file));
+		ArcIndex arcs = new ArcIndex(false);
+		for(int v = 0; v < graph.vertexCount(); v++){
+			for(int a = graph.outOffsets[v]; a < graph.outOffsets[v + 1]; a++) arcs.add(v, graph.outTargets[a]);
+		}
+		graphs.put(file.getName(), new Resident(file.getName(), graph, arcs, System.nanoTime() - start));
+		return file.getName();
+	}
+
+	/**
+	 * Starts answering requests on the loopback address.
+	 * @param port the TCP port, 0 for any free port
+	 * @return the port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public int start(int port) throws IOException{
+		return start(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * Starts answering requests.
+	 * @param address the address to bind, null for every interface
+	 * @param port the TCP port, 0 for any free port
+	 * @return the port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public int start(InetAddress address, int port) throws IOException{
+		// without TCP_NODELAY every keep-alive response waits out the delayed ACK of the client, about 40 ms
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server   = HttpServer.create(new InetSocketAddress(address, port), 0);
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server, waiting at most a second for the requests in progress.
+	 */
+	public void stop(){
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the memoized value of a key, computing it on the first request. Concurrent requests for the same key
+	 * wait for the one computation; a failed computation is forgotten so that a later request retries it.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T memo(String key, Supplier<T> compute){
+		CompletableFuture<Object> mine     = new CompletableFuture<Object>();
+		CompletableFuture<Object> existing = memo.putIfAbsent(key, mine);
+		if(existing == null){
+			memoMisses.incrementAndGet();
+			try{
+				mine.complete(compute.get());
+			}
+			catch(Throwable e){
+				// errors too, or the requests waiting for this key would wait forever
+				memo.remove(key, mine);
+				mine.completeExceptionally(e);
+				throw e;
+			}
+			return (T) mine.join();
+		}
+
+		memoHits.incrementAndGet();
+		try{
+			return (T) existing.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException{
+		requests.incrementAndGet();
+		int    status;
+		String body;
+		try{
+			body   = answer(exchange.getRequestURI().getPath(), parameters(exchange.getRequestURI().getRawQuery()));
+			status = 200;
+		}
+		catch(RequestException e){
+			body   = e.getMessage() + "\n";
+			status = e.status;
+		}
+		catch(NumberFormatException e){
+			body   = "Not a number: " + e.getMessage() + "\n";
+			status = 400;
+		}
+		catch(RuntimeException e){
+			body   = "ERROR: " + e + "\n";
+			status = 500;
+		}
+
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static Map<String,String> parameters(String query){
+		HashMap<String,String> parameters = new HashMap<String,String>();
+		if(query == null) return parameters;
+
+		for(String pair : query.split("&")){
+			int equals = pair.indexOf('=');
+			if(equals == -1) parameters.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+			else parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+			                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	private static String parameter(Map<String,String> parameters, String name){
+		String value = parameters.get(name);
+		if(value == null) throw new RequestException(400, "Missing parameter: " + name);
+		return value;
+	}
+
+	private Resident graph(Map<String,String> parameters){
+		Resident resident = graphs.get(parameter(parameters, "graph"));
+		if(resident == null) throw new RequestException(404, "No such graph: " + parameters.get("graph"));
+		return resident;
+	}
+
+	private static int vertex(Resident resident, Map<String,String> parameters, String name){
+		int id = resident.graph.id(parameter(parameters, name));
+		if(id == -1) throw new RequestException(404, "No such vertex: " + parameters.get(name));
+		return id;
+	}
+
+	/**
+	 * Answers one request.
+	 * @param path the request path
+	 * @param parameters the URL parameters
+	 * @return the response text
+	 */
+	String answer(String path, Map<String,String> parameters){
+		switch(path){
+			case "/graphs":     return graphs();
+			case "/vertices":   return vertices(graph(parameters), Integer.parseInt(parameters.getOrDefault("limit", "" + Integer.MAX_VALUE)));
+			case "/summary":    return summary(graph(parameters));
+			case "/geodesic":   return geodesic(graph(parameters));
+			case "/pagerank":   return pageRank(graph(parameters), Integer.parseInt(parameters.getOrDefault("top", "10")));
+			case "/degree":     return degree(graph(parameters), parameters);
+			case "/neighbours": return neighbours(graph(parameters), parameters);
+			case "/arc":        return arc(graph(parameters), parameters);
+			case "/distance":   return distance(graph(parameters), parameters);
+			case "/stats":      return stats();
+			default:            throw new RequestException(404, "No such request: " + path);
+		}
+	}
+
+	private String graphs(){
+		StringBuilder text = new StringBuilder();
+		for(Resident resident : graphs.values()){
+			text.append(resident.name).append(" |V| = ").append(resident.graph.vertexCount())
+			    .append(" |E| = ").append(resident.graph.arcCount())
+			    .append(" loaded in ").append(resident.loadNanos / 1000000).append(" ms\n");
+		}
+		return text.toString();
+	}
+
+	private String vertices(Resident resident, int limit){
+		StringBuilder text = new StringBuilder();
+		for(int v = 0; v < resident.graph.vertexCount() && v < limit; v++) text.append(resident.graph.key(v)).append('\n');
+		return text.toString();
+	}
+
+	private String summary(final Resident resident){
+		return memo(resident.name + "/summary", () -> {
+			CompactGraph<String> graph = resident.graph;
+			int n = graph.vertexCount();
+			int inMin = Integer.MAX_VALUE, inMax = 0, outMin = Integer.MAX_VALUE, outMax = 0;
+			for(int v = 0; v < n; v++){
+				inMin  = Math.min(inMin, graph.inDegree(v));
+				inMax  = Math.max(inMax, graph.inDegree(v));
+				outMin = Math.min(outMin, graph.outDegree(v));
+				outMax = Math.max(outMax, graph.outDegree(v));
+			}
+			DegreeStatistics degrees = new DegreeStatistics(graph);
+			return "|V| = " + n + "\n"
+			     + "|E| = " + graph.arcCount() + "\n"
+			     + "Density ~= " + (double) graph.arcCount() / ((double) n * (n - 1)) + "\n"
+			     + "INDEGREE: minimum~= " + (n == 0 ? 0 : inMin) + ", maximum~= " + inMax + "\n"
+			     + "OUTDEGREE: minimum~= " + (n == 0 ? 0 : outMin) + ", maximum~= " + outMax + "\n"
+			     + "Average degree ~= " + (double) graph.arcCount() / n + "\n"
+			     + "Reciprocity percentage: ~= " + (double) resident.arcs.reciprocated() / graph.arcCount() + "\n"
+			     + "Undirected Degree Correlation: ~= " + degrees.undirectedCorrelation() + "\n";
+		});
+	}
+
+	private String geodesic(final Resident resident){
+		return memo(resident.name + "/geodesic", () -> {
+			StronglyConnectedComponents scc = new StronglyConnectedComponents(resident.graph);
+			GeodesicMetrics geodesic = new GeodesicMetrics(resident.graph, scc);
+			geodesic.run();
+			return "Mean Geodesic Path ~= " + (geodesic.reachablePairs() == 0 ? "no pairs covered" : geodesic.meanGeodesic(2)) + "\n"
+			     + "Directed Diameter~= " + geodesic.diameter() + "\n"
+			     + "Strongly connected components = " + scc.componentCount() + "\n"
+			     + "Largest SCC = " + (scc.componentCount() == 0 ? 0 : scc.size(scc.largestComponent())) + " vertices\n";
+		});
+	}
+
+	private String pageRank(final Resident resident, int k){
+		double[] ranks = memo(resident.name + "/pagerank", () -> new PageRank(resident.graph).run());
+		StringBuilder text = new StringBuilder();
+		int[] best = Ranking.top(ranks, k);
+		for(int i = 0; i < best.length; i++)
+			text.append(i + 1).append(". ").append(resident.graph.key(best[i])).append(" ~= ").append(ranks[best[i]]).append('\n');
+		return text.toString();
+	}
+
+	private String degree(Resident resident, Map<String,String> parameters){
+		int v = vertex(resident, parameters, "vertex");
+		return "in " + resident.graph.inDegree(v) + " out " + resident.graph.outDegree(v) + "\n";
+	}
+
+	private String neighbours(Resident resident, Map<String,String> parameters){
+		int     v   = vertex(resident, parameters, "vertex");
+		boolean in  = "in".equals(parameters.get("direction"));
+		int[]   offsets = in ? resident.graph.inOffsets : resident.graph.outOffsets;
+		int[]   targets = in ? resident.graph.inSources : resident.graph.outTargets;
+		StringBuilder text = new StringBuilder();
+		for(int a = offsets[v]; a < offsets[v + 1]; a++) text.append(resident.graph.key(targets[a])).append('\n');
+		return text.toString();
+	}
+
+	private String arc(Resident resident, Map<String,String> parameters){
+		return resident.arcs.contains(vertex(resident, parameters, "source"), vertex(resident, parameters, "target")) + "\n";
+	}
+
+	private String distance(final Resident resident, Map<String,String> parameters){
+		int source = vertex(resident, parameters, "source");
+		int target = vertex(resident, parameters, "target");
+		PrunedLandmarkLabeling<String> index = memo(resident.name + "/distance-index", () -> PrunedLandmarkLabeling.build(resident.graph));
+		int d = index.distance(source, target);
+		return (d == -1 ? "unreachable" : "" + d) + "\n";
+	}
+
+	private String stats(){
+		return "requests " + requests.get() + "\nmemo hits " + memoHits.get() + "\nmemo misses " + memoMisses.get()
+		     + "\nmemo entries " + memo.size() + "\n";
+	}
+
+	public static void main(String[] args){
+		int         port    = DEFAULT_PORT;
+		InetAddress address = InetAddress.getLoopbackAddress();
+		GraphServer server  = new GraphServer();
+		try{
+			for(String arg : args){
+				if(arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+				else if(arg.startsWith("--bind=")) address = InetAddress.getByName(arg.substring("--bind=".length()));
+				else System.out.println("Loaded " + server.load(new File(arg)));
+			}
+			if(server.graphs.isEmpty()){
+				System.out.println("Usage: GraphServer [--port=N] [--bind=ADDRESS] FILE...");
+				return;
+			}
+			port = server.start(address, port);
+			System.out.println("Listening on http://" + address.getHostAddress() + ":" + port + "/");
+		}
+		catch(IOException o){ System.out.println("ERROR: " + o.getMessage()); }
+	}
+}
@@ -0,0 +1,35 @@
+package networkmetrics;
+
+import java.io.IOException;
+
+/**
+ * Receives the vertices and arcs of a graph file as they are read, so that a reader can stream a file into any
+ * graph representation without holding the whole file in memory.
+ *
+ * A VNA file passes all its vertices, then all its arcs. Formats without a vertex section (edge lists, GraphML
+ * edges naming undeclared nodes) pass a vertex just before the first arc that names it, so a sink may always
+ * expect the vertices of an arc to have been passed before the arc.
+ */
+public interface GraphSink {
+
+	/**
+	 * Receives the column names of the vertex section, or an empty array if the file has none.
+	 */
+	public void vertexProperties(String[] names) throws IOException;
+
+	/**
+	 * Receives one vertex. fields[0] is the vertex key, the other fields are the values of the remaining columns.
+	 */
+	public void vertex(String[] fields) throws IOException;
+
+	/**
+	 * Receives the column names of the arc section, or an empty array if the file has none.
+	 */
+	public void arcProperties(String[] names) throws IOException;
+
+	/**
+	 * Receives one arc. fields[0] is the source key, fields[1] the destination key, the other fields are the
+	 * values of the remaining columns.
+	 */
+	public void arc(String[] fields) throws IOException;
+}
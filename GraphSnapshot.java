@@ -0,0 +1,305 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable Graph of one published epoch of a GraphVersions: the graph exactly as it was when the epoch was
+ * published, whatever the writer has changed since. Reads take no lock and see no partial change, so any number
+ * of threads may read the same epoch, each through its own snapshot, while the writer goes on.
+ *
+ * Every read looks up the vertex in the copy-on-write overlay of the epoch first and falls back to the compacted
+ * base. The neighbour lists are sorted by vertex id, so arcExists, getArcData and getArcWeight are binary
+ * searches. As a ReadOnlyGraph the snapshot supports annotations and transposeGraph, both private to the snapshot.
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data that is stored for each vertex and edge
+ */
+public class GraphSnapshot<Key extends Comparable<Key>, Data> extends ReadOnlyGraph<Key, Data> {
+
+	/**
+	 * Iterates the neighbours of one vertex.
+	 */
+	private class AdjacentIterator implements Iterator<ArrayList<Key>> {
+		private final int     vertex;
+		private final boolean outList;
+		private final int[]   neighbours;
+		private int           index;
+		private final int     end;
+
+		public AdjacentIterator(int vertex, boolean outList){
+			this.vertex  = vertex;
+			this.outList = outList;
+
+			boolean storedOut = outList != transposed();
+			GraphVersions.Vertex record = state.vertex(vertex);
+			if(record != null){
+				neighbours = storedOut ? record.out : record.in;
+				index      = 0;
+				end        = storedOut ? record.outSize : record.inSize;
+			}
+			else{
+				int[] offsets = storedOut ? base.outOffsets : base.inOffsets;
+				neighbours = storedOut ? base.outTargets : base.inSources;
+				index      = offsets[vertex];
+				end        = offsets[vertex + 1];
+			}
+		}
+
+		public boolean hasNext(){
+			return index < end;
+		}
+
+		public ArrayList<Key> next(){
+			if(!hasNext()) throw new NoSuchElementException();
+
+			int other = neighbours[index++];
+			ArrayList<Key> list = new ArrayList<Key>(2);
+			list.add(key(outList ? vertex : other));
+			list.add(key(outList ? other : vertex));
+			return list;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Iterates every arc: the out-neighbours of every vertex in turn.
+	 */
+	private class ArcIterator implements Iterator<ArrayList<Key>> {
+		private int              vertex;
+		private AdjacentIterator arcs;
+
+		public ArcIterator(){
+			vertex = -1;
+			advance();
+		}
+
+		private void advance(){
+			while((arcs == null || !arcs.hasNext()) && vertex + 1 < state.limit){
+				if(state.alive(++vertex)) arcs = new AdjacentIterator(vertex, true);
+			}
+		}
+
+		public boolean hasNext(){
+			return arcs != null && arcs.hasNext();
+		}
+
+		public ArrayList<Key> next(){
+			if(!hasNext()) throw new NoSuchElementException();
+
+			ArrayList<Key> arc = arcs.next();
+			advance();
+			return arc;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final GraphVersions.State state;
+	private final GraphVersions.Base  base;
+	private boolean                   transpose;
+
+	GraphSnapshot(GraphVersions.State state){
+		this.state = state;
+		base       = state.base;
+		transpose  = state.transposed;
+	}
+
+	/**
+	 * Returns the epoch of the snapshot.
+	 * @return the epoch
+	 */
+	public long epoch(){
+		return state.epoch;
+	}
+
+	/**
+	 * Copies the snapshot into a CompactGraph straight from its lists, without the iterators of CompactGraph.of.
+	 * The dense ids follow the ids of the versions, without the removed vertices.
+	 * @return the compact copy
+	 */
+	public CompactGraph<Key> compact(){
+		int[] rank = new int[state.limit];
+		int n = 0;
+		for(int v = 0; v < state.limit; v++) rank[v] = state.alive(v) ? n++ : -1;
+
+		Object[]             keys    = new Object[n];
+		HashMap<Key,Integer> ids     = new HashMap<Key,Integer>(n * 2);
+		int[]                offsets = new int[n + 1];
+		int[]                targets = new int[state.arcCount];
+		for(int v = 0; v < state.limit; v++){
+			int r = rank[v];
+			if(r == -1) continue;
+			keys[r] = key(v);
+			ids.put(key(v), r);
+
+			int m = offsets[r];
+			AdjacentIterator out = new AdjacentIterator(v, true);
+			for(int i = out.index; i < out.end; i++) targets[m++] = rank[out.neighbours[i]];
+			offsets[r + 1] = m;
+		}
+		return new CompactGraph<Key>(keys, ids, offsets, targets);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Key key(int id){
+		GraphVersions.Vertex record = state.vertex(id);
+		return (Key) (record != null ? record.key : base.keys[id]);
+	}
+
+	private int id(Key key){
+		if(key == null) throw new NullPointerException();
+
+		int id = state.id(key);
+		if(id == -1) throw new NoSuchElementException();
+		return id;
+	}
+
+	/**
+	 * Returns the index of the stored arc s to t in the out-list of s, in the record of s if it has one, in the
+	 * base otherwise; -1 if there is no such arc.
+	 */
+	private int find(GraphVersions.Vertex record, int s, int t){
+		if(record != null){
+			int i = GraphVersions.search(record.out, record.outSize, t);
+			return i < 0 ? -1 : i;
+		}
+		int low = base.outOffsets[s], high = base.outOffsets[s + 1] - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			int w      = base.outTargets[middle];
+			if(w < t)      low  = middle + 1;
+			else if(w > t) high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the stored source of an arc given in the direction the snapshot is seen.
+	 */
+	private int storedSource(Key sourceKey, Key destinationKey){
+		return !transpose ? id(sourceKey) : id(destinationKey);
+	}
+
+	private int storedDestination(Key sourceKey, Key destinationKey){
+		return !transpose ? id(destinationKey) : id(sourceKey);
+	}
+
+	protected boolean transposed(){
+		return transpose;
+	}
+
+	public int vertexCount(){
+		return state.vertexCount;
+	}
+
+	public int arcCount(){
+		return state.arcCount;
+	}
+
+	public Iterator<ArrayList<Key>> arcs(){
+		return new ArcIterator();
+	}
+
+	public Iterator<Key> vertices(){
+		return new Iterator<Key>(){
+			private int next = skip(0);
+
+			private int skip(int v){
+				while(v < state.limit && !state.alive(v)) v++;
+				return v;
+			}
+
+			public boolean hasNext(){ return next < state.limit; }
+
+			public Key next(){
+				if(!hasNext()) throw new NoSuchElementException();
+				Key key = key(next);
+				next = skip(next + 1);
+				return key;
+			}
+		};
+	}
+
+	public boolean arcExists(Key sourceKey, Key destinationKey){
+		if(sourceKey == null || destinationKey == null) throw new NullPointerException();
+
+		if(!vertexExists(sourceKey) || !vertexExists(destinationKey)) return false;
+
+		int s = storedSource(sourceKey, destinationKey);
+		return find(state.vertex(s), s, storedDestination(sourceKey, destinationKey)) != -1;
+	}
+
+	public boolean vertexExists(Key vertexKey){
+		if(vertexKey == null) throw new NullPointerException();
+
+		return state.id(vertexKey) != -1;
+	}
+
+	public int inDegree(Key vertexKey){
+		return degree(id(vertexKey), transpose);
+	}
+
+	public int outDegree(Key vertexKey){
+		return degree(id(vertexKey), !transpose);
+	}
+
+	private int degree(int v, boolean storedOut){
+		GraphVersions.Vertex record = state.vertex(v);
+		if(record != null) return storedOut ? record.outSize : record.inSize;
+		int[] offsets = storedOut ? base.outOffsets : base.inOffsets;
+		return offsets[v + 1] - offsets[v];
+	}
+
+	public Iterator<ArrayList<Key>> inAdjacentVertices(Key vertexKey){
+		return new AdjacentIterator(id(vertexKey), false);
+	}
+
+	public Iterator<ArrayList<Key>> outAdjacentVertices(Key vertexKey){
+		return new AdjacentIterator(id(vertexKey), true);
+	}
+
+	@SuppressWarnings("unchecked")
+	public Data getVertexData(Key vertexKey){
+		int v = id(vertexKey);
+		GraphVersions.Vertex record = state.vertex(v);
+		return (Data) (record != null ? record.data : base.data[v]);
+	}
+
+	@SuppressWarnings("unchecked")
+	public Data getArcData(Key sourceKey, Key destinationKey){
+		int s = storedSource(sourceKey, destinationKey), t = storedDestination(sourceKey, destinationKey);
+		GraphVersions.Vertex record = state.vertex(s);
+		int i = find(record, s, t);
+		if(i == -1) throw new NoSuchElementException();
+
+		return (Data) (record != null ? record.outData[i] : base.arcData[i]);
+	}
+
+	public Number getArcWeight(Key sourceKey, Key destinationKey){
+		int s = storedSource(sourceKey, destinationKey), t = storedDestination(sourceKey, destinationKey);
+		GraphVersions.Vertex record = state.vertex(s);
+		int i = find(record, s, t);
+		if(i == -1) throw new NoSuchElementException();
+
+		Number weight = record != null ? record.outWeights[i] : base.arcWeights[i];
+		return weight != null ? weight : Integer.valueOf(0);
+	}
+
+	/**
+	 * Reverses the direction of all arcs of this snapshot only, by swapping the roles of the out- and in-lists.
+	 */
+	public void transposeGraph(){
+		transpose = !transpose;
+	}
+}
@@ -0,0 +1,575 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Multi-version snapshots of a graph that one writer keeps changing, so that readers can run long metrics on a
+ * consistent view while the changes go on. Every change of the graph is recorded here (HashMapGraph does it once
+ * its versioning is on), and publish() makes the changes so far visible as a new epoch. Readers ask snapshot()
+ * for the latest published epoch from any thread: one volatile read, no lock, and the GraphSnapshot they get never
+ * changes, however long they keep it.
+ *
+ * A version is a frozen, compacted base (CSR arrays of the graph as it was at some epoch) plus a copy-on-write
+ * overlay: the vertices changed since the base, each with its whole sorted out- and in-lists. The overlay is an
+ * array of chunks of CHUNK vertices. A chunk, and a vertex record in it, belongs either to a published epoch,
+ * and is then never written again, or to the epoch being built, and is then changed in place; the first change
+ * of a vertex in an epoch copies its record and its chunk. publish() costs a copy of the array of chunks, and a
+ * change costs the degree of the vertices it touches once per epoch, then the shift of a sorted insertion.
+ *
+ * When the overlay holds more than a quarter of the adjacency entries of the base, publish() first compacts:
+ * the version is rebuilt into a new base, with the removed vertices dropped, and the overlay starts empty.
+ * Snapshots of earlier epochs keep their own base and overlay, which the garbage collector frees with the last
+ * snapshot that uses them.
+ *
+ * Only the structure, the vertex and arc data and the arc weights are versioned, not annotations. The methods
+ * that record changes and publish() must be called by the writer thread only.
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data that is stored for each vertex and edge
+ */
+public class GraphVersions<Key extends Comparable<Key>, Data> {
+
+	static final int CHUNK_BITS = 10;
+	static final int CHUNK      = 1 << CHUNK_BITS;
+
+	private static final int COMPACT_DIVISOR = 4;
+	private static final int COMPACT_MINIMUM = 1 << 12;
+
+	/**
+	 * A vertex changed since the base: its key, data and sorted lists, the out-list with the data and weight of
+	 * every arc. Written only during its epoch, read-only once the epoch is published.
+	 */
+	static final class Vertex {
+		final long epoch;
+		final Object key;
+		Object   data;
+		boolean  alive;
+		int[]    out;
+		Object[] outData;
+		Number[] outWeights;
+		int      outSize;
+		int[]    in;
+		int      inSize;
+
+		Vertex(long epoch, Object key){
+			this.epoch = epoch;
+			this.key   = key;
+			out        = new int[0];
+			outData    = new Object[0];
+			outWeights = new Number[0];
+			in         = new int[0];
+		}
+
+		Vertex(long epoch, Vertex vertex){
+			this.epoch = epoch;
+			key        = vertex.key;
+			data       = vertex.data;
+			alive      = vertex.alive;
+			outSize    = vertex.outSize;
+			inSize     = vertex.inSize;
+			out        = Arrays.copyOf(vertex.out, outSize);
+			outData    = Arrays.copyOf(vertex.outData, outSize);
+			outWeights = Arrays.copyOf(vertex.outWeights, outSize);
+			in         = Arrays.copyOf(vertex.in, inSize);
+		}
+	}
+
+	/**
+	 * The compacted base of a generation of versions. Immutable, except that ids only grows: the vertices
+	 * inserted after the base get the next ids, which snapshots of earlier epochs do not see.
+	 */
+	static final class Base {
+		final Object[]                          keys;
+		final Object[]                          data;
+		final ConcurrentHashMap<Object,Integer> ids;
+		final int[]                             outOffsets;
+		final int[]                             outTargets;
+		final Object[]                          arcData;
+		final Number[]                          arcWeights;
+		final int[]                             inOffsets;
+		final int[]                             inSources;
+
+		Base(Object[] keys, Object[] data, int[] outOffsets, int[] outTargets, Object[] arcData, Number[] arcWeights,
+		     int[] inOffsets, int[] inSources){
+			this.keys       = keys;
+			this.data       = data;
+			this.outOffsets = outOffsets;
+			this.outTargets = outTargets;
+			this.arcData    = arcData;
+			this.arcWeights = arcWeights;
+			this.inOffsets  = inOffsets;
+			this.inSources  = inSources;
+			ids = new ConcurrentHashMap<Object,Integer>(Math.max(16, keys.length * 2));
+			for(int v = 0; v < keys.length; v++) ids.put(keys[v], v);
+		}
+
+		int vertexCount(){
+			return keys.length;
+		}
+	}
+
+	/**
+	 * One published epoch: what a GraphSnapshot reads.
+	 */
+	static final class State {
+		final long       epoch;
+		final Base       base;
+		final Vertex[][] overlay;
+		final int        limit;
+		final int        vertexCount;
+		final int        arcCount;
+		final boolean    transposed;
+
+		State(long epoch, Base base, Vertex[][] overlay, int limit, int vertexCount, int arcCount, boolean transposed){
+			this.epoch       = epoch;
+			this.base        = base;
+			this.overlay     = overlay;
+			this.limit       = limit;
+			this.vertexCount = vertexCount;
+			this.arcCount    = arcCount;
+			this.transposed  = transposed;
+		}
+
+		/**
+		 * Returns the overlay record of a vertex, or null if the vertex is as in the base.
+		 */
+		Vertex vertex(int id){
+			int c = id >>> CHUNK_BITS;
+			Vertex[] chunk = c < overlay.length ? overlay[c] : null;
+			return chunk == null ? null : chunk[id & (CHUNK - 1)];
+		}
+
+		/**
+		 * Returns TRUE if the vertex of an id below limit is in the graph at this epoch.
+		 */
+		boolean alive(int id){
+			Vertex vertex = vertex(id);
+			return vertex != null ? vertex.alive : id < base.vertexCount();
+		}
+
+		/**
+		 * Returns the id of a vertex of this epoch, or -1.
+		 */
+		int id(Object key){
+			Integer id = base.ids.get(key);
+			return id == null || id >= limit || !alive(id) ? -1 : id;
+		}
+	}
+
+	private Base       base;
+	private Vertex[][] overlay;
+	private long[]     chunkEpochs;
+	private int        limit;
+	private int        vertexCount;
+	private int        arcCount;
+	private boolean    transposed;
+	private long       epoch;
+	private long       overlayEntries;
+	private int        overlayVertices;
+	private int        publishEvery;
+	private int        changes;
+	private int        compactions;
+
+	private volatile State published;
+
+	/**
+	 * Starts the versions of a graph, with the graph as it is now as the base of the first epoch, which is
+	 * published.
+	 * @param graph the graph, which must then record every change here
+	 */
+	public GraphVersions(Graph<Key,Data> graph){
+		this(graph, false);
+	}
+
+	/**
+	 * Starts the versions of a graph that may be transposed. The base keeps the arcs of a transposed graph as the
+	 * graph stores them, reversed, so that the changes it records later are stored the same way.
+	 * @param graph the graph, which must then record every change here
+	 * @param transposed TRUE if the graph is transposed now
+	 */
+	GraphVersions(Graph<Key,Data> graph, boolean transposed){
+		if(graph == null) throw new NullPointerException();
+
+		int n = graph.vertexCount();
+		Object[] keys = new Object[n];
+		Object[] data = new Object[n];
+		ConcurrentHashMap<Object,Integer> ids = new ConcurrentHashMap<Object,Integer>(Math.max(16, n * 2));
+		Iterator<Key> vertices = graph.vertices();
+		for(int v = 0; vertices.hasNext(); v++){
+			Key key = vertices.next();
+			keys[v] = key;
+			data[v] = graph.getVertexData(key);
+			ids.put(key, v);
+		}
+
+		int[][]    out     = new int[n][];
+		Object[][] outData = new Object[n][];
+		Number[][] weights = new Number[n][];
+		int[]      list    = new int[16];
+		for(int v = 0; v < n; v++){
+			@SuppressWarnings("unchecked")
+			Key source = (Key) keys[v];
+			int degree = 0;
+			// the stored successors of a transposed graph are its predecessors
+			Iterator<ArrayList<Key>> arcs = transposed ? graph.inAdjacentVertices(source) : graph.outAdjacentVertices(source);
+			while(arcs.hasNext()){
+				if(degree == list.length) list = Arrays.copyOf(list, degree * 2);
+				list[degree++] = ids.get(CompactGraph.neighbour(arcs.next(), source));
+			}
+			Arrays.sort(list, 0, degree);
+			out[v]     = Arrays.copyOf(list, degree);
+			outData[v] = new Object[degree];
+			weights[v] = new Number[degree];
+			for(int i = 0; i < degree; i++){
+				@SuppressWarnings("unchecked")
+				Key target = (Key) keys[list[i]];
+				outData[v][i] = transposed ? graph.getArcData(target, source) : graph.getArcData(source, target);
+				weights[v][i] = transposed ? graph.getArcWeight(target, source) : graph.getArcWeight(source, target);
+			}
+		}
+		this.transposed = transposed;
+		base = build(keys, data, out, outData, weights);
+		reset(n);
+		vertexCount = n;
+		arcCount    = base.outTargets.length;
+		epoch       = 1;
+		publish();
+	}
+
+	/**
+	 * Publishes the changes recorded since the last publication after every given number of changes, so that
+	 * readers see a bounded lag without the writer calling publish().
+	 * @param changes the number of changes between two publications, 0 to publish only on request
+	 */
+	public void setPublishEvery(int changes){
+		if(changes < 0) throw new IllegalArgumentException();
+
+		publishEvery = changes;
+	}
+
+	/**
+	 * Returns a snapshot of the latest published epoch. Any thread may call it; it takes no lock.
+	 * @return the snapshot, which never changes
+	 */
+	public GraphSnapshot<Key,Data> snapshot(){
+		return new GraphSnapshot<Key,Data>(published);
+	}
+
+	/**
+	 * Returns the latest published epoch.
+	 * @return the epoch, counting from 1 for the graph the versions were started from
+	 */
+	public long epoch(){
+		return published.epoch;
+	}
+
+	/**
+	 * Returns the number of times the versions were compacted into a new base.
+	 * @return the number of compactions
+	 */
+	public int compactions(){
+		return compactions;
+	}
+
+	/**
+	 * Publishes the changes recorded so far as a new epoch, compacting the versions first if the overlay has
+	 * grown large. Writer thread only.
+	 * @return a snapshot of the new epoch
+	 */
+	public GraphSnapshot<Key,Data> publish(){
+		if(overlayEntries * COMPACT_DIVISOR > 2L * base.outTargets.length + COMPACT_MINIMUM
+		   || (long) overlayVertices * COMPACT_DIVISOR > base.vertexCount() + COMPACT_MINIMUM){
+			compact();
+		}
+		State state = new State(epoch, base, overlay.clone(), limit, vertexCount, arcCount, transposed);
+		published = state;
+		epoch++;
+		changes = 0;
+		return new GraphSnapshot<Key,Data>(state);
+	}
+
+	/**
+	 * Records the insertion of a vertex.
+	 */
+	void insertVertex(Key key, Data data){
+		Integer id = base.ids.get(key);
+		if(id == null){
+			id = limit++;
+			base.ids.put(key, id);
+			chunk(id >>> CHUNK_BITS)[id & (CHUNK - 1)] = new Vertex(epoch, key);
+			overlayVertices++;
+		}
+		Vertex vertex = writable(id);
+		vertex.alive = true;
+		vertex.data  = data;
+		vertexCount++;
+		changed();
+	}
+
+	/**
+	 * Records the insertion of an arc, given in the direction the graph is seen.
+	 */
+	void insertArc(Key sourceKey, Key destinationKey, Data data){
+		int s = base.ids.get(transposed ? destinationKey : sourceKey);
+		int t = base.ids.get(transposed ? sourceKey : destinationKey);
+		Vertex source = writable(s);
+		int i = -search(source.out, source.outSize, t) - 1;
+		source.out        = insert(source.out, source.outSize, i, t);
+		source.outData    = insert(source.outData, source.outSize, i, data);
+		source.outWeights = insert(source.outWeights, source.outSize, i, null);
+		source.outSize++;
+
+		Vertex destination = writable(t);
+		int j = -search(destination.in, destination.inSize, s) - 1;
+		destination.in = insert(destination.in, destination.inSize, j, s);
+		destination.inSize++;
+
+		overlayEntries += 2;
+		arcCount++;
+		changed();
+	}
+
+	/**
+	 * Records the removal of an arc, given in the direction the graph is seen.
+	 */
+	void removeArc(Key sourceKey, Key destinationKey){
+		int s = base.ids.get(transposed ? destinationKey : sourceKey);
+		int t = base.ids.get(transposed ? sourceKey : destinationKey);
+		unlink(s, t);
+		arcCount--;
+		changed();
+	}
+
+	/**
+	 * Records the removal of a vertex and of its arcs.
+	 */
+	void removeVertex(Key key){
+		int v = base.ids.get(key);
+		Vertex vertex = writable(v);
+		int removed = vertex.outSize + vertex.inSize;
+		for(int i = vertex.outSize - 1; i >= 0; i--){
+			if(vertex.out[i] == v) removed--;
+			unlink(v, vertex.out[i]);
+		}
+		for(int i = vertex.inSize - 1; i >= 0; i--) unlink(vertex.in[i], v);
+		arcCount -= removed;
+		vertex.alive = false;
+		vertex.data  = null;
+		vertexCount--;
+		changed();
+	}
+
+	/**
+	 * Records new vertex data.
+	 */
+	void setVertexData(Key key, Data data){
+		writable(base.ids.get(key)).data = data;
+		changed();
+	}
+
+	/**
+	 * Records new arc data, the arc given in the direction the graph is seen.
+	 */
+	void setArcData(Key sourceKey, Key destinationKey, Data data){
+		Vertex source = writable(base.ids.get(transposed ? destinationKey : sourceKey));
+		source.outData[search(source.out, source.outSize, base.ids.get(transposed ? sourceKey : destinationKey))] = data;
+		changed();
+	}
+
+	/**
+	 * Records a new arc weight, the arc given in the direction the graph is seen.
+	 */
+	void setArcWeight(Key sourceKey, Key destinationKey, Number weight){
+		Vertex source = writable(base.ids.get(transposed ? destinationKey : sourceKey));
+		source.outWeights[search(source.out, source.outSize, base.ids.get(transposed ? sourceKey : destinationKey))] = weight;
+		changed();
+	}
+
+	/**
+	 * Records the transposition of the graph.
+	 */
+	void transpose(){
+		transposed = !transposed;
+		changed();
+	}
+
+	private void changed(){
+		if(publishEvery > 0 && ++changes >= publishEvery) publish();
+	}
+
+	/**
+	 * Removes the stored arc s to t from both lists; the caller counts it.
+	 */
+	private void unlink(int s, int t){
+		Vertex source = writable(s);
+		int i = search(source.out, source.outSize, t);
+		remove(source.out, source.outSize, i);
+		remove(source.outData, source.outSize, i);
+		remove(source.outWeights, source.outSize, i);
+		source.outData[source.outSize - 1]    = null;
+		source.outWeights[source.outSize - 1] = null;
+		source.outSize--;
+
+		Vertex destination = writable(t);
+		remove(destination.in, destination.inSize, search(destination.in, destination.inSize, s));
+		destination.inSize--;
+		overlayEntries -= 2;
+	}
+
+	/**
+	 * Returns the record of a vertex that the current epoch may change: the record itself if the epoch made it,
+	 * otherwise a copy of the published record, or of the base lists, put in a chunk of the current epoch.
+	 */
+	private Vertex writable(int id){
+		Vertex[] chunk = chunk(id >>> CHUNK_BITS);
+		Vertex vertex = chunk[id & (CHUNK - 1)];
+		if(vertex != null && vertex.epoch == epoch) return vertex;
+
+		Vertex copy;
+		if(vertex != null) copy = new Vertex(epoch, vertex);
+		else{
+			copy = new Vertex(epoch, base.keys[id]);
+			copy.alive      = true;
+			copy.data       = base.data[id];
+			copy.out        = Arrays.copyOfRange(base.outTargets, base.outOffsets[id], base.outOffsets[id + 1]);
+			copy.outData    = Arrays.copyOfRange(base.arcData, base.outOffsets[id], base.outOffsets[id + 1]);
+			copy.outWeights = Arrays.copyOfRange(base.arcWeights, base.outOffsets[id], base.outOffsets[id + 1]);
+			copy.outSize    = copy.out.length;
+			copy.in         = Arrays.copyOfRange(base.inSources, base.inOffsets[id], base.inOffsets[id + 1]);
+			copy.inSize     = copy.in.length;
+			overlayEntries += copy.outSize + copy.inSize;
+			overlayVertices++;
+		}
+		chunk[id & (CHUNK - 1)] = copy;
+		return copy;
+	}
+
+	/**
+	 * Returns a chunk of the overlay that the current epoch may change, copying or creating it.
+	 */
+	private Vertex[] chunk(int c){
+		if(c >= overlay.length){
+			int length = Math.max(c + 1, overlay.length * 2);
+			overlay     = Arrays.copyOf(overlay, length);
+			chunkEpochs = Arrays.copyOf(chunkEpochs, length);
+		}
+		if(chunkEpochs[c] != epoch){
+			overlay[c]     = overlay[c] == null ? new Vertex[CHUNK] : overlay[c].clone();
+			chunkEpochs[c] = epoch;
+		}
+		return overlay[c];
+	}
+
+	/**
+	 * Rebuilds the current version into a new base, the live vertices renumbered in id order.
+	 */
+	private void compact(){
+		State state = new State(epoch, base, overlay, limit, vertexCount, arcCount, transposed);
+		int[] rank = new int[limit];
+		int n = 0;
+		for(int v = 0; v < limit; v++) rank[v] = state.alive(v) ? n++ : -1;
+
+		Object[]   keys    = new Object[n];
+		Object[]   data    = new Object[n];
+		int[][]    out     = new int[n][];
+		Object[][] outData = new Object[n][];
+		Number[][] weights = new Number[n][];
+		for(int v = 0; v < limit; v++){
+			if(rank[v] == -1) continue;
+			int r = rank[v];
+			Vertex vertex = state.vertex(v);
+			if(vertex == null){
+				int from = base.outOffsets[v], to = base.outOffsets[v + 1];
+				keys[r]    = base.keys[v];
+				data[r]    = base.data[v];
+				out[r]     = Arrays.copyOfRange(base.outTargets, from, to);
+				outData[r] = Arrays.copyOfRange(base.arcData, from, to);
+				weights[r] = Arrays.copyOfRange(base.arcWeights, from, to);
+			}
+			else{
+				keys[r]    = vertex.key;
+				data[r]    = vertex.data;
+				out[r]     = Arrays.copyOf(vertex.out, vertex.outSize);
+				outData[r] = Arrays.copyOf(vertex.outData, vertex.outSize);
+				weights[r] = Arrays.copyOf(vertex.outWeights, vertex.outSize);
+			}
+			for(int i = 0; i < out[r].length; i++) out[r][i] = rank[out[r][i]];
+		}
+		base = build(keys, data, out, outData, weights);
+		reset(n);
+		compactions++;
+	}
+
+	/**
+	 * Starts an empty overlay over a new base of n vertices.
+	 */
+	private void reset(int n){
+		limit           = n;
+		overlay         = new Vertex[Math.max(1, (n + CHUNK - 1) >>> CHUNK_BITS)][];
+		chunkEpochs     = new long[overlay.length];
+		overlayEntries  = 0;
+		overlayVertices = 0;
+	}
+
+	/**
+	 * Builds a base from sorted out-lists, deriving the sorted in-lists.
+	 */
+	private static Base build(Object[] keys, Object[] data, int[][] out, Object[][] outData, Number[][] weights){
+		int n = keys.length;
+		int[] outOffsets = new int[n + 1];
+		for(int v = 0; v < n; v++) outOffsets[v + 1] = outOffsets[v] + out[v].length;
+
+		int m = outOffsets[n];
+		int[]    outTargets = new int[m];
+		Object[] arcData    = new Object[m];
+		Number[] arcWeights = new Number[m];
+		int[]    inOffsets  = new int[n + 1];
+		for(int v = 0; v < n; v++){
+			System.arraycopy(out[v], 0, outTargets, outOffsets[v], out[v].length);
+			System.arraycopy(outData[v], 0, arcData, outOffsets[v], out[v].length);
+			System.arraycopy(weights[v], 0, arcWeights, outOffsets[v], out[v].length);
+			for(int t : out[v]) inOffsets[t + 1]++;
+		}
+		for(int v = 0; v < n; v++) inOffsets[v + 1] += inOffsets[v];
+
+		// sources are visited in increasing order, so every in-list comes out sorted
+		int[] inSources = new int[m];
+		int[] next = Arrays.copyOf(inOffsets, n);
+		for(int v = 0; v < n; v++){
+			for(int t : out[v]) inSources[next[t]++] = v;
+		}
+		return new Base(keys, data, outOffsets, outTargets, arcData, arcWeights, inOffsets, inSources);
+	}
+
+	/**
+	 * Binary search of a sorted prefix, as Arrays.binarySearch.
+	 */
+	static int search(int[] list, int size, int key){
+		return Arrays.binarySearch(list, 0, size, key);
+	}
+
+	private static int[] insert(int[] list, int size, int index, int value){
+		if(size == list.length) list = Arrays.copyOf(list, Math.max(4, size + (size >> 1)));
+		System.arraycopy(list, index, list, index + 1, size - index);
+		list[index] = value;
+		return list;
+	}
+
+	private static <T> T[] insert(T[] list, int size, int index, T value){
+		if(size == list.length) list = Arrays.copyOf(list, Math.max(4, size + (size >> 1)));
+		System.arraycopy(list, index, list, index + 1, size - index);
+		list[index] = value;
+		return list;
+	}
+
+	private static void remove(int[] list, int size, int index){
+		System.arraycopy(list, index + 1, list, index, size - index - 1);
+	}
+
+	private static void remove(Object[] list, int size, int index){
+		System.arraycopy(list, index + 1, list, index, size - index - 1);
+	}
+}
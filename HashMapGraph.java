@@ -52,6 +52,7 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
 		private HashMap<Key, Edge<D>> outEdges;
 		private HashMap<Key, Edge<D>> inEdges;
 		private D                     data;
+		private int                   id;
 		
 		public Vertex(){
 			outEdges = new HashMap<Key, Edge<D>>(EDGE_TABLE_INITIAL_CAPACITY);
@@ -221,6 +222,9 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
 	private int     edgeCount;
 	private int     vertexCount;
 	private boolean transpose;
+	private int     nextId;
+	private ArcIndex arcIndex;
+	private GraphVersions<Key,Data> versions;
 
 	/**
 	 * Constructs the graph
@@ -231,6 +235,57 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
 		edgeCount   = 0;
 		vertexCount = 0;
 		transpose   = false;
+		nextId      = 0;
+		arcIndex    = null;
+	}
+
+	/**
+	 * Turns the global arc index on or off. With it on, every vertex has an integer id and every arc is also kept
+	 * in an ArcIndex of (source id, destination id) pairs, which answers arcExists, and the duplicate checks of
+	 * insertArc, without the nested HashMap lookups. The index is built from the current arcs and kept up to
+	 * date by every later change; transposing the graph does not touch it.
+	 * @param enabled TRUE to build the index, FALSE to drop it
+	 * @param bloomFilter TRUE to front the index with a blocked Bloom filter, for graphs where most of the
+	 * tested arcs are absent
+	 */
+	public void setArcIndex(boolean enabled, boolean bloomFilter){
+		if(!enabled){
+			arcIndex = null;
+			return;
+		}
+		
+		arcIndex = new ArcIndex(bloomFilter);
+		for(Vertex<Data> v: vertices.values()){
+			for(Key w: v.outEdges.keySet()) arcIndex.add(v.id, vertices.get(w).id);
+		}
+	}
+
+	/**
+	 * Returns the global arc index.
+	 * @return the index, or null if it is off
+	 */
+	public ArcIndex arcIndex(){
+		return arcIndex;
+	}
+
+	/**
+	 * Turns snapshot versioning on or off. With it on, every later change of the structure, of the vertex and arc
+	 * data and of the arc weights is also recorded in a GraphVersions started from the graph as it is now, so
+	 * that other threads can run metrics on consistent GraphSnapshots while this graph keeps changing:
+	 * versions().publish() makes the changes so far visible, versions().snapshot() returns the latest published
+	 * epoch without a lock.
+	 * @param enabled TRUE to start recording, FALSE to drop the versions
+	 */
+	public void setVersioning(boolean enabled){
+		versions = enabled ? new GraphVersions<Key,Data>(this, transpose) : null;
+	}
+
+	/**
+	 * Returns the versions of the graph.
+	 * @return the versions, or null if versioning is off
+	 */
+	public GraphVersions<Key,Data> versions(){
+		return versions;
 	}
 
 	/**
@@ -281,17 +336,17 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
     public boolean arcExists(Key sourceKey, Key destinationKey){
     	if(sourceKey == null  || destinationKey == null) throw new NullPointerException();
     	
-    	if(!vertexExists(sourceKey) || !vertexExists(destinationKey)) return false;
+    	Vertex<Data> source      = vertices.get(sourceKey);
+    	Vertex<Data> destination = vertices.get(destinationKey);
+    	if(source == null || destination == null) return false;
     	
-    	if(!transpose){
-    		if(vertices.get(sourceKey).outEdges.containsKey(destinationKey)) return true;
-    		else return false;
+    	if(arcIndex != null){
+    		if(!transpose) return arcIndex.contains(source.id, destination.id);
+    		else return arcIndex.contains(destination.id, source.id);
     	}
     	
-    	else{
-    		if(vertices.get(sourceKey).inEdges.containsKey(destinationKey)) return true;
-    		else return false;
-    	}
+    	if(!transpose) return source.outEdges.containsKey(destinationKey);
+    	else return source.inEdges.containsKey(destinationKey);
     }
     
     /**
@@ -439,7 +494,10 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
     	if(vertexExists(vertexKey)) throw new IllegalArgumentException();
     	
     	vertexCount++;
-    	vertices.put(vertexKey, new Vertex<Data>());
+    	Vertex<Data> vertex = new Vertex<Data>();
+    	vertex.id = nextId++;
+    	vertices.put(vertexKey, vertex);
+    	if(versions != null) versions.insertVertex(vertexKey, null);
     }
     
     /**
@@ -452,7 +510,10 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
     	if(vertexExists(vertexKey)) throw new IllegalArgumentException();
     	
     	vertexCount++;
-    	vertices.put(vertexKey, new Vertex<Data>(vertexData));
+    	Vertex<Data> vertex = new Vertex<Data>(vertexData);
+    	vertex.id = nextId++;
+    	vertices.put(vertexKey, vertex);
+    	if(versions != null) versions.insertVertex(vertexKey, vertexData);
     }
      
     /**
@@ -476,7 +537,9 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
      	else{
      		vertices.get(sourceKey).inEdges.put(destinationKey, edge);
      		vertices.get(destinationKey).outEdges.put(sourceKey,edge);
-     	}	
+     	}
+     	indexArc(sourceKey, destinationKey, true);	
+     	if(versions != null) versions.insertArc(sourceKey, destinationKey, null);
      }
   
      /**
@@ -500,6 +563,8 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
      		vertices.get(sourceKey).inEdges.put(destinationKey, edge);
      		vertices.get(destinationKey).outEdges.put(sourceKey,edge);
      	}
+     	indexArc(sourceKey, destinationKey, true);
+     	if(versions != null) versions.insertArc(sourceKey, destinationKey, arcData);
     }
       
     /**
@@ -512,7 +577,7 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
      	if(!vertexExists(vertexKey)) throw new NoSuchElementException(); 
    
      	vertices.get(vertexKey).data = vertexData;
-     	
+     	if(versions != null) versions.setVertexData(vertexKey, vertexData);
     }
         
 
@@ -525,6 +590,7 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
 
      	if(!arcExists(sourceKey,destinationKey)) throw new IllegalArgumentException();
      			
+     	if(versions != null) versions.setArcData(sourceKey, destinationKey, arcData);
      	if(!transpose){
      	
  			vertices.get(sourceKey).outEdges.get(destinationKey).data = arcData;
@@ -551,17 +617,26 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
     	
     	if(!vertexExists(vertexKey)) throw new NoSuchElementException();
     	
-    	Data save = vertices.get(vertexKey).data;
+    	Vertex<Data> removed = vertices.remove(vertexKey);
+    	Data save = removed.data;
     	
-    	vertices.remove(vertexKey);
+    	edgeCount -= removed.outEdges.size() + removed.inEdges.size() - (removed.outEdges.containsKey(vertexKey) ? 1 : 0);
     	
-    	for(Vertex<Data> v: vertices.values()){
-    		if(v.inEdges.containsKey(vertexKey))
-    			v.inEdges.remove(vertexKey);
-    		if(v.outEdges.containsKey(vertexKey))
-    			v.outEdges.remove(vertexKey);
+    	// only the neighbours hold references to the vertex
+    	for(Key w: removed.outEdges.keySet()){
+    		Vertex<Data> neighbour = w.equals(vertexKey) ? removed : vertices.get(w);
+    		neighbour.inEdges.remove(vertexKey);
+    		if(arcIndex != null) arcIndex.remove(removed.id, neighbour.id);
     	}
+    	for(Key w: removed.inEdges.keySet()){
+    		if(w.equals(vertexKey)) continue;
+    		Vertex<Data> neighbour = vertices.get(w);
+    		neighbour.outEdges.remove(vertexKey);
+    		if(arcIndex != null) arcIndex.remove(neighbour.id, removed.id);
+    	}
+    	
     	vertexCount--;
+    	if(versions != null) versions.removeVertex(vertexKey);
     	return save;
     }
         
@@ -590,10 +665,27 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
  			vertices.get(destinationKey).outEdges.remove(sourceKey);
      	}
      	
+    	indexArc(sourceKey, destinationKey, false);
     	edgeCount--;
+    	if(versions != null) versions.removeArc(sourceKey, destinationKey);
     	return save;
     }
         
+    /**
+     * Adds an arc to the global arc index, or removes it, in the stored orientation.
+     */
+    private void indexArc(Key sourceKey, Key destinationKey, boolean add){
+    	if(arcIndex == null) return;
+    	
+    	int source      = vertices.get(sourceKey).id;
+    	int destination = vertices.get(destinationKey).id;
+    	if(transpose){
+    		int t = source; source = destination; destination = t;
+    	}
+    	if(add) arcIndex.add(source, destination);
+    	else    arcIndex.remove(source, destination);
+    }
+        
     /**
     * Reverse the direction of an arc with Source vertex having of a Key of sourceKey and Destination vertex having of a Key of destinationKey.
     *	    
@@ -616,6 +708,7 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
     */  
     public void transposeGraph() {
     	transpose = !transpose;
+    	if(versions != null) versions.transpose();
     }
     
     /**
@@ -627,6 +720,7 @@ public class HashMapGraph<Key extends Comparable<Key>, Data> implements Graph<Ke
 
      	if(!arcExists(sourceKey,destinationKey)) throw new IllegalArgumentException();
      			
+     	if(versions != null) versions.setArcWeight(sourceKey, destinationKey, weight);
      	if(!transpose){
      	
  			vertices.get(sourceKey).outEdges.get(destinationKey).weight = weight;
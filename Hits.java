@@ -0,0 +1,173 @@
+package networkmetrics;
+
+import java.util.Arrays;
+
+/**
+ * Computes Kleinberg's HITS hub and authority scores by parallel pull-based power iteration on a CompactGraph.
+ * An authority score pulls the hub scores of its in-neighbours and a hub score pulls the authority scores of
+ * its out-neighbours; both vectors are normalised to unit L2 length after every step and kept in double
+ * buffers. The iteration stops when the summed L1 change of the two vectors drops below the tolerance.
+ *
+ * Like PageRank, the scores of a transposed graph follow the reversed arcs, which swaps hubs and authorities.
+ */
+public class Hits {
+
+	private static final int CHUNK = 1024;
+
+	private final CompactGraph<?> graph;
+	private double                tolerance;
+	private int                   maxIterations;
+	private int                   threads;
+	private int                   iterations;
+	private double                delta;
+	private double[]              hubs;
+	private double[]              authorities;
+
+	/**
+	 * Constructs the computation with tolerance 1e-9 and at most 100 iterations.
+	 * @param graph the graph
+	 */
+	public Hits(CompactGraph<?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		this.graph    = graph;
+		tolerance     = 1e-9;
+		maxIterations = 100;
+		threads       = Parallel.defaultThreads();
+	}
+
+	/**
+	 * Sets the L1 change at which the iteration stops.
+	 * @param tolerance the convergence tolerance
+	 */
+	public void setTolerance(double tolerance){
+		if(!(tolerance > 0)) throw new IllegalArgumentException();
+
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets the largest number of iterations.
+	 * @param maxIterations the iteration limit
+	 */
+	public void setMaxIterations(int maxIterations){
+		if(maxIterations < 1) throw new IllegalArgumentException();
+
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets the number of parallel workers.
+	 * @param threads the number of workers
+	 */
+	public void setThreads(int threads){
+		if(threads < 1) throw new IllegalArgumentException();
+
+		this.threads = threads;
+	}
+
+	/**
+	 * Runs the power iteration. The results are read with hubs() and authorities().
+	 */
+	public void run(){
+		int n = graph.vertexCount();
+
+		double[] hub      = new double[n];
+		double[] auth     = new double[n];
+		double[] nextHub  = new double[n];
+		double[] nextAuth = new double[n];
+		Arrays.fill(hub,  n == 0 ? 0 : 1.0 / Math.sqrt(n));
+		Arrays.fill(auth, n == 0 ? 0 : 1.0 / Math.sqrt(n));
+
+		iterations = 0;
+		delta      = Double.POSITIVE_INFINITY;
+
+		while(n > 0 && iterations < maxIterations && delta >= tolerance){
+			step(graph.inOffsets, graph.inSources, hub, nextAuth);
+			step(graph.outOffsets, graph.outTargets, nextAuth, nextHub);
+
+			double changed = normalise(nextAuth, auth) + normalise(nextHub, hub);
+
+			double[] t = hub;  hub  = nextHub;  nextHub  = t;
+			t          = auth; auth = nextAuth; nextAuth = t;
+
+			delta = changed;
+			iterations++;
+		}
+
+		hubs        = hub;
+		authorities = auth;
+	}
+
+	/**
+	 * written[v] = sum of source[w] over the neighbours w of v in the given adjacency arrays.
+	 */
+	private void step(final int[] offsets, final int[] neighbours, final double[] source, final double[] written){
+		Parallel.forRange(threads, graph.vertexCount(), CHUNK, (from, to) -> {
+			for(int v = from; v < to; v++){
+				double sum = 0;
+				for(int a = offsets[v]; a < offsets[v + 1]; a++)
+					sum += source[neighbours[a]];
+				written[v] = sum;
+			}
+			return 0;
+		});
+	}
+
+	/**
+	 * Scales values to unit L2 length and returns its L1 distance from previous.
+	 */
+	private double normalise(final double[] values, final double[] previous){
+		double squares = Parallel.forRange(threads, values.length, CHUNK, (from, to) -> {
+			double sum = 0;
+			for(int v = from; v < to; v++) sum += values[v] * values[v];
+			return sum;
+		});
+		final double scale = squares == 0 ? 0 : 1 / Math.sqrt(squares);
+
+		return Parallel.forRange(threads, values.length, CHUNK, (from, to) -> {
+			double l1 = 0;
+			for(int v = from; v < to; v++){
+				values[v] *= scale;
+				l1 += Math.abs(values[v] - previous[v]);
+			}
+			return l1;
+		});
+	}
+
+	/**
+	 * Returns the hub scores of the last run.
+	 * @return the hub score of every dense vertex id, with unit L2 length
+	 */
+	public double[] hubs(){
+		if(hubs == null) throw new IllegalStateException();
+
+		return hubs.clone();
+	}
+
+	/**
+	 * Returns the authority scores of the last run.
+	 * @return the authority score of every dense vertex id, with unit L2 length
+	 */
+	public double[] authorities(){
+		if(authorities == null) throw new IllegalStateException();
+
+		return authorities.clone();
+	}
+
+	/**
+	 * Returns the number of iterations of the last run.
+	 * @return the number of iterations
+	 */
+	public int iterations(){
+		return iterations;
+	}
+
+	/**
+	 * Returns the L1 change of the final iteration of the last run.
+	 * @return the final L1 delta
+	 */
+	public double delta(){
+		return delta;
+	}
+}
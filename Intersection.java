@@ -0,0 +1,142 @@
+package networkmetrics;
+
+/**
+ * Intersection kernels for ranges of sorted int arrays without duplicates, such as the neighbour lists of a
+ * CompactGraph. Two ranges of similar length are merged; when one is much longer than the other, every element
+ * of the short range is found in the long one with an exponential then binary search, which takes time
+ * logarithmic in the long range instead of linear.
+ *
+ * When the jdk.incubator.vector module is present (java --add-modules jdk.incubator.vector), the merge of two
+ * long enough ranges runs on VectorIntersection, which compares a whole block of one range against a whole
+ * block of the other in a few vector instructions. Otherwise, and for short ranges, a scalar merge runs; the
+ * results are the same either way.
+ */
+final class Intersection {
+
+	/**
+	 * Length ratio from which the short range is searched in the long one instead of merged with it.
+	 */
+	static final int GALLOP_RATIO = 32;
+
+	private static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+	                                      && !Boolean.getBoolean("networkmetrics.scalar");
+
+	private Intersection(){}
+
+	/**
+	 * Returns TRUE if the merges run on the vector kernel.
+	 * @return TRUE if the jdk.incubator.vector module is present and not turned off
+	 */
+	static boolean vectorized(){
+		return VECTOR;
+	}
+
+	/**
+	 * Describes the kernel used by count and intersect.
+	 * @return the kernel name
+	 */
+	static String kernel(){
+		return VECTOR ? VectorIntersection.describe() : "scalar";
+	}
+
+	/**
+	 * Counts the common elements of a[aFrom..aTo) and b[bFrom..bTo).
+	 * @return the size of the intersection
+	 */
+	static int count(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo){
+		int na = aTo - aFrom, nb = bTo - bFrom;
+		if(na == 0 || nb == 0) return 0;
+		if(na > nb * GALLOP_RATIO) return countGalloping(b, bFrom, bTo, a, aFrom, aTo);
+		if(nb > na * GALLOP_RATIO) return countGalloping(a, aFrom, aTo, b, bFrom, bTo);
+		if(VECTOR && na >= VectorIntersection.LANES && nb >= VectorIntersection.LANES)
+			return VectorIntersection.count(a, aFrom, aTo, b, bFrom, bTo);
+		return countScalar(a, aFrom, aTo, b, bFrom, bTo);
+	}
+
+	/**
+	 * Writes the common elements of a[aFrom..aTo) and b[bFrom..bTo) to out, in increasing order.
+	 * @param out the output, with room for the shorter range
+	 * @return the size of the intersection
+	 */
+	static int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out){
+		int na = aTo - aFrom, nb = bTo - bFrom;
+		if(na == 0 || nb == 0) return 0;
+		if(na > nb * GALLOP_RATIO) return intersectGalloping(b, bFrom, bTo, a, aFrom, aTo, out);
+		if(nb > na * GALLOP_RATIO) return intersectGalloping(a, aFrom, aTo, b, bFrom, bTo, out);
+		if(VECTOR && na >= VectorIntersection.LANES && nb >= VectorIntersection.LANES)
+			return VectorIntersection.intersect(a, aFrom, aTo, b, bFrom, bTo, out);
+		return intersectScalar(a, aFrom, aTo, b, bFrom, bTo, out, 0);
+	}
+
+	/**
+	 * The scalar merge count, with the comparison results used as increments instead of branches.
+	 */
+	static int countScalar(int[] a, int i, int aTo, int[] b, int j, int bTo){
+		int count = 0;
+		while(i < aTo && j < bTo){
+			int x = a[i], y = b[j];
+			if(x == y) count++;
+			i += x <= y ? 1 : 0;
+			j += y <= x ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * The scalar merge, appending the common elements to out from index k.
+	 * @return the new end of out
+	 */
+	static int intersectScalar(int[] a, int i, int aTo, int[] b, int j, int bTo, int[] out, int k){
+		while(i < aTo && j < bTo){
+			int x = a[i], y = b[j];
+			if(x == y) out[k++] = x;
+			i += x <= y ? 1 : 0;
+			j += y <= x ? 1 : 0;
+		}
+		return k;
+	}
+
+	static int countGalloping(int[] small, int from, int to, int[] large, int lo, int hi){
+		int count = 0;
+		for(int i = from; i < to && lo < hi; i++){
+			lo = search(large, lo, hi, small[i]);
+			if(lo < hi && large[lo] == small[i]){
+				count++;
+				lo++;
+			}
+		}
+		return count;
+	}
+
+	static int intersectGalloping(int[] small, int from, int to, int[] large, int lo, int hi, int[] out){
+		int k = 0;
+		for(int i = from; i < to && lo < hi; i++){
+			lo = search(large, lo, hi, small[i]);
+			if(lo < hi && large[lo] == small[i]){
+				out[k++] = small[i];
+				lo++;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Returns the first index of a[lo..hi) whose value is not less than key, or hi: steps of doubling length
+	 * from lo bracket the key, then a binary search finds it.
+	 */
+	private static int search(int[] a, int lo, int hi, int key){
+		int step = 1, bound = lo;
+		while(bound < hi && a[bound] < key){
+			lo     = bound + 1;
+			bound += step;
+			step <<= 1;
+		}
+		hi = Math.min(hi, bound + 1);
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(a[mid] < key) lo = mid + 1;
+			else             hi = mid;
+		}
+		return lo;
+	}
+}
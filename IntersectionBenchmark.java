@@ -0,0 +1,153 @@
+package networkmetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Benchmark of the neighbour list intersections. Three overlap computations run three ways each: with
+ * HashMap probes on the HashMapGraph (walk one neighbour list, ask arcExists for every element), with the
+ * scalar merge of the sorted CompactGraph lists, and with the Intersection kernel (vector merge when the
+ * jdk.incubator.vector module is present, galloping search for lists of very different lengths). The results
+ * of the three must agree; the best time of a few repetitions is printed.
+ *
+ *  - common: common out-neighbours of random vertex pairs, the sampled pairs weighted towards high degrees
+ *  - triangles: the triangles of the undirected simple graph
+ *  - reciprocity: the arcs whose reverse arc exists
+ *
+ * Usage: java --add-modules jdk.incubator.vector networkmetrics.IntersectionBenchmark FILE [PAIRS] [SEED]
+ */
+public class IntersectionBenchmark {
+
+	private static final int REPEATS = 5;
+
+	private interface Task {
+		long run();
+	}
+
+	public static void main(String[] args){
+		if(args.length < 1){
+			System.out.println("Usage: IntersectionBenchmark FILE [PAIRS] [SEED]");
+			return;
+		}
+		int  pairs = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		long seed  = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+
+		try{
+			final HashMapGraph<String,String> graph   = GraphReader.load(new File(args[0]));
+			final CompactGraph<String>        compact = CompactGraph.of(graph);
+			int n = compact.vertexCount();
+
+			// pairs of arc endpoints, so that high degree vertices come up as often as they do in the lists
+			final int[] us = new int[pairs], vs = new int[pairs];
+			Random random = new Random(seed);
+			for(int i = 0; i < pairs && compact.arcCount() > 0; i++){
+				us[i] = compact.outTargets[random.nextInt(compact.arcCount())];
+				vs[i] = compact.outTargets[random.nextInt(compact.arcCount())];
+			}
+			final NeighbourhoodOverlap total = new NeighbourhoodOverlap(compact, CoreDecomposition.Degree.TOTAL);
+
+			System.out.println(args[0] + ": |V| = " + n + ", |E| = " + compact.arcCount() + ", kernel " + Intersection.kernel());
+			System.out.println(String.format("%-12s %-14s %12s %16s", "TASK", "METHOD", "BEST ms", "RESULT"));
+
+			time("common", "hash probes", () -> {
+				long sum = 0;
+				for(int i = 0; i < us.length; i++){
+					String v = compact.key(vs[i]);
+					Iterator<ArrayList<String>> out = graph.outAdjacentVertices(compact.key(us[i]));
+					while(out.hasNext()){
+						if(graph.arcExists(v, out.next().get(1))) sum++;
+					}
+				}
+				return sum;
+			});
+			time("common", "scalar merge", () -> {
+				long sum = 0;
+				for(int i = 0; i < us.length; i++){
+					int u = us[i], v = vs[i];
+					sum += Intersection.countScalar(compact.outTargets, compact.outOffsets[u], compact.outOffsets[u + 1],
+					                                compact.outTargets, compact.outOffsets[v], compact.outOffsets[v + 1]);
+				}
+				return sum;
+			});
+			time("common", "kernel", () -> {
+				long sum = 0;
+				for(int i = 0; i < us.length; i++){
+					int u = us[i], v = vs[i];
+					sum += Intersection.count(compact.outTargets, compact.outOffsets[u], compact.outOffsets[u + 1],
+					                          compact.outTargets, compact.outOffsets[v], compact.outOffsets[v + 1]);
+				}
+				return sum;
+			});
+
+			time("triangles", "hash probes", () -> {
+				long count = 0;
+				for(int u = 0; u < compact.vertexCount(); u++){
+					int[] higher = higherNeighbours(compact, u);
+					for(int i = 0; i < higher.length; i++){
+						String v = compact.key(higher[i]);
+						for(int j = i + 1; j < higher.length; j++){
+							String w = compact.key(higher[j]);
+							if(graph.arcExists(v, w) || graph.arcExists(w, v)) count++;
+						}
+					}
+				}
+				return count;
+			});
+			time("triangles", "scalar merge", () -> total.triangles(true));
+			time("triangles", "kernel", () -> total.triangles());
+
+			time("reciprocity", "hash probes", () -> {
+				long count = 0;
+				Iterator<ArrayList<String>> arcs = graph.arcs();
+				while(arcs.hasNext()){
+					ArrayList<String> arc = arcs.next();
+					if(graph.arcExists(arc.get(1), arc.get(0))) count++;
+				}
+				return count;
+			});
+			time("reciprocity", "scalar merge", () -> {
+				long count = 0;
+				for(int v = 0; v < compact.vertexCount(); v++){
+					count += Intersection.countScalar(compact.outTargets, compact.outOffsets[v], compact.outOffsets[v + 1],
+					                                  compact.inSources, compact.inOffsets[v], compact.inOffsets[v + 1]);
+				}
+				return count;
+			});
+			time("reciprocity", "kernel", () -> total.reciprocatedArcs());
+		}
+		catch(IOException o){ System.out.println("ERROR: " + o.getMessage()); }
+	}
+
+	private static void time(String task, String method, Task body){
+		long best = Long.MAX_VALUE, result = 0;
+		for(int r = 0; r < REPEATS; r++){
+			long start = System.nanoTime();
+			result = body.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.println(String.format("%-12s %-14s %12.3f %16d", task, method, best / 1e6, result));
+	}
+
+	/**
+	 * The neighbours in either direction greater than u, sorted, without duplicates.
+	 */
+	private static int[] higherNeighbours(CompactGraph<?> compact, int u){
+		int[] list = new int[compact.outDegree(u) + compact.inDegree(u)];
+		int size = 0;
+		int i = compact.outOffsets[u], iEnd = compact.outOffsets[u + 1];
+		int j = compact.inOffsets[u],  jEnd = compact.inOffsets[u + 1];
+		while(i < iEnd || j < jEnd){
+			int a = i < iEnd ? compact.outTargets[i] : Integer.MAX_VALUE;
+			int b = j < jEnd ? compact.inSources[j]  : Integer.MAX_VALUE;
+			int w = Math.min(a, b);
+			if(a == w) i++;
+			if(b == w) j++;
+			if(w > u) list[size++] = w;
+		}
+		return Arrays.copyOf(list, size);
+	}
+}
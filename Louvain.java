@@ -0,0 +1,512 @@
+package networkmetrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds communities of a Graph with the Louvain method, maximizing the modularity of its weighted undirected
+ * projection: the weight between two vertices is the sum of the weights of the arcs between them in both
+ * directions, an arc weighing its data when that is a number (the strength column of a VNA file) and 1
+ * otherwise. A self loop adds twice its weight to the degree of its vertex, as an undirected loop does.
+ *
+ * Every level first moves vertices between communities while the modularity grows, then aggregates every
+ * community into one vertex of the next level, with the weights inside a community as a self loop, until a
+ * level moves nothing. The moves are decided in parallel: the vertices are taken in fixed batches, the workers
+ * pick the best community of every vertex of a batch from the state before the batch, with the neighbour
+ * community weights summed in a primitive hash map, and the moves are applied after the batch. Two singleton
+ * vertices never swap communities with each other (a vertex alone only joins another singleton of smaller
+ * id), and a sweep that would lower the modularity is not applied. The result does not depend on the number of
+ * workers.
+ *
+ * @param <Key> the vertex keys
+ */
+public class Louvain<Key extends Comparable<Key>> {
+
+	private static final int    BATCH      = 4096;
+	private static final int    CHUNK      = 256;
+	private static final int    MAX_SWEEPS = 64;
+	private static final double MIN_GAIN   = 1e-7;
+
+	private final Graph<Key,?> graph;
+	private final Object[]     keys;
+	private final HashMap<Key,Integer> ids;
+	private final Level        projection;
+	private int                threads;
+
+	private int[]    community;
+	private int[]    sizes;
+	private double   modularity;
+	private double[] levelModularity;
+
+	/**
+	 * One level: a symmetric weighted adjacency in compressed rows, self loops stored once.
+	 */
+	private static class Level {
+		final int      n;
+		final int[]    offsets;
+		final int[]    targets;
+		final double[] weights;
+		final double[] degrees;
+		final double   total;
+
+		Level(int n, int[] offsets, int[] targets, double[] weights){
+			this.n       = n;
+			this.offsets = offsets;
+			this.targets = targets;
+			this.weights = weights;
+			degrees = new double[n];
+			double sum = 0;
+			for(int v = 0; v < n; v++){
+				for(int a = offsets[v]; a < offsets[v + 1]; a++) degrees[v] += weights[a];
+				sum += degrees[v];
+			}
+			total = sum;
+		}
+
+		/**
+		 * Builds a level from directed entries (rows[i], columns[i], values[i]), summing duplicate entries.
+		 */
+		static Level of(int n, int[] rows, int[] columns, double[] values, int count){
+			int[] offsets = new int[n + 1];
+			for(int i = 0; i < count; i++) offsets[rows[i] + 1]++;
+			for(int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+			int[]    fill    = Arrays.copyOf(offsets, n);
+			int[]    targets = new int[count];
+			double[] weights = new double[count];
+			for(int i = 0; i < count; i++){
+				int slot = fill[rows[i]]++;
+				targets[slot] = columns[i];
+				weights[slot] = values[i];
+			}
+
+			// duplicates are summed into the first entry of their row, with a stamp per column
+			int[] position = new int[n];
+			int[] stamp    = new int[n];
+			Arrays.fill(stamp, -1);
+			int size = 0;
+			int[] compact = new int[n + 1];
+			for(int v = 0; v < n; v++){
+				int rowStart = size;
+				for(int a = offsets[v]; a < offsets[v + 1]; a++){
+					int t = targets[a];
+					if(stamp[t] == v){
+						weights[position[t]] += weights[a];
+						continue;
+					}
+					stamp[t]    = v;
+					position[t] = size;
+					targets[size] = t;
+					weights[size] = weights[a];
+					size++;
+				}
+				compact[v]     = rowStart;
+				compact[v + 1] = size;
+			}
+			return new Level(n, compact, Arrays.copyOf(targets, size), Arrays.copyOf(weights, size));
+		}
+	}
+
+	/**
+	 * An open addressing map from community ids to summed weights, cleared in time proportional to its size.
+	 */
+	private static class WeightMap {
+		private int[]    keys;
+		private double[] values;
+		private int[]    used;
+		private int      size;
+		private int      mask;
+
+		WeightMap(){
+			keys   = new int[16];
+			values = new double[16];
+			used   = new int[16];
+			mask   = 15;
+			Arrays.fill(keys, -1);
+		}
+
+		void add(int key, double value){
+			int i = (key * 0x9e3779b9) >>> 1 & mask;
+			while(keys[i] != -1 && keys[i] != key) i = (i + 1) & mask;
+			if(keys[i] == key){
+				values[i] += value;
+				return;
+			}
+			keys[i]   = key;
+			values[i] = value;
+			used[size++] = i;
+			if(size * 2 > keys.length) grow();
+		}
+
+		double get(int key){
+			int i = (key * 0x9e3779b9) >>> 1 & mask;
+			while(keys[i] != -1){
+				if(keys[i] == key) return values[i];
+				i = (i + 1) & mask;
+			}
+			return 0;
+		}
+
+		int size(){ return size; }
+
+		int key(int entry){ return keys[used[entry]]; }
+
+		double value(int entry){ return values[used[entry]]; }
+
+		void clear(){
+			for(int e = 0; e < size; e++) keys[used[e]] = -1;
+			size = 0;
+		}
+
+		private void grow(){
+			int[]    oldKeys   = keys;
+			double[] oldValues = values;
+			int[]    oldUsed   = used;
+			keys   = new int[oldKeys.length * 2];
+			values = new double[keys.length];
+			used   = new int[keys.length];
+			mask   = keys.length - 1;
+			Arrays.fill(keys, -1);
+			int count = size;
+			size = 0;
+			for(int e = 0; e < count; e++) add(oldKeys[oldUsed[e]], oldValues[oldUsed[e]]);
+		}
+	}
+
+	/**
+	 * Constructs the computation on the projection of a graph.
+	 * @param graph the graph
+	 */
+	@SuppressWarnings("unchecked")
+	public Louvain(Graph<Key,?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		this.graph = graph;
+		threads    = Parallel.defaultThreads();
+
+		int n = graph.vertexCount();
+		keys = new Object[n];
+		ids  = new HashMap<Key,Integer>(n * 2);
+		Iterator<Key> vertices = graph.vertices();
+		for(int v = 0; v < n; v++){
+			keys[v] = vertices.next();
+			ids.put((Key) keys[v], v);
+		}
+
+		int      m       = graph.arcCount();
+		int[]    rows    = new int[2 * m];
+		int[]    columns = new int[2 * m];
+		double[] values  = new double[2 * m];
+		int      count   = 0;
+		Iterator<ArrayList<Key>> arcs = graph.arcs();
+		while(arcs.hasNext()){
+			ArrayList<Key> arc = arcs.next();
+			int s = ids.get(arc.get(0)), t = ids.get(arc.get(1));
+			double w = weight(graph.getArcData(arc.get(0), arc.get(1)));
+			if(s == t){
+				rows[count] = s; columns[count] = s; values[count++] = 2 * w;
+				continue;
+			}
+			rows[count] = s; columns[count] = t; values[count++] = w;
+			rows[count] = t; columns[count] = s; values[count++] = w;
+		}
+		projection = Level.of(n, rows, columns, values, count);
+		community  = new int[n];
+		sizes      = new int[0];
+		levelModularity = new double[0];
+	}
+
+	private static double weight(Object data){
+		if(data instanceof Number) return ((Number) data).doubleValue();
+		if(data != null){
+			try{ return Double.parseDouble(data.toString()); }
+			catch(NumberFormatException e){ }
+		}
+		return 1;
+	}
+
+	/**
+	 * Sets the number of parallel workers.
+	 * @param threads the number of workers
+	 */
+	public void setThreads(int threads){
+		if(threads < 1) throw new IllegalArgumentException();
+
+		this.threads = threads;
+	}
+
+	/**
+	 * Runs the levels until one moves no vertex.
+	 */
+	public void run(){
+		int n = projection.n;
+		int[] membership = new int[n];
+		for(int v = 0; v < n; v++) membership[v] = v;
+
+		ArrayList<Double> qualities = new ArrayList<Double>();
+		Level level = projection;
+		while(true){
+			int[] comm = moves(level);
+			int   c    = renumber(comm);
+			if(c == level.n) break;
+
+			for(int v = 0; v < n; v++) membership[v] = comm[membership[v]];
+			qualities.add(modularity(level, comm));
+			level = aggregate(level, comm, c);
+		}
+
+		// community ids by decreasing size, ties by the smallest member
+		int c = 0;
+		for(int v = 0; v < n; v++) c = Math.max(c, membership[v] + 1);
+		int[] count = new int[c];
+		int[] first = new int[c];
+		Arrays.fill(first, -1);
+		for(int v = 0; v < n; v++){
+			count[membership[v]]++;
+			if(first[membership[v]] == -1) first[membership[v]] = v;
+		}
+		Integer[] order = new Integer[c];
+		for(int i = 0; i < c; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> count[a] != count[b] ? count[b] - count[a] : first[a] - first[b]);
+		int[] id = new int[c];
+		sizes = new int[c];
+		for(int i = 0; i < c; i++){
+			id[order[i]] = i;
+			sizes[i]     = count[order[i]];
+		}
+		for(int v = 0; v < n; v++) community[v] = id[membership[v]];
+
+		modularity      = modularity(projection, community);
+		levelModularity = new double[qualities.size()];
+		for(int i = 0; i < levelModularity.length; i++) levelModularity[i] = qualities.get(i);
+	}
+
+	/**
+	 * The local moving phase of one level.
+	 * @return the community of every vertex of the level
+	 */
+	private int[] moves(final Level level){
+		final int      n    = level.n;
+		final int[]    comm = new int[n];
+		final double[] tot  = new double[n];
+		final int[]    size = new int[n];
+		for(int v = 0; v < n; v++){
+			comm[v] = v;
+			tot[v]  = level.degrees[v];
+			size[v] = 1;
+		}
+		if(level.total == 0) return comm;
+
+		final int[] next = new int[n];
+		double quality = modularity(level, comm);
+		for(int sweep = 0; sweep < MAX_SWEEPS; sweep++){
+			int[] before = comm.clone();
+			double[] totBefore = tot.clone();
+			int[] sizeBefore = size.clone();
+			int moved = 0;
+
+			for(int batch = 0; batch < n; batch += BATCH){
+				final int from = batch, to = Math.min(n, batch + BATCH);
+				final AtomicInteger claim = new AtomicInteger(from);
+				Parallel.run(Math.min(threads, Math.max(1, (to - from) / CHUNK)), worker -> {
+					WeightMap map = new WeightMap();
+					int start;
+					while((start = claim.getAndAdd(CHUNK)) < to){
+						int end = Math.min(start + CHUNK, to);
+						for(int v = start; v < end; v++) next[v] = best(level, v, comm, tot, size, map);
+					}
+					return null;
+				});
+
+				for(int v = from; v < to; v++){
+					int c = comm[v], d = next[v];
+					if(c == d) continue;
+					tot[c]  -= level.degrees[v];
+					tot[d]  += level.degrees[v];
+					size[c]--;
+					size[d]++;
+					comm[v] = d;
+					moved++;
+				}
+			}
+			if(moved == 0) break;
+
+			double q = modularity(level, comm);
+			if(q < quality + MIN_GAIN){
+				if(q < quality){
+					System.arraycopy(before, 0, comm, 0, n);
+					System.arraycopy(totBefore, 0, tot, 0, n);
+					System.arraycopy(sizeBefore, 0, size, 0, n);
+				}
+				break;
+			}
+			quality = q;
+		}
+		return comm;
+	}
+
+	/**
+	 * Returns the community that gains vertex v the most modularity, its own if none gains anything.
+	 */
+	private static int best(Level level, int v, int[] comm, double[] tot, int[] size, WeightMap map){
+		double k  = level.degrees[v];
+		double m2 = level.total;
+		int    cv = comm[v];
+
+		map.clear();
+		for(int a = level.offsets[v]; a < level.offsets[v + 1]; a++){
+			int u = level.targets[a];
+			if(u != v) map.add(comm[u], level.weights[a]);
+		}
+
+		int    best     = cv;
+		double bestGain = map.get(cv) - (tot[cv] - k) * k / m2;
+		double stay     = bestGain;
+		for(int e = 0; e < map.size(); e++){
+			int c = map.key(e);
+			if(c == cv) continue;
+
+			double gain = map.value(e) - tot[c] * k / m2;
+			if(gain > bestGain || (gain == bestGain && gain > stay && c < best)){
+				best     = c;
+				bestGain = gain;
+			}
+		}
+		if(best != cv && size[cv] == 1 && size[best] == 1 && best > cv) return cv;
+		return best;
+	}
+
+	/**
+	 * Renumbers the communities 0..c-1 in order of their first vertex.
+	 * @return the number of communities c
+	 */
+	private static int renumber(int[] comm){
+		int[] id = new int[comm.length];
+		Arrays.fill(id, -1);
+		int c = 0;
+		for(int v = 0; v < comm.length; v++){
+			if(id[comm[v]] == -1) id[comm[v]] = c++;
+			comm[v] = id[comm[v]];
+		}
+		return c;
+	}
+
+	/**
+	 * The level whose vertices are the communities of this one.
+	 */
+	private static Level aggregate(Level level, int[] comm, int c){
+		int      count   = level.targets.length;
+		int[]    rows    = new int[count];
+		int[]    columns = new int[count];
+		for(int v = 0; v < level.n; v++){
+			for(int a = level.offsets[v]; a < level.offsets[v + 1]; a++){
+				rows[a]    = comm[v];
+				columns[a] = comm[level.targets[a]];
+			}
+		}
+		return Level.of(c, rows, columns, level.weights.clone(), count);
+	}
+
+	/**
+	 * Returns the modularity of a partition of a level: the sum over the communities of the weight inside over
+	 * the total weight, less the square of their share of the total degree.
+	 */
+	private static double modularity(Level level, int[] comm){
+		if(level.total == 0) return 0;
+
+		int n = level.n;
+		double[] inside = new double[n];
+		double[] tot    = new double[n];
+		for(int v = 0; v < n; v++){
+			tot[comm[v]] += level.degrees[v];
+			for(int a = level.offsets[v]; a < level.offsets[v + 1]; a++){
+				if(comm[level.targets[a]] == comm[v]) inside[comm[v]] += level.weights[a];
+			}
+		}
+		double q = 0;
+		for(int c = 0; c < n; c++){
+			double share = tot[c] / level.total;
+			q += inside[c] / level.total - share * share;
+		}
+		return q;
+	}
+
+	/**
+	 * Returns the community of a vertex. Communities are numbered from 0 in order of decreasing size.
+	 * @param key the vertex key
+	 * @return the community id
+	 */
+	public int community(Key key){
+		Integer v = ids.get(key);
+		if(v == null) throw new NoSuchElementException();
+
+		return community[v];
+	}
+
+	/**
+	 * Returns the number of communities.
+	 * @return the number of communities
+	 */
+	public int communityCount(){
+		return sizes.length;
+	}
+
+	/**
+	 * Returns the number of vertices of every community, the largest first.
+	 * @return a copy of the community sizes
+	 */
+	public int[] sizes(){
+		return sizes.clone();
+	}
+
+	/**
+	 * Returns the modularity of the communities on the projection.
+	 * @return the modularity
+	 */
+	public double modularity(){
+		return modularity;
+	}
+
+	/**
+	 * Returns the modularity reached by every level that moved vertices.
+	 * @return a copy of the modularity of every level
+	 */
+	public double[] levelModularity(){
+		return levelModularity.clone();
+	}
+
+	/**
+	 * Sets the community id of every vertex as a vertex annotation of the graph.
+	 * @param property the annotation property
+	 */
+	@SuppressWarnings("unchecked")
+	public void annotate(Object property){
+		for(int v = 0; v < keys.length; v++) graph.setAnnotation((Key) keys[v], property, community[v]);
+	}
+
+	/**
+	 * Writes the community of every vertex as the node data section of a VNA file, ID and community columns.
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try{
+			out.println("*Node data");
+			out.println("ID community");
+			for(int v = 0; v < keys.length; v++) out.println(keys[v] + " " + community[v]);
+			if(out.checkError()) throw new IOException("Cannot write " + file);
+		}
+		finally{
+			out.close();
+		}
+	}
+}
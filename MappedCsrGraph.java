@@ -0,0 +1,150 @@
+package networkmetrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only directed graph stored in a CSR file written by ExternalCsrBuilder and accessed through memory
+ * mapping, so the arcs are paged in by the operating system and never occupy the heap. Vertices are dense int
+ * ids in the order of the VNA vertex section and every out-neighbour list is sorted.
+ *
+ * File layout (big-endian): magic, version, |V| (int), |A| (long), padding (int), then |V|+1 long offsets into
+ * the target array, |V| int in-degrees, and |A| int targets.
+ */
+public class MappedCsrGraph implements Closeable {
+
+	static final int MAGIC   = 0x4e4d4353;
+	static final int VERSION = 1;
+
+	private static final int  HEADER = 24;
+	private static final int  SHIFT  = 30;
+	private static final long CHUNK  = 1L << SHIFT;
+
+	private final RandomAccessFile   file;
+	private final MappedByteBuffer[] chunks;
+	private final int                vertices;
+	private final long               arcs;
+	private final long               inDegrees;
+	private final long               targets;
+
+	/**
+	 * Opens a CSR file.
+	 * @param csr the file written by ExternalCsrBuilder
+	 * @throws IOException if the file cannot be read or is not a CSR file
+	 */
+	public MappedCsrGraph(File csr) throws IOException{
+		file = new RandomAccessFile(csr, "r");
+		try{
+			if(file.readInt() != MAGIC || file.readInt() != VERSION) throw new IOException("Not a CSR file: " + csr);
+
+			vertices  = file.readInt();
+			arcs      = file.readLong();
+			inDegrees = HEADER + 8L * (vertices + 1);
+			targets   = inDegrees + 4L * vertices;
+
+			long length = file.length();
+			if(length != targets + 4 * arcs) throw new IOException("Truncated CSR file: " + csr);
+
+			FileChannel channel = file.getChannel();
+			chunks = new MappedByteBuffer[(int) ((length + CHUNK - 1) >>> SHIFT)];
+			for(int i = 0; i < chunks.length; i++){
+				long start = (long) i << SHIFT;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK, length - start));
+			}
+		}
+		catch(IOException e){
+			file.close();
+			throw e;
+		}
+	}
+
+	// chunks are a power of two long and every value is aligned to its size, so no value spans two chunks
+	private int getInt(long position){
+		return chunks[(int) (position >>> SHIFT)].getInt((int) (position & (CHUNK - 1)));
+	}
+
+	private long getLong(long position){
+		return chunks[(int) (position >>> SHIFT)].getLong((int) (position & (CHUNK - 1)));
+	}
+
+	/**
+	 * Returns the number of vertices |V|.
+	 * @return the number of vertices
+	 */
+	public int vertexCount(){
+		return vertices;
+	}
+
+	/**
+	 * Returns the number of arcs |A|.
+	 * @return the number of arcs
+	 */
+	public long arcCount(){
+		return arcs;
+	}
+
+	/**
+	 * Returns the index of the first out-neighbour of v in the target array.
+	 * @param v the vertex id
+	 * @return the start offset of v
+	 */
+	public long outStart(int v){
+		return getLong(HEADER + 8L * v);
+	}
+
+	/**
+	 * Returns the number of arcs outgoing from v.
+	 * @param v the vertex id
+	 * @return the out-degree of v
+	 */
+	public int outDegree(int v){
+		return (int) (outStart(v + 1) - outStart(v));
+	}
+
+	/**
+	 * Returns the number of arcs incoming to v.
+	 * @param v the vertex id
+	 * @return the in-degree of v
+	 */
+	public int inDegree(int v){
+		return getInt(inDegrees + 4L * v);
+	}
+
+	/**
+	 * Returns the entry of the target array at the given index.
+	 * @param index the index, from outStart(v) to outStart(v+1)-1 for the neighbours of v
+	 * @return the target vertex id
+	 */
+	public int target(long index){
+		return getInt(targets + 4 * index);
+	}
+
+	/**
+	 * Returns TRUE if the arc (source, destination) exists, by binary search in the sorted neighbours of source.
+	 * @param source the source vertex id
+	 * @param destination the destination vertex id
+	 * @return TRUE if the arc exists, otherwise FALSE
+	 */
+	public boolean arcExists(int source, int destination){
+		long low = outStart(source), high = outStart(source + 1) - 1;
+		while(low <= high){
+			long middle = (low + high) >>> 1;
+			int  t      = target(middle);
+			if(t < destination)      low  = middle + 1;
+			else if(t > destination) high = middle - 1;
+			else return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Releases the file. The mappings themselves are released when they are garbage collected.
+	 */
+	public void close() throws IOException{
+		file.close();
+	}
+}
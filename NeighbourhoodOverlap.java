@@ -0,0 +1,234 @@
+package networkmetrics;
+
+import java.util.Arrays;
+
+/**
+ * Neighbourhood overlap measures of a CompactGraph, all computed by intersecting sorted neighbour lists with
+ * the Intersection kernels: common neighbours, Jaccard and Adamic-Adar similarity of two vertices, the
+ * vertices most similar to a given one, the number of undirected triangles and the number of reciprocated arcs.
+ *
+ * The neighbours of a vertex are its out-neighbours, its in-neighbours or both (the union without self loops),
+ * by the direction given to the constructor. An instance keeps scratch arrays, so it is not thread safe.
+ */
+public class NeighbourhoodOverlap {
+
+	/**
+	 * A similarity measure of two vertices.
+	 */
+	public enum Measure { COMMON, JACCARD, ADAMIC_ADAR }
+
+	private final CompactGraph<?>          graph;
+	private final CoreDecomposition.Degree direction;
+	private final int[]                    offsets;
+	private final int[]                    neighbours;
+	private final int[]                    reverseOffsets;
+	private final int[]                    reverseNeighbours;
+	private final int[]                    common;
+	private final int[]                    mark;
+
+	/**
+	 * Constructs the measures over the neighbours in one direction.
+	 * @param graph the graph
+	 * @param direction OUT, IN or TOTAL for the union of both
+	 */
+	public NeighbourhoodOverlap(CompactGraph<?> graph, CoreDecomposition.Degree direction){
+		if(graph == null || direction == null) throw new NullPointerException();
+
+		this.graph     = graph;
+		this.direction = direction;
+		int n = graph.vertexCount();
+		if(direction == CoreDecomposition.Degree.OUT){
+			offsets = graph.outOffsets; neighbours = graph.outTargets;
+			reverseOffsets = graph.inOffsets; reverseNeighbours = graph.inSources;
+		}
+		else if(direction == CoreDecomposition.Degree.IN){
+			offsets = graph.inOffsets; neighbours = graph.inSources;
+			reverseOffsets = graph.outOffsets; reverseNeighbours = graph.outTargets;
+		}
+		else{
+			offsets = new int[n + 1];
+			int[] union = new int[graph.outTargets.length + graph.inSources.length];
+			int size = 0;
+			for(int v = 0; v < n; v++){
+				int i = graph.outOffsets[v], iEnd = graph.outOffsets[v + 1];
+				int j = graph.inOffsets[v],  jEnd = graph.inOffsets[v + 1];
+				while(i < iEnd || j < jEnd){
+					int a = i < iEnd ? graph.outTargets[i] : Integer.MAX_VALUE;
+					int b = j < jEnd ? graph.inSources[j]  : Integer.MAX_VALUE;
+					int w = Math.min(a, b);
+					if(a == w) i++;
+					if(b == w) j++;
+					if(w != v) union[size++] = w;
+				}
+				offsets[v + 1] = size;
+			}
+			neighbours        = Arrays.copyOf(union, size);
+			reverseOffsets    = offsets;
+			reverseNeighbours = neighbours;
+		}
+		int max = 0;
+		for(int v = 0; v < n; v++) max = Math.max(max, offsets[v + 1] - offsets[v]);
+		common = new int[max];
+		mark   = new int[n];
+		Arrays.fill(mark, -1);
+	}
+
+	/**
+	 * Returns the number of neighbours of a vertex.
+	 * @param v the vertex id
+	 * @return the degree in the direction of this instance
+	 */
+	public int degree(int v){
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * Returns the number of common neighbours of two vertices.
+	 * @param u a vertex id
+	 * @param v a vertex id
+	 * @return the size of the intersection of their neighbour lists
+	 */
+	public int commonNeighbours(int u, int v){
+		return Intersection.count(neighbours, offsets[u], offsets[u + 1], neighbours, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * Returns the Jaccard similarity of two vertices: common neighbours over the size of the union.
+	 * @param u a vertex id
+	 * @param v a vertex id
+	 * @return the similarity, 0 if neither has neighbours
+	 */
+	public double jaccard(int u, int v){
+		int c = commonNeighbours(u, v);
+		int union = degree(u) + degree(v) - c;
+		return union == 0 ? 0 : (double) c / union;
+	}
+
+	/**
+	 * Returns the Adamic-Adar similarity of two vertices: the sum of 1 / ln(degree) over their common
+	 * neighbours, the degree of a common neighbour taken in the opposite direction (the vertices that share it).
+	 * @param u a vertex id
+	 * @param v a vertex id
+	 * @return the similarity
+	 */
+	public double adamicAdar(int u, int v){
+		int c = Intersection.intersect(neighbours, offsets[u], offsets[u + 1], neighbours, offsets[v], offsets[v + 1], common);
+		double score = 0;
+		for(int i = 0; i < c; i++){
+			int d = reverseOffsets[common[i] + 1] - reverseOffsets[common[i]];
+			if(d > 1) score += 1 / Math.log(d);
+		}
+		return score;
+	}
+
+	/**
+	 * Returns the similarity of two vertices.
+	 * @param measure the measure
+	 * @param u a vertex id
+	 * @param v a vertex id
+	 * @return the similarity
+	 */
+	public double similarity(Measure measure, int u, int v){
+		if(measure == Measure.COMMON)  return commonNeighbours(u, v);
+		if(measure == Measure.JACCARD) return jaccard(u, v);
+		return adamicAdar(u, v);
+	}
+
+	/**
+	 * Returns the k vertices most similar to a vertex, most similar first, ties going to the smaller id. Only
+	 * the vertices that share a neighbour with v are candidates, found through the lists of its neighbours in
+	 * the opposite direction.
+	 * @param measure the measure
+	 * @param v the vertex id
+	 * @param k the number of vertices
+	 * @param scores receives the similarity of every returned vertex, or null
+	 * @return at most k vertex ids
+	 */
+	public int[] mostSimilar(Measure measure, int v, int k, double[] scores){
+		if(measure == null) throw new NullPointerException();
+		if(k < 0) throw new IllegalArgumentException();
+
+		int[] candidates = new int[16];
+		int   count      = 0;
+		for(int a = offsets[v]; a < offsets[v + 1]; a++){
+			int w = neighbours[a];
+			for(int b = reverseOffsets[w]; b < reverseOffsets[w + 1]; b++){
+				int u = reverseNeighbours[b];
+				if(u == v || mark[u] == v) continue;
+				mark[u] = v;
+				if(count == candidates.length) candidates = Arrays.copyOf(candidates, count * 2);
+				candidates[count++] = u;
+			}
+		}
+		for(int i = 0; i < count; i++) mark[candidates[i]] = -1;
+		Arrays.sort(candidates, 0, count);
+
+		double[] similarity = new double[count];
+		for(int i = 0; i < count; i++) similarity[i] = similarity(measure, v, candidates[i]);
+		int[] best = Ranking.top(similarity, k);
+		int[] ids  = new int[best.length];
+		for(int i = 0; i < best.length; i++){
+			ids[i] = candidates[best[i]];
+			if(scores != null) scores[i] = similarity[best[i]];
+		}
+		return ids;
+	}
+
+	/**
+	 * Counts the triangles of the undirected simple graph underlying the graph: every arc pair u &lt; v meets
+	 * the neighbours greater than v in both lists once. Uses the union of both directions whatever the
+	 * direction of this instance.
+	 * @return the number of triangles
+	 */
+	public long triangles(){
+		return triangles(false);
+	}
+
+	/**
+	 * Counts the triangles with the Intersection kernel, or with its scalar merge only (for benchmarks).
+	 */
+	long triangles(boolean scalar){
+		NeighbourhoodOverlap total = direction == CoreDecomposition.Degree.TOTAL ? this
+		                           : new NeighbourhoodOverlap(graph, CoreDecomposition.Degree.TOTAL);
+		int[] offsets = total.offsets, neighbours = total.neighbours;
+		long count = 0;
+		for(int u = 0; u < graph.vertexCount(); u++){
+			int uEnd = offsets[u + 1];
+			int uFrom = upper(neighbours, offsets[u], uEnd, u);
+			for(int a = uFrom; a < uEnd; a++){
+				int v = neighbours[a];
+				int vEnd = offsets[v + 1];
+				int vFrom = upper(neighbours, offsets[v], vEnd, v);
+				count += scalar ? Intersection.countScalar(neighbours, a + 1, uEnd, neighbours, vFrom, vEnd)
+				                : Intersection.count(neighbours, a + 1, uEnd, neighbours, vFrom, vEnd);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the arcs whose reverse arc also exists, a self loop counting as its own reverse, by intersecting
+	 * the out-list and the in-list of every vertex.
+	 * @return the number of reciprocated arcs
+	 */
+	public long reciprocatedArcs(){
+		long count = 0;
+		for(int v = 0; v < graph.vertexCount(); v++){
+			count += Intersection.count(graph.outTargets, graph.outOffsets[v], graph.outOffsets[v + 1],
+			                            graph.inSources, graph.inOffsets[v], graph.inOffsets[v + 1]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the first index of the sorted range whose value is greater than key.
+	 */
+	private static int upper(int[] a, int lo, int hi, int key){
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(a[mid] <= key) lo = mid + 1;
+			else              hi = mid;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,478 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable Graph whose adjacency lives outside the Java heap, in MemorySegments owned by an Arena. The
+ * out- and in-offsets (from which the degrees follow), the sorted out-targets and in-sources, and the arc
+ * weights are native memory, so a multi-GB graph adds nothing to the heap the garbage collector scans; only the
+ * vertex keys and the key to id map stay on the heap. The segments either hold a copy of another Graph or
+ * are mapped from a snapshot file written by write(File).
+ *
+ * The memory is released deterministically by close(); the graph must not be used afterwards. Vertex data are
+ * not stored, so getVertexData returns null. The weight of a copied arc is its data read as a number, which is
+ * how VnaReader keeps the tie strength, or else its Graph weight, or 1 if it has neither; getArcData returns
+ * the weight as a Double, so that the weighted metrics read the strengths as they do from the graph copied.
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data type of the Graph interface: null for the vertices, Double weights for the arcs
+ */
+public class OffHeapGraph<Key extends Comparable<Key>, Data> extends ReadOnlyGraph<Key, Data> implements AutoCloseable {
+
+	private static final int  MAGIC   = 0x4e4d4f48;
+	private static final int  VERSION = 2;
+	private static final long HEADER  = 64;
+
+	private static final ValueLayout.OfInt    INT    = ValueLayout.JAVA_INT;
+	private static final ValueLayout.OfLong   LONG   = ValueLayout.JAVA_LONG;
+	private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+
+	/**
+	 * Iterates the neighbours of one vertex in a pair of offset and neighbour segments.
+	 */
+	private class AdjacentIterator implements Iterator<ArrayList<Key>> {
+		private final MemorySegment neighbours;
+		private final int           vertex;
+		private final boolean       outList;
+		private long                index;
+		private final long          end;
+
+		public AdjacentIterator(int vertex, boolean outList){
+			this.vertex  = vertex;
+			this.outList = outList;
+
+			boolean storedOut = outList != transpose;
+			MemorySegment offsets = storedOut ? outOffsets : inOffsets;
+			neighbours = storedOut ? outTargets : inSources;
+			index = offsets.getAtIndex(LONG, vertex);
+			end   = offsets.getAtIndex(LONG, vertex + 1);
+		}
+
+		public boolean hasNext(){
+			return index < end;
+		}
+
+		public ArrayList<Key> next(){
+			if(!hasNext()) throw new NoSuchElementException();
+
+			int other = neighbours.getAtIndex(INT, index++);
+			ArrayList<Key> list = new ArrayList<Key>(2);
+			list.add(key(outList ? vertex : other));
+			list.add(key(outList ? other : vertex));
+			return list;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Iterates every arc: the out-neighbours of every vertex in turn.
+	 */
+	private class ArcIterator implements Iterator<ArrayList<Key>> {
+		private int              vertex;
+		private AdjacentIterator arcs;
+
+		public ArcIterator(){
+			vertex = -1;
+			advance();
+		}
+
+		private void advance(){
+			while((arcs == null || !arcs.hasNext()) && vertex + 1 < keys.length)
+				arcs = new AdjacentIterator(++vertex, true);
+		}
+
+		public boolean hasNext(){
+			return arcs != null && arcs.hasNext();
+		}
+
+		public ArrayList<Key> next(){
+			if(!hasNext()) throw new NoSuchElementException();
+
+			ArrayList<Key> arc = arcs.next();
+			advance();
+			return arc;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final Arena                arena;
+	private final Object[]             keys;
+	private final HashMap<Key,Integer> ids;
+	private final long                 arcs;
+	private final MemorySegment        outOffsets;
+	private final MemorySegment        outTargets;
+	private final MemorySegment        inOffsets;
+	private final MemorySegment        inSources;
+	private final MemorySegment        weights;
+	private boolean                    transpose;
+
+	private OffHeapGraph(Arena arena, Object[] keys, HashMap<Key,Integer> ids, long arcs, MemorySegment outOffsets,
+	                     MemorySegment outTargets, MemorySegment inOffsets, MemorySegment inSources, MemorySegment weights){
+		this.arena      = arena;
+		this.keys       = keys;
+		this.ids        = ids;
+		this.arcs       = arcs;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets  = inOffsets;
+		this.inSources  = inSources;
+		this.weights    = weights;
+	}
+
+	/**
+	 * Copies a graph into native memory. The adjacency is written straight into the segments; the heap only
+	 * holds the keys and one neighbour list at a time while it is sorted.
+	 * @param graph the graph to copy
+	 * @return the off-heap copy
+	 */
+	public static <Key extends Comparable<Key>> OffHeapGraph<Key,Object> of(Graph<Key,?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		int n = graph.vertexCount();
+		long m = graph.arcCount();
+		Object[]             keys = new Object[n];
+		HashMap<Key,Integer> ids  = new HashMap<Key,Integer>(n * 2);
+
+		Iterator<Key> vertices = graph.vertices();
+		for(int v = 0; vertices.hasNext(); v++){
+			Key key = vertices.next();
+			keys[v] = key;
+			ids.put(key, v);
+		}
+
+		Arena arena = Arena.ofShared();
+		try{
+			MemorySegment outOffsets = arena.allocate(8 * (n + 1L), 8);
+			MemorySegment inOffsets  = arena.allocate(8 * (n + 1L), 8);
+			MemorySegment outTargets = arena.allocate(Math.max(4, 4 * m), 8);
+			MemorySegment inSources  = arena.allocate(Math.max(4, 4 * m), 8);
+			MemorySegment weights    = arena.allocate(Math.max(8, 8 * m), 8);
+
+			long offset = 0;
+			int[] list = new int[16];
+			for(int v = 0; v < n; v++){
+				outOffsets.setAtIndex(LONG, v, offset);
+				@SuppressWarnings("unchecked")
+				Key source = (Key) keys[v];
+
+				int degree = 0;
+				Iterator<ArrayList<Key>> out = graph.outAdjacentVertices(source);
+				while(out.hasNext()){
+					if(degree == list.length) list = Arrays.copyOf(list, degree * 2);
+					list[degree++] = ids.get(CompactGraph.neighbour(out.next(), source));
+				}
+				Arrays.sort(list, 0, degree);
+
+				for(int i = 0; i < degree; i++){
+					outTargets.setAtIndex(INT, offset + i, list[i]);
+					@SuppressWarnings("unchecked")
+					Key target = (Key) keys[list[i]];
+					weights.setAtIndex(DOUBLE, offset + i, weight(graph, source, target));
+					inOffsets.setAtIndex(LONG, list[i] + 1, inOffsets.getAtIndex(LONG, list[i] + 1) + 1);
+				}
+				offset += degree;
+			}
+			outOffsets.setAtIndex(LONG, n, offset);
+
+			// prefix sums of the in-degrees, then a fill pass that keeps the in-lists sorted
+			for(int v = 0; v < n; v++)
+				inOffsets.setAtIndex(LONG, v + 1, inOffsets.getAtIndex(LONG, v + 1) + inOffsets.getAtIndex(LONG, v));
+			MemorySegment next = arena.allocate(8 * (n + 1L), 8);
+			MemorySegment.copy(inOffsets, 0, next, 0, 8 * (n + 1L));
+			for(int u = 0; u < n; u++){
+				long end = outOffsets.getAtIndex(LONG, u + 1);
+				for(long a = outOffsets.getAtIndex(LONG, u); a < end; a++){
+					int t = outTargets.getAtIndex(INT, a);
+					long slot = next.getAtIndex(LONG, t);
+					inSources.setAtIndex(INT, slot, u);
+					next.setAtIndex(LONG, t, slot + 1);
+				}
+			}
+
+			return new OffHeapGraph<Key,Object>(arena, keys, ids, offset, outOffsets, outTargets, inOffsets, inSources, weights);
+		}
+		catch(RuntimeException e){
+			arena.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the weight of an arc as Louvain reads it: its data as a number when it is one or parses as one,
+	 * otherwise its Graph weight if one was set, otherwise 1.
+	 */
+	private static <Key extends Comparable<Key>> double weight(Graph<Key,?> graph, Key source, Key target){
+		Object data = graph.getArcData(source, target);
+		if(data instanceof Number) return ((Number) data).doubleValue();
+		if(data != null){
+			try{ return Double.parseDouble(data.toString()); }
+			catch(NumberFormatException e){ }
+		}
+		double weight = graph.getArcWeight(source, target).doubleValue();
+		return weight != 0 ? weight : 1;
+	}
+
+	/**
+	 * Maps a snapshot file written by write(File). The segments are views of the mapping, so nothing but the
+	 * keys is read into the heap.
+	 * @param snapshot the snapshot file
+	 * @return the graph, with String keys
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static OffHeapGraph<String,Object> open(File snapshot) throws IOException{
+		if(snapshot == null) throw new NullPointerException();
+
+		Arena arena = Arena.ofShared();
+		FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ);
+		try{
+			if(channel.size() < HEADER) throw new IOException("Not a graph snapshot: " + snapshot);
+			MemorySegment header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER, arena);
+			if(header.get(INT, 0) != MAGIC || header.get(INT, 4) != VERSION) throw new IOException("Not a graph snapshot: " + snapshot);
+
+			int  n         = (int) header.get(LONG, 8);
+			long m         = header.get(LONG, 16);
+			long keysStart = header.get(LONG, 24);
+
+			MemorySegment data = channel.map(FileChannel.MapMode.READ_ONLY, 0, keysStart, arena);
+			long[] layout = layout(n, m);
+
+			Object[]                keys = new Object[n];
+			HashMap<String,Integer> ids  = new HashMap<String,Integer>(n * 2);
+			channel.position(keysStart);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+			for(int v = 0; v < n; v++){
+				String key = in.readUTF();
+				keys[v] = key;
+				ids.put(key, v);
+			}
+
+			return new OffHeapGraph<String,Object>(arena, keys, ids, m,
+				data.asSlice(layout[0], 8 * (n + 1L)), data.asSlice(layout[2], 4 * m),
+				data.asSlice(layout[1], 8 * (n + 1L)), data.asSlice(layout[3], 4 * m), data.asSlice(layout[4], 8 * m));
+		}
+		catch(IOException | RuntimeException e){
+			arena.close();
+			throw e;
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the start of the out-offsets, in-offsets, out-targets, in-sources, weights and keys sections.
+	 */
+	private static long[] layout(int n, long m){
+		long[] start = new long[6];
+		start[0] = HEADER;
+		start[1] = start[0] + 8 * (n + 1L);
+		start[2] = start[1] + 8 * (n + 1L);
+		start[3] = start[2] + (4 * m + 7) / 8 * 8;
+		start[4] = start[3] + (4 * m + 7) / 8 * 8;
+		start[5] = start[4] + 8 * m;
+		return start;
+	}
+
+	/**
+	 * Writes the graph to a snapshot file that open(File) maps back. The segments are copied into a writable
+	 * mapping of the file and the keys are appended as UTF strings of their toString().
+	 * @param snapshot the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File snapshot) throws IOException{
+		if(snapshot == null) throw new NullPointerException();
+
+		int    n      = keys.length;
+		long[] layout = layout(n, arcs);
+
+		FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+		                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			Arena mapping = Arena.ofConfined();
+			try{
+				MemorySegment data = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout[5], mapping);
+				data.set(INT, 0, MAGIC);
+				data.set(INT, 4, VERSION);
+				data.set(LONG, 8, n);
+				data.set(LONG, 16, arcs);
+				data.set(LONG, 24, layout[5]);
+				MemorySegment.copy(outOffsets, 0, data, layout[0], 8 * (n + 1L));
+				MemorySegment.copy(inOffsets,  0, data, layout[1], 8 * (n + 1L));
+				MemorySegment.copy(outTargets, 0, data, layout[2], 4 * arcs);
+				MemorySegment.copy(inSources,  0, data, layout[3], 4 * arcs);
+				MemorySegment.copy(weights,    0, data, layout[4], 8 * arcs);
+				data.force();
+			}
+			finally{
+				mapping.close();
+			}
+
+			channel.position(layout[5]);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			for(int v = 0; v < n; v++) out.writeUTF(keys[v].toString());
+			out.flush();
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Frees the native memory, or unmaps the snapshot file.
+	 */
+	public void close(){
+		arena.close();
+	}
+
+	/**
+	 * Returns the number of bytes of native memory or mapping held by the adjacency segments.
+	 * @return the off-heap size in bytes
+	 */
+	public long offHeapBytes(){
+		return outOffsets.byteSize() + inOffsets.byteSize() + outTargets.byteSize() + inSources.byteSize() + weights.byteSize();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Key key(int id){
+		return (Key) keys[id];
+	}
+
+	private int id(Key key){
+		if(key == null) throw new NullPointerException();
+
+		Integer id = ids.get(key);
+		if(id == null) throw new NoSuchElementException();
+		return id;
+	}
+
+	/**
+	 * Returns the index of the stored arc (source, destination) in the out-target segment, or -1.
+	 */
+	private long find(int source, int destination){
+		long low = outOffsets.getAtIndex(LONG, source), high = outOffsets.getAtIndex(LONG, source + 1) - 1;
+		while(low <= high){
+			long middle = (low + high) >>> 1;
+			int  t      = outTargets.getAtIndex(INT, middle);
+			if(t < destination)      low  = middle + 1;
+			else if(t > destination) high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+
+	private long findArc(Key sourceKey, Key destinationKey){
+		int source = id(sourceKey), destination = id(destinationKey);
+		return !transpose ? find(source, destination) : find(destination, source);
+	}
+
+	protected boolean transposed(){
+		return transpose;
+	}
+
+	public int vertexCount(){
+		return keys.length;
+	}
+
+	public int arcCount(){
+		return (int) arcs;
+	}
+
+	public Iterator<ArrayList<Key>> arcs(){
+		return new ArcIterator();
+	}
+
+	public Iterator<Key> vertices(){
+		return new Iterator<Key>(){
+			private int next;
+
+			public boolean hasNext(){ return next < keys.length; }
+
+			public Key next(){
+				if(!hasNext()) throw new NoSuchElementException();
+				return key(next++);
+			}
+		};
+	}
+
+	public boolean arcExists(Key sourceKey, Key destinationKey){
+		if(sourceKey == null || destinationKey == null) throw new NullPointerException();
+
+		if(!vertexExists(sourceKey) || !vertexExists(destinationKey)) return false;
+
+		return findArc(sourceKey, destinationKey) != -1;
+	}
+
+	public boolean vertexExists(Key vertexKey){
+		if(vertexKey == null) throw new NullPointerException();
+
+		return ids.containsKey(vertexKey);
+	}
+
+	public int inDegree(Key vertexKey){
+		int v = id(vertexKey);
+		MemorySegment offsets = !transpose ? inOffsets : outOffsets;
+		return (int) (offsets.getAtIndex(LONG, v + 1) - offsets.getAtIndex(LONG, v));
+	}
+
+	public int outDegree(Key vertexKey){
+		int v = id(vertexKey);
+		MemorySegment offsets = !transpose ? outOffsets : inOffsets;
+		return (int) (offsets.getAtIndex(LONG, v + 1) - offsets.getAtIndex(LONG, v));
+	}
+
+	public Iterator<ArrayList<Key>> inAdjacentVertices(Key vertexKey){
+		return new AdjacentIterator(id(vertexKey), false);
+	}
+
+	public Iterator<ArrayList<Key>> outAdjacentVertices(Key vertexKey){
+		return new AdjacentIterator(id(vertexKey), true);
+	}
+
+	public Data getVertexData(Key vertexKey){
+		id(vertexKey);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Data getArcData(Key sourceKey, Key destinationKey){
+		return (Data) getArcWeight(sourceKey, destinationKey);
+	}
+
+	public Number getArcWeight(Key sourceKey, Key destinationKey){
+		long index = findArc(sourceKey, destinationKey);
+		if(index == -1) throw new NoSuchElementException();
+
+		return weights.getAtIndex(DOUBLE, index);
+	}
+
+	/**
+	 * Reverses the direction of all arcs by swapping the roles of the out- and in-segments.
+	 */
+	public void transposeGraph(){
+		transpose = !transpose;
+	}
+}
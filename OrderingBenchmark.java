@@ -0,0 +1,154 @@
+package networkmetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the vertex orderings on one graph. For the original order and every VertexOrdering method it prints
+ * the average log gap, the misses of a simulated cache for the per-vertex array reads of a pull PageRank sweep
+ * and of breadth first searches, and the measured time of PageRank and of the searches.
+ *
+ * The simulated cache is 8-way set associative with 64 byte lines and LRU replacement; only the reads of the
+ * per-vertex arrays (ranks, distances) are simulated, since the CSR arrays are read sequentially in every
+ * order. Java has no portable access to the hardware counters, so the simulation stands in for them.
+ *
+ * Usage: java networkmetrics.OrderingBenchmark FILE [CACHE_KB] [SOURCES]
+ */
+public class OrderingBenchmark {
+
+	/**
+	 * An 8-way set associative cache of 64 byte lines with LRU replacement.
+	 */
+	private static class CacheModel {
+		private static final int WAYS = 8;
+
+		private final long[] tags;
+		private final long[] used;
+		private final int    sets;
+		private long         clock;
+		private long         misses;
+
+		CacheModel(int kilobytes){
+			sets = Math.max(1, kilobytes * 1024 / 64 / WAYS);
+			tags = new long[sets * WAYS];
+			used = new long[sets * WAYS];
+			Arrays.fill(tags, -1);
+		}
+
+		void read(long address){
+			long line = address >>> 6;
+			int  set  = (int) (line % sets) * WAYS, oldest = set;
+			clock++;
+			for(int w = set; w < set + WAYS; w++){
+				if(tags[w] == line){
+					used[w] = clock;
+					return;
+				}
+				if(used[w] < used[oldest]) oldest = w;
+			}
+			misses++;
+			tags[oldest] = line;
+			used[oldest] = clock;
+		}
+	}
+
+	public static void main(String[] args){
+		if(args.length < 1){
+			System.out.println("Usage: OrderingBenchmark FILE [CACHE_KB] [SOURCES]");
+			return;
+		}
+
+		int cacheKb = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+		int sources = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+		try{
+			CompactGraph<String> original = CompactGraph.of(GraphReader.load(new File(args[0])));
+			System.out.println(args[0]+": |V| = "+original.vertexCount()+", |E| = "+original.arcCount()
+			                   +", simulated cache "+cacheKb+" KB, "+sources+" BFS sources");
+			System.out.println(String.format("%-10s %8s %14s %14s %12s %12s %10s",
+			                   "ORDER", "LOG GAP", "PR MISSES", "BFS MISSES", "PR ms", "BFS ms", "ORDER ms"));
+
+			// the BFS sources are the same vertices, by key, in every order
+			String[] roots = new String[Math.min(sources, original.vertexCount())];
+			for(int i = 0; i < roots.length; i++) roots[i] = original.key((int) ((long) i * original.vertexCount() / roots.length));
+
+			report("original", original, 0, cacheKb, roots);
+			for(VertexOrdering.Method method : VertexOrdering.Method.values()){
+				long start = System.nanoTime();
+				CompactGraph<String> permuted = original.permute(VertexOrdering.order(original, method));
+				report(method.toString().toLowerCase(), permuted, System.nanoTime() - start, cacheKb, roots);
+			}
+		}
+		catch(IOException o){ System.out.println("ERROR: "+o.getMessage()); }
+	}
+
+	private static void report(String name, CompactGraph<String> graph, long orderNanos, int cacheKb, String[] rootKeys){
+		int[] roots = new int[rootKeys.length];
+		for(int i = 0; i < roots.length; i++) roots[i] = graph.id(rootKeys[i]);
+
+		long prMisses  = pageRankMisses(graph, cacheKb);
+		long bfsMisses = bfsMisses(graph, roots, cacheKb);
+
+		// time the real kernels, best of three after a warm up
+		long pageRank = Long.MAX_VALUE, bfs = Long.MAX_VALUE;
+		for(int round = 0; round < 4; round++){
+			PageRank ranks = new PageRank(graph);
+			ranks.setThreads(1);
+			ranks.setMaxIterations(20);
+			ranks.setTolerance(Double.MIN_VALUE);
+			long start = System.nanoTime();
+			ranks.run();
+			if(round > 0) pageRank = Math.min(pageRank, System.nanoTime() - start);
+
+			DirectionOptimizingBfs search = new DirectionOptimizingBfs(graph);
+			search.setDirectionOptimizing(false);
+			start = System.nanoTime();
+			for(int root : roots) search.search(root);
+			if(round > 0) bfs = Math.min(bfs, System.nanoTime() - start);
+		}
+
+		System.out.println(String.format("%-10s %8.2f %14d %14d %12.1f %12.1f %10.1f", name, VertexOrdering.averageLogGap(graph),
+		                   prMisses, bfsMisses, pageRank / 1e6, bfs / 1e6, orderNanos / 1e6));
+	}
+
+	/**
+	 * Simulates one pull sweep: every vertex reads the rank of each of its in-neighbours (8 bytes per vertex).
+	 */
+	private static long pageRankMisses(CompactGraph<?> graph, int cacheKb){
+		CacheModel cache = new CacheModel(cacheKb);
+		for(int v = 0; v < graph.vertexCount(); v++){
+			for(int a = graph.inOffsets[v]; a < graph.inOffsets[v + 1]; a++) cache.read(8L * graph.inSources[a]);
+			cache.read(8L * v + (1L << 40));
+		}
+		return cache.misses;
+	}
+
+	/**
+	 * Simulates top-down searches: every arc examined reads the distance of its target (4 bytes per vertex).
+	 */
+	private static long bfsMisses(CompactGraph<?> graph, int[] roots, int cacheKb){
+		CacheModel cache = new CacheModel(cacheKb);
+		int   n     = graph.vertexCount();
+		int[] dist  = new int[n];
+		int[] queue = new int[n];
+		Arrays.fill(dist, -1);
+		for(int root : roots){
+			int head = 0, tail = 0;
+			queue[tail++] = root;
+			dist[root]    = 0;
+			while(head < tail){
+				int x = queue[head++];
+				for(int a = graph.outOffsets[x]; a < graph.outOffsets[x + 1]; a++){
+					int z = graph.outTargets[a];
+					cache.read(4L * z);
+					if(dist[z] != -1) continue;
+					dist[z] = dist[x] + 1;
+					queue[tail++] = z;
+				}
+			}
+			for(int i = 0; i < tail; i++) dist[queue[i]] = -1;
+		}
+		return cache.misses;
+	}
+}
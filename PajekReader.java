@@ -0,0 +1,151 @@
+package networkmetrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Streams a Pajek .net file into a GraphSink. The file declares "*Vertices n", optionally followed by lines
+ * "id "label" x y ..." for some of the vertices 1 to n, then any number of arc sections:
+ *
+ *  - "*Arcs": lines "source target [weight]"
+ *  - "*Edges": lines "u v [weight]", each edge passed as the arcs u to v and v to u
+ *  - "*Arcslist" and "*Edgeslist": lines "source target target ..."
+ *
+ * The vertex keys are the ids as Strings, and the label, when there is one, is the value of the "label" vertex
+ * column. Vertices without a line are passed with their key only, before the first arc section. Lines starting
+ * with '%' are comments, "*Network" lines are skipped; "*Matrix" sections are not supported.
+ */
+public class PajekReader {
+
+	private enum Section { NONE, VERTICES, ARCS, EDGES, ARCS_LIST, EDGES_LIST }
+
+	private PajekReader(){}
+
+	/**
+	 * Reads Pajek text into a sink.
+	 * @param in the Pajek text
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the text cannot be read or is not a valid Pajek network
+	 */
+	public static void read(BufferedReader in, GraphSink sink) throws IOException{
+		if(in == null || sink == null) throw new NullPointerException();
+
+		boolean[] passed  = null;
+		Section   section = Section.NONE;
+		String    line;
+		while((line = in.readLine()) != null){
+			String trimmed = line.trim();
+			if(trimmed.isEmpty() || trimmed.startsWith("%")) continue;
+
+			if(trimmed.startsWith("*")){
+				String[] header = VnaReader.fields(trimmed.toLowerCase());
+				if(header[0].equals("*network")) continue;
+				if(header[0].equals("*vertices")){
+					if(passed != null || header.length < 2) throw new IOException("Invalid Pajek vertices: " + line);
+					passed  = new boolean[count(header[1], line) + 1];
+					section = Section.VERTICES;
+					sink.vertexProperties(new String[]{ "ID", "label" });
+					continue;
+				}
+				if(passed == null) throw new IOException("Invalid Pajek file: " + line);
+				if(section == Section.VERTICES){
+					for(int v = 1; v < passed.length; v++) if(!passed[v]) sink.vertex(new String[]{ Integer.toString(v) });
+					sink.arcProperties(new String[]{ "from", "to", "weight" });
+				}
+				if(header[0].equals("*arcs"))           section = Section.ARCS;
+				else if(header[0].equals("*edges"))     section = Section.EDGES;
+				else if(header[0].equals("*arcslist"))  section = Section.ARCS_LIST;
+				else if(header[0].equals("*edgeslist")) section = Section.EDGES_LIST;
+				else throw new IOException("Unsupported Pajek section: " + line);
+				continue;
+			}
+
+			if(section == Section.NONE) throw new IOException("Invalid Pajek file: " + line);
+			String[] fields = fields(trimmed);
+			if(section == Section.VERTICES){
+				int v = vertex(fields[0], passed, line);
+				if(passed[v]) throw new IOException("Duplicate vertex: " + line);
+				passed[v] = true;
+				sink.vertex(fields.length > 1 ? new String[]{ fields[0], fields[1] } : new String[]{ fields[0] });
+				continue;
+			}
+
+			if(fields.length < 2) throw new IOException("Invalid Pajek arc: " + line);
+			vertex(fields[0], passed, line);
+			if(section == Section.ARCS || section == Section.EDGES){
+				vertex(fields[1], passed, line);
+				String weight = fields.length > 2 ? fields[2] : null;
+				sink.arc(arc(fields[0], fields[1], weight));
+				if(section == Section.EDGES && !fields[0].equals(fields[1])) sink.arc(arc(fields[1], fields[0], weight));
+			}
+			else{
+				for(int i = 1; i < fields.length; i++){
+					vertex(fields[i], passed, line);
+					sink.arc(new String[]{ fields[0], fields[i] });
+					if(section == Section.EDGES_LIST && !fields[0].equals(fields[i])) sink.arc(new String[]{ fields[i], fields[0] });
+				}
+			}
+		}
+		if(passed == null) throw new IOException("Invalid Pajek file: no *Vertices");
+		if(section == Section.VERTICES){
+			for(int v = 1; v < passed.length; v++) if(!passed[v]) sink.vertex(new String[]{ Integer.toString(v) });
+		}
+	}
+
+	private static String[] arc(String source, String target, String weight){
+		return weight == null ? new String[]{ source, target } : new String[]{ source, target, weight };
+	}
+
+	/**
+	 * Returns the vertex count of a "*Vertices" line.
+	 */
+	private static int count(String field, String line) throws IOException{
+		try{
+			int n = Integer.parseInt(field);
+			if(n >= 0) return n;
+		}
+		catch(NumberFormatException o){}
+		throw new IOException("Invalid Pajek vertices: " + line);
+	}
+
+	/**
+	 * Returns the id of a vertex field, checking that it is one of the declared vertices.
+	 */
+	private static int vertex(String field, boolean[] passed, String line) throws IOException{
+		int v;
+		try{
+			v = Integer.parseInt(field);
+		}
+		catch(NumberFormatException o){
+			throw new IOException("Invalid Pajek vertex id: " + line);
+		}
+		if(v < 1 || v >= passed.length) throw new IOException("Pajek vertex id out of range: " + line);
+		return v;
+	}
+
+	/**
+	 * Splits a line at runs of whitespace, a double quoted field keeping its whitespace and losing its quotes.
+	 */
+	static String[] fields(String line){
+		if(line.indexOf('"') < 0) return VnaReader.fields(line);
+
+		ArrayList<String> fields = new ArrayList<String>(4);
+		int n = line.length(), i = 0;
+		while(i < n){
+			while(i < n && Character.isWhitespace(line.charAt(i))) i++;
+			if(i == n) break;
+			int start = i;
+			if(line.charAt(i) == '"'){
+				int end = line.indexOf('"', i + 1);
+				if(end < 0) end = n;
+				fields.add(line.substring(i + 1, end));
+				i = Math.min(n, end + 1);
+				continue;
+			}
+			while(i < n && !Character.isWhitespace(line.charAt(i))) i++;
+			fields.add(line.substring(start, i));
+		}
+		return fields.toArray(new String[fields.size()]);
+	}
+}
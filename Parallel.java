@@ -0,0 +1,126 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a fixed number of workers on a shared pool of daemon threads and collects their results. The parallel
+ * metrics give each worker its own scratch arrays and let the workers claim units of work from a shared counter.
+ */
+final class Parallel {
+
+	/**
+	 * One worker of a parallel computation.
+	 * @param <T> the result of the worker
+	 */
+	interface Worker<T> {
+		T run(int worker) throws Exception;
+	}
+
+	/**
+	 * A chunk of a parallel loop over 0..n-1.
+	 */
+	interface Range {
+		double run(int from, int to);
+	}
+
+	private static ExecutorService pool;
+
+	private Parallel(){}
+
+	/**
+	 * Returns the number of workers used when none is configured: the number of available processors.
+	 * @return the default number of workers
+	 */
+	static int defaultThreads(){
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Runs the workers 0..threads-1 and waits for all of them.
+	 * @param threads the number of workers
+	 * @param worker the work, called once with every worker index
+	 * @return the results of the workers, by worker index
+	 */
+	static <T> List<T> run(int threads, Worker<T> worker){
+		if(worker == null) throw new NullPointerException();
+		if(threads < 1) throw new IllegalArgumentException();
+
+		ArrayList<T> results = new ArrayList<T>(threads);
+		if(threads == 1){
+			try{ results.add(worker.run(0)); }
+			catch(RuntimeException e){ throw e; }
+			catch(Exception e){ throw new RuntimeException(e); }
+			return results;
+		}
+
+		ArrayList<Future<T>> futures = new ArrayList<Future<T>>(threads);
+		for(int i = 0; i < threads; i++){
+			final int index = i;
+			futures.add(pool().submit(() -> worker.run(index)));
+		}
+
+		try{
+			for(Future<T> future : futures) results.add(future.get());
+		}
+		catch(InterruptedException e){
+			for(Future<T> future : futures) future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e){
+			for(Future<T> future : futures) future.cancel(true);
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error)            throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Splits 0..n-1 into chunks that the workers claim from a shared counter, and sums the chunk results.
+	 * @param threads the number of workers
+	 * @param n the end of the loop, exclusive
+	 * @param chunk the number of indices claimed at a time
+	 * @param range the loop body, called once per chunk
+	 * @return the sum of the values returned by the chunks
+	 */
+	static double forRange(int threads, final int n, final int chunk, final Range range){
+		if(range == null) throw new NullPointerException();
+		if(chunk < 1) throw new IllegalArgumentException();
+
+		final AtomicInteger next = new AtomicInteger();
+		int workers = (int) Math.max(1, Math.min(threads, ((long) n + chunk - 1) / chunk));
+
+		double total = 0;
+		for(double sum : run(workers, worker -> {
+			double local = 0;
+			int from;
+			while((from = next.getAndAdd(chunk)) < n)
+				local += range.run(from, Math.min(from + chunk, n));
+			return local;
+		})) total += sum;
+		return total;
+	}
+
+	private static synchronized ExecutorService pool(){
+		if(pool == null){
+			pool = Executors.newCachedThreadPool(new ThreadFactory(){
+				private int count;
+
+				public synchronized Thread newThread(Runnable r){
+					Thread thread = new Thread(r, "networkmetrics-worker-" + count++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,174 @@
+package networkmetrics;
+
+/**
+ * Progress and cancellation of a long computation that works through a known number of units, such as the
+ * sources of the geodesic searches. The computation calls advance after every unit and asks stopRequested
+ * whether to go on; any other thread may read the progress, and may cancel the computation.
+ *
+ * A time budget and a work budget (in arcs scanned) can be set. Once either runs out, or after cancel, the
+ * computation is expected to stop after its current unit and report a partial result over the units it did.
+ * Every report is also committed as a {@link ProgressEvent}.
+ */
+public class Progress {
+
+	private final String stage;
+
+	private volatile long    total;
+	private volatile long    done;
+	private volatile long    startDone;
+	private volatile long    arcs;
+	private volatile long    startNanos;
+	private volatile boolean cancelled;
+	private long             timeBudgetNanos;
+	private long             workBudget;
+
+	/**
+	 * Constructs the progress of a stage, with no budget.
+	 * @param stage the name of the stage
+	 */
+	public Progress(String stage){
+		if(stage == null) throw new NullPointerException();
+
+		this.stage      = stage;
+		timeBudgetNanos = Long.MAX_VALUE;
+		workBudget      = Long.MAX_VALUE;
+		startNanos      = System.nanoTime();
+	}
+
+	/**
+	 * Sets the time the computation may take, counted from start.
+	 * @param millis the time budget in milliseconds
+	 */
+	public void setTimeBudget(long millis){
+		if(millis < 0) throw new IllegalArgumentException();
+
+		timeBudgetNanos = millis > Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : millis * 1000000;
+	}
+
+	/**
+	 * Sets the number of arcs the computation may scan.
+	 * @param arcs the work budget
+	 */
+	public void setWorkBudget(long arcs){
+		if(arcs < 0) throw new IllegalArgumentException();
+
+		workBudget = arcs;
+	}
+
+	/**
+	 * Starts counting. Units done before the start (a resumed computation) count as done but not towards the
+	 * rate, the ETA or the budgets.
+	 * @param total the number of units
+	 * @param done the number of units already done
+	 */
+	public void start(long total, long done){
+		if(done < 0 || done > total) throw new IllegalArgumentException();
+
+		this.total = total;
+		this.done  = done;
+		startDone  = done;
+		arcs       = 0;
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Records one finished unit.
+	 * @param arcsScanned the arcs the unit scanned
+	 */
+	public void advance(long arcsScanned){
+		done++;
+		arcs += arcsScanned;
+	}
+
+	/**
+	 * Asks the computation to stop after its current unit.
+	 */
+	public void cancel(){
+		cancelled = true;
+	}
+
+	/**
+	 * Returns TRUE once the computation was cancelled or a budget ran out.
+	 * @return TRUE if the computation should stop
+	 */
+	public boolean stopRequested(){
+		return cancelled || arcs >= workBudget || System.nanoTime() - startNanos >= timeBudgetNanos;
+	}
+
+	/**
+	 * Returns TRUE if the computation was cancelled, as opposed to running out of budget.
+	 * @return TRUE after cancel
+	 */
+	public boolean cancelled(){
+		return cancelled;
+	}
+
+	public String stage(){ return stage; }
+
+	public long total(){ return total; }
+
+	public long done(){ return done; }
+
+	public long arcs(){ return arcs; }
+
+	/**
+	 * Returns the fraction of the units done.
+	 * @return the fraction, 1 if there are no units
+	 */
+	public double fraction(){
+		return total == 0 ? 1 : (double) done / total;
+	}
+
+	/**
+	 * Returns the arcs scanned per second since the start.
+	 * @return the scan rate
+	 */
+	public double arcsPerSecond(){
+		long elapsed = System.nanoTime() - startNanos;
+		return elapsed <= 0 ? 0 : arcs * 1e9 / elapsed;
+	}
+
+	/**
+	 * Estimates the time left from the rate of the units done since the start.
+	 * @return the estimate in milliseconds, or -1 before any unit is done
+	 */
+	public long etaMillis(){
+		return eta(System.nanoTime() - startNanos, done, total);
+	}
+
+	private long eta(long elapsed, long done, long total){
+		long counted = done - startDone;
+		if(counted <= 0) return -1;
+		return (long) ((double) elapsed / counted * (total - done) / 1000000);
+	}
+
+	/**
+	 * Formats the progress as one line and commits it as a ProgressEvent.
+	 * @return the progress line
+	 */
+	public String report(){
+		long elapsed = System.nanoTime() - startNanos;
+		long done    = this.done, total = this.total, arcs = this.arcs;
+		long eta     = eta(elapsed, done, total);
+
+		ProgressEvent event = new ProgressEvent();
+		if(event.shouldCommit()){
+			event.stage         = stage;
+			event.done          = done;
+			event.total         = total;
+			event.arcs          = arcs;
+			event.arcsPerSecond = elapsed <= 0 ? 0 : arcs * 1e9 / elapsed;
+			event.eta           = eta < 0 ? -1 : eta * 1000000;
+			event.commit();
+		}
+
+		return String.format("%s: %d/%d (%.1f%%), %.3g arcs/s, elapsed %s, ETA %s", stage, done, total,
+		                     total == 0 ? 100.0 : 100.0 * done / total, elapsed <= 0 ? 0.0 : arcs * 1e9 / elapsed,
+		                     time(elapsed / 1000000), eta < 0 ? "unknown" : time(eta));
+	}
+
+	private static String time(long millis){
+		long seconds = millis / 1000;
+		return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+}
@@ -0,0 +1,37 @@
+package networkmetrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event committed by {@link Progress#report()} while a long stage runs.
+ */
+@Name("networkmetrics.MetricProgress")
+@Label("Metric Progress")
+@Category("Network Metrics")
+@Description("Progress of a long stage (geodesic searches, ...) of a Driver metric run")
+public class ProgressEvent extends Event {
+
+	@Label("Stage")
+	String stage;
+
+	@Label("Units Done")
+	long done;
+
+	@Label("Units Total")
+	long total;
+
+	@Label("Arcs Scanned")
+	long arcs;
+
+	@Label("Arcs per Second")
+	double arcsPerSecond;
+
+	@Label("ETA")
+	@Timespan(Timespan.NANOSECONDS)
+	long eta;
+}
@@ -0,0 +1,306 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * A 2-hop distance index built by pruned landmark labeling (Akiba, Iwata and Yoshida). Every vertex v gets an
+ * out-label of (hub, distance from v to the hub) pairs and an in-label of (hub, distance from the hub to v)
+ * pairs, such that the distance from s to t is the smallest out(s, h) + in(t, h) over the hubs h the two labels
+ * share. A query is then a merge of two short sorted arrays instead of a breadth first search.
+ *
+ * The hubs are the vertices in decreasing order of total degree. From every hub in turn a forward search over
+ * the out-arcs adds the hub to the in-labels of the vertices it reaches, and a backward search over the in-arcs
+ * adds it to their out-labels; both searches stop expanding at any vertex whose distance the labels of the
+ * earlier hubs already give, which is what keeps the labels small on networks with high degree hubs.
+ *
+ * The index answers queries by vertex key, and can be written to a file and read back without the graph.
+ *
+ * @param <Key> the vertex keys
+ */
+public class PrunedLandmarkLabeling<Key> {
+
+	private static final int MAGIC   = 0x4e4d504c;
+	private static final int VERSION = 2;
+
+	private final Key[]                keys;
+	private final HashMap<Key,Integer> ids;
+	private final int[]                outOffsets;
+	private final int[]                outLabels;
+	private final int[]                inOffsets;
+	private final int[]                inLabels;
+	private final long                 buildNanos;
+
+	private PrunedLandmarkLabeling(Key[] keys, int[] outOffsets, int[] outLabels, int[] inOffsets, int[] inLabels, long buildNanos){
+		this.keys       = keys;
+		this.outOffsets = outOffsets;
+		this.outLabels  = outLabels;
+		this.inOffsets  = inOffsets;
+		this.inLabels   = inLabels;
+		this.buildNanos = buildNanos;
+		ids = new HashMap<Key,Integer>(keys.length * 2);
+		for(int v = 0; v < keys.length; v++) ids.put(keys[v], v);
+	}
+
+	/**
+	 * Labels of every vertex while they grow, as (hub, distance) pairs in increasing hub order.
+	 */
+	private static class Labels {
+		final int[][] entries;
+		final int[]   sizes;
+
+		Labels(int n){
+			entries = new int[n][];
+			sizes   = new int[n];
+			Arrays.fill(entries, new int[0]);
+		}
+
+		void add(int v, int hub, int distance){
+			if(sizes[v] == entries[v].length) entries[v] = Arrays.copyOf(entries[v], Math.max(4, sizes[v] * 2));
+			entries[v][sizes[v]++] = hub;
+			entries[v][sizes[v]++] = distance;
+		}
+
+		/**
+		 * Flattens the labels into offsets (in ints) and one pair array.
+		 */
+		int[] flatten(int[] offsets){
+			for(int v = 0; v < sizes.length; v++) offsets[v + 1] = offsets[v] + sizes[v];
+			int[] flat = new int[offsets[sizes.length]];
+			for(int v = 0; v < sizes.length; v++) System.arraycopy(entries[v], 0, flat, offsets[v], sizes[v]);
+			return flat;
+		}
+	}
+
+	/**
+	 * Builds the index of a graph.
+	 * @param graph the graph
+	 * @return the index
+	 */
+	public static <Key extends Comparable<Key>> PrunedLandmarkLabeling<Key> build(CompactGraph<Key> graph){
+		if(graph == null) throw new NullPointerException();
+
+		long start = System.nanoTime();
+		int  n     = graph.vertexCount();
+
+		int[] rank  = VertexOrdering.order(graph, VertexOrdering.Method.DEGREE);
+		int[] order = new int[n];
+		for(int v = 0; v < n; v++) order[rank[v]] = v;
+
+		Labels in   = new Labels(n);
+		Labels out  = new Labels(n);
+		int[]  hub  = new int[n];
+		int[]  dist = new int[n];
+		int[]  queue = new int[n];
+		Arrays.fill(hub, -1);
+		Arrays.fill(dist, -1);
+
+		for(int r = 0; r < n; r++){
+			int root = order[r];
+			search(root, r, out, in, graph.outOffsets, graph.outTargets, hub, dist, queue);
+			search(root, r, in, out, graph.inOffsets, graph.inSources, hub, dist, queue);
+		}
+
+		int[] outOffsets = new int[n + 1];
+		int[] inOffsets  = new int[n + 1];
+		int[] outLabels  = out.flatten(outOffsets);
+		int[] inLabels   = in.flatten(inOffsets);
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Key[] keys = (Key[]) new Comparable[n];
+		for(int v = 0; v < n; v++) keys[v] = graph.key(v);
+		return new PrunedLandmarkLabeling<Key>(keys, outOffsets, outLabels, inOffsets, inLabels, System.nanoTime() - start);
+	}
+
+	/**
+	 * One pruned search from the root of rank r. The forward search (out-arcs) reads the out-label of the root
+	 * and labels the in-labels of the vertices it reaches; the backward search swaps the roles.
+	 */
+	private static void search(int root, int r, Labels rootLabels, Labels reached, int[] offsets, int[] targets,
+	                           int[] hub, int[] dist, int[] queue){
+		// hub[h] = distance between the root and hub h through the earlier labels of the root
+		int[] rootEntries = rootLabels.entries[root];
+		for(int i = 0; i < rootLabels.sizes[root]; i += 2) hub[rootEntries[i]] = rootEntries[i + 1];
+
+		int head = 0, tail = 0;
+		queue[tail++] = root;
+		dist[root]    = 0;
+		while(head < tail){
+			int v = queue[head++], d = dist[v];
+
+			int[] entries = reached.entries[v];
+			boolean pruned = false;
+			for(int i = 0; i < reached.sizes[v] && !pruned; i += 2){
+				int h = hub[entries[i]];
+				pruned = h != -1 && h + entries[i + 1] <= d;
+			}
+			if(pruned) continue;
+
+			reached.add(v, r, d);
+			for(int a = offsets[v]; a < offsets[v + 1]; a++){
+				int w = targets[a];
+				if(dist[w] != -1) continue;
+				dist[w] = d + 1;
+				queue[tail++] = w;
+			}
+		}
+
+		for(int i = 0; i < tail; i++) dist[queue[i]] = -1;
+		for(int i = 0; i < rootLabels.sizes[root]; i += 2) hub[rootEntries[i]] = -1;
+	}
+
+	/**
+	 * Returns the id of a vertex in the index.
+	 * @param key the vertex key
+	 * @return the id, or -1 if the vertex is not in the index
+	 */
+	public int id(Key key){
+		Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the length of a shortest directed path.
+	 * @param source the source id
+	 * @param target the target id
+	 * @return the distance, or -1 if the target cannot be reached from the source
+	 */
+	public int distance(int source, int target){
+		if(source == target) return 0;
+
+		int i = outOffsets[source], iEnd = outOffsets[source + 1];
+		int j = inOffsets[target],  jEnd = inOffsets[target + 1];
+		int best = Integer.MAX_VALUE;
+		while(i < iEnd && j < jEnd){
+			int a = outLabels[i], b = inLabels[j];
+			if(a < b)      i += 2;
+			else if(a > b) j += 2;
+			else{
+				best = Math.min(best, outLabels[i + 1] + inLabels[j + 1]);
+				i += 2;
+				j += 2;
+			}
+		}
+		return best == Integer.MAX_VALUE ? -1 : best;
+	}
+
+	/**
+	 * Returns the length of a shortest directed path.
+	 * @param source the source key
+	 * @param target the target key
+	 * @return the distance, or -1 if the target cannot be reached from the source
+	 */
+	public int distance(Key source, Key target){
+		int s = id(source), t = id(target);
+		if(s == -1 || t == -1) throw new NoSuchElementException();
+
+		return distance(s, t);
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 * @return the number of vertices
+	 */
+	public int vertexCount(){
+		return keys.length;
+	}
+
+	/**
+	 * Returns the number of (hub, distance) entries of all the in- and out-labels.
+	 * @return the number of label entries
+	 */
+	public long labelEntries(){
+		return (outLabels.length + inLabels.length) / 2;
+	}
+
+	/**
+	 * Returns the memory taken by the labels and their offsets, not counting the keys.
+	 * @return the size in bytes
+	 */
+	public long byteSize(){
+		return 4L * (outOffsets.length + outLabels.length + inOffsets.length + inLabels.length);
+	}
+
+	/**
+	 * Returns the time the index took to build, or 0 if it was read from a file.
+	 * @return the build time in nanoseconds
+	 */
+	public long buildNanos(){
+		return buildNanos;
+	}
+
+	/**
+	 * Writes the index, keys included, to a file that read(File,String) reads back. The fingerprint names the
+	 * graph the index was built for, such as a digest of the graph file and the options that chose the view.
+	 * @param file the file to write
+	 * @param fingerprint the fingerprint of the graph
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file, String fingerprint) throws IOException{
+		if(file == null || fingerprint == null) throw new NullPointerException();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(fingerprint);
+			out.writeInt(keys.length);
+			for(Key key : keys) out.writeUTF(key.toString());
+			writeInts(out, outOffsets);
+			writeInts(out, outLabels);
+			writeInts(out, inOffsets);
+			writeInts(out, inLabels);
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException{
+		out.writeInt(values.length);
+		for(int value : values) out.writeInt(value);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException{
+		int[] values = new int[in.readInt()];
+		for(int i = 0; i < values.length; i++) values[i] = in.readInt();
+		return values;
+	}
+
+	/**
+	 * Reads an index written by write(File,String), if it was written with the same fingerprint.
+	 * @param file the index file
+	 * @param fingerprint the fingerprint of the graph the index is wanted for
+	 * @return the index, with String keys, or null if the file holds the index of another graph
+	 * @throws IOException if the file cannot be read or is not a distance index
+	 */
+	public static PrunedLandmarkLabeling<String> read(File file, String fingerprint) throws IOException{
+		if(file == null || fingerprint == null) throw new NullPointerException();
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a distance index: " + file);
+			if(!in.readUTF().equals(fingerprint)) return null;
+
+			String[] keys = new String[in.readInt()];
+			for(int v = 0; v < keys.length; v++) keys[v] = in.readUTF();
+			int[] outOffsets = readInts(in);
+			int[] outLabels  = readInts(in);
+			int[] inOffsets  = readInts(in);
+			int[] inLabels   = readInts(in);
+			return new PrunedLandmarkLabeling<String>(keys, outOffsets, outLabels, inOffsets, inLabels, 0);
+		}
+		finally{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package networkmetrics;
+
+import java.util.Arrays;
+
+/**
+ * Selects the highest scoring vertices of a per-vertex score array.
+ */
+public final class Ranking {
+
+	private Ranking(){}
+
+	/**
+	 * Returns the ids of the k highest scores, highest first. Ties are broken by the smaller id.
+	 * @param scores the score of every dense vertex id
+	 * @param k the number of vertices to return
+	 * @return at most k vertex ids
+	 */
+	public static int[] top(double[] scores, int k){
+		if(scores == null) throw new NullPointerException();
+		if(k < 0) throw new IllegalArgumentException();
+
+		k = Math.min(k, scores.length);
+		if(k == 0) return new int[0];
+
+		// binary min-heap on (score, -id) holding the best k seen so far
+		int[] heap = new int[k];
+		int size = 0;
+		for(int v = 0; v < scores.length; v++){
+			if(size < k){
+				heap[size] = v;
+				up(heap, size++, scores);
+			}
+			else if(better(v, heap[0], scores)){
+				heap[0] = v;
+				down(heap, k, scores);
+			}
+		}
+
+		Integer[] order = new Integer[k];
+		for(int i = 0; i < k; i++) order[i] = heap[i];
+		Arrays.sort(order, (a, b) -> better(a, b, scores) ? -1 : better(b, a, scores) ? 1 : 0);
+
+		int[] result = new int[k];
+		for(int i = 0; i < k; i++) result[i] = order[i];
+		return result;
+	}
+
+	private static boolean better(int a, int b, double[] scores){
+		if(scores[a] != scores[b]) return scores[a] > scores[b];
+		return a < b;
+	}
+
+	private static void up(int[] heap, int i, double[] scores){
+		while(i > 0){
+			int parent = (i - 1) / 2;
+			if(!better(heap[parent], heap[i], scores)) break;
+			int t = heap[parent]; heap[parent] = heap[i]; heap[i] = t;
+			i = parent;
+		}
+	}
+
+	private static void down(int[] heap, int size, double[] scores){
+		int i = 0;
+		while(true){
+			int worst = i, l = 2 * i + 1, r = l + 1;
+			if(l < size && better(heap[worst], heap[l], scores)) worst = l;
+			if(r < size && better(heap[worst], heap[r], scores)) worst = r;
+			if(worst == i) return;
+			int t = heap[worst]; heap[worst] = heap[i]; heap[i] = t;
+			i = worst;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Base class for the immutable Graph implementations. Every method that changes the structure or the client
+ * data of the graph throws UnsupportedOperationException. Annotations are not part of the structure, so they
+ * are supported and kept in HashMaps beside the graph, the vertex annotations by vertex key and the arc
+ * annotations by (source, destination) in the direction the arc is stored.
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data that is stored for each vertex and edge
+ */
+public abstract class ReadOnlyGraph<Key extends Comparable<Key>, Data> implements Graph<Key, Data> {
+
+	private final HashMap<Object, HashMap<Key,Object>>            vertexAnnotations;
+	private final HashMap<Object, HashMap<ArrayList<Key>,Object>> arcAnnotations;
+
+	protected ReadOnlyGraph(){
+		vertexAnnotations = new HashMap<Object, HashMap<Key,Object>>();
+		arcAnnotations    = new HashMap<Object, HashMap<ArrayList<Key>,Object>>();
+	}
+
+	/**
+	 * Returns TRUE if the graph is currently seen transposed, so that arc annotations are stored reversed.
+	 * @return TRUE if the graph is transposed
+	 */
+	protected abstract boolean transposed();
+
+	private ArrayList<Key> stored(Key sourceKey, Key destinationKey){
+		ArrayList<Key> arc = new ArrayList<Key>(2);
+		if(!transposed()){
+			arc.add(sourceKey);
+			arc.add(destinationKey);
+		}
+		else{
+			arc.add(destinationKey);
+			arc.add(sourceKey);
+		}
+		return arc;
+	}
+
+	public void insertVertex(Key vertexKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertVertex(Key vertexKey, Data vertexData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertArc(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertArc(Key sourceKey, Key destinationKey, Data arcData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setVertexData(Key vertexKey, Data vertexData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setArcData(Key sourceKey, Key destinationKey, Data arcData){
+		throw new UnsupportedOperationException();
+	}
+
+	public Data removeVertex(Key vertexKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public Data removeArc(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void reverseDirection(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setArcWeight(Key sourceKey, Key destinationKey, Number weight){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setAnnotation(Key vertexKey, Object property, Object value){
+		if(vertexKey == null || property == null || value == null) throw new NullPointerException();
+
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		if(!vertexAnnotations.containsKey(property))
+			vertexAnnotations.put(property, new HashMap<Key,Object>());
+
+		vertexAnnotations.get(property).put(vertexKey, value);
+	}
+
+	public void setAnnotation(Key sourceKey, Key destinationKey, Object property, Object value){
+		if(sourceKey == null || destinationKey == null || property == null || value == null) throw new NullPointerException();
+
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		if(!arcAnnotations.containsKey(property))
+			arcAnnotations.put(property, new HashMap<ArrayList<Key>,Object>());
+
+		arcAnnotations.get(property).put(stored(sourceKey, destinationKey), value);
+	}
+
+	public Object getAnnotation(Key vertexKey, Object property){
+		if(vertexKey == null || property == null) throw new NullPointerException();
+
+		if(!vertexAnnotations.containsKey(property)) throw new NoSuchElementException();
+
+		if(!vertexAnnotations.get(property).containsKey(vertexKey)) throw new NoSuchElementException();
+
+		return vertexAnnotations.get(property).get(vertexKey);
+	}
+
+	public Object getAnnotation(Key sourceKey, Key destinationKey, Object property){
+		if(sourceKey == null || destinationKey == null || property == null) throw new NullPointerException();
+
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		if(!arcAnnotations.containsKey(property)) throw new NoSuchElementException();
+
+		ArrayList<Key> arc = stored(sourceKey, destinationKey);
+		if(!arcAnnotations.get(property).containsKey(arc)) throw new NoSuchElementException();
+
+		return arcAnnotations.get(property).get(arc);
+	}
+
+	public Object removeAnnotation(Key vertexKey, Object property){
+		if(vertexKey == null || property == null) throw new NullPointerException();
+
+		if(!vertexAnnotations.containsKey(property)) throw new NoSuchElementException();
+
+		if(!vertexAnnotations.get(property).containsKey(vertexKey)) throw new NoSuchElementException();
+
+		return vertexAnnotations.get(property).remove(vertexKey);
+	}
+
+	public Object removeAnnotation(Key sourceKey, Key destinationKey, Object property){
+		if(sourceKey == null || destinationKey == null || property == null) throw new NullPointerException();
+
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		if(!arcAnnotations.containsKey(property)) throw new NoSuchElementException();
+
+		ArrayList<Key> arc = stored(sourceKey, destinationKey);
+		if(!arcAnnotations.get(property).containsKey(arc)) throw new NoSuchElementException();
+
+		return arcAnnotations.get(property).remove(arc);
+	}
+
+	public void clearAnnotations(Object property){
+		if(property == null) throw new NullPointerException();
+
+		if(!vertexAnnotations.containsKey(property) && !arcAnnotations.containsKey(property)) throw new NoSuchElementException();
+
+		vertexAnnotations.remove(property);
+		arcAnnotations.remove(property);
+	}
+}
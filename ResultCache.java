@@ -0,0 +1,286 @@
+package networkmetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An on-disk cache of computed metrics and intermediate results. Entries are content addressed: the key is the
+ * SHA-256 digest of the input file contents together with the options that the results depend on, so a changed
+ * input or a different option set can never hit an old entry. Entries that no longer match are never read
+ * again and are evicted, least recently used first, once the directory grows beyond its size bound. Entries
+ * written by another cache version or damaged on disk are deleted when they are read.
+ *
+ * An entry is a map from names to values, where a value is a String, an int[], a long[] or a double[]. Each
+ * entry is one file, written to a temporary file and renamed, so readers never see a partial entry.
+ */
+public class ResultCache {
+
+	private static final int    MAGIC   = 0x4e4d5243;
+	private static final int    VERSION = 2;
+	private static final String SUFFIX  = ".entry";
+	private static final int    BUFFER  = 1 << 16;
+
+	private static final byte STRING  = 1;
+	private static final byte INTS    = 2;
+	private static final byte LONGS   = 3;
+	private static final byte DOUBLES = 4;
+
+	private final File directory;
+	private final long maxBytes;
+	private int        hits;
+	private int        misses;
+
+	/**
+	 * Constructs a cache in a directory, which is created if needed.
+	 * @param directory the cache directory
+	 * @param maxBytes the size the directory is trimmed to after every put
+	 */
+	public ResultCache(File directory, long maxBytes){
+		if(directory == null) throw new NullPointerException();
+
+		if(maxBytes < 0) throw new IllegalArgumentException();
+
+		this.directory = directory;
+		this.maxBytes  = maxBytes;
+		directory.mkdirs();
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the contents of a file.
+	 * @param file the file
+	 * @return the digest as a hexadecimal String
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String digest(File file) throws IOException{
+		if(file == null) throw new NullPointerException();
+
+		MessageDigest sha = sha256();
+		InputStream in = new FileInputStream(file);
+		try{
+			byte[] block = new byte[BUFFER];
+			int read;
+			while((read = in.read(block)) > 0) sha.update(block, 0, read);
+		}
+		finally{
+			in.close();
+		}
+		return hex(sha.digest());
+	}
+
+	/**
+	 * Returns the cache key of a list of parts, normally a file digest followed by options. The cache version
+	 * is part of every key.
+	 * @param parts the parts of the key
+	 * @return the key as a hexadecimal String
+	 */
+	public static String key(String... parts){
+		MessageDigest sha = sha256();
+		sha.update(("v" + VERSION).getBytes(StandardCharsets.UTF_8));
+		for(String part : parts){
+			if(part == null) throw new NullPointerException();
+			sha.update((byte) 0);
+			sha.update(part.getBytes(StandardCharsets.UTF_8));
+		}
+		return hex(sha.digest());
+	}
+
+	private static MessageDigest sha256(){
+		try{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes){
+		StringBuilder s = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) s.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+		return s.toString();
+	}
+
+	private File file(String key){
+		if(key == null) throw new NullPointerException();
+
+		return new File(directory, key + SUFFIX);
+	}
+
+	/**
+	 * Returns the entry stored under a key and marks it as recently used.
+	 * @param key the key
+	 * @return the entry, or null if there is none
+	 */
+	public Map<String,Object> get(String key){
+		File file = file(key);
+		if(!file.isFile()){
+			misses++;
+			return null;
+		}
+
+		LinkedHashMap<String,Object> entry = new LinkedHashMap<String,Object>();
+		try{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER));
+			try{
+				if(in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Stale cache entry");
+
+				int size = in.readInt();
+				for(int i = 0; i < size; i++){
+					String name = in.readUTF();
+					byte   type = in.readByte();
+					switch(type){
+						case STRING:
+							byte[] utf = new byte[in.readInt()];
+							in.readFully(utf);
+							entry.put(name, new String(utf, StandardCharsets.UTF_8));
+							break;
+						case INTS:
+							int[] ints = new int[in.readInt()];
+							for(int j = 0; j < ints.length; j++) ints[j] = in.readInt();
+							entry.put(name, ints);
+							break;
+						case LONGS:
+							long[] longs = new long[in.readInt()];
+							for(int j = 0; j < longs.length; j++) longs[j] = in.readLong();
+							entry.put(name, longs);
+							break;
+						case DOUBLES:
+							double[] doubles = new double[in.readInt()];
+							for(int j = 0; j < doubles.length; j++) doubles[j] = in.readDouble();
+							entry.put(name, doubles);
+							break;
+						default:
+							throw new IOException("Stale cache entry");
+					}
+				}
+			}
+			finally{
+				in.close();
+			}
+		}
+		catch(IOException e){
+			file.delete();
+			misses++;
+			return null;
+		}
+
+		file.setLastModified(System.currentTimeMillis());
+		hits++;
+		return entry;
+	}
+
+	/**
+	 * Stores an entry under a key, replacing any entry with that key, then evicts the least recently used
+	 * entries until the directory is within its size bound.
+	 * @param key the key
+	 * @param entry the values; each a String, int[], long[] or double[]
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void put(String key, Map<String,Object> entry) throws IOException{
+		if(entry == null) throw new NullPointerException();
+
+		File file = file(key);
+		File temp = File.createTempFile(key, ".tmp", directory);
+		try{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER));
+			try{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entry.size());
+				for(Map.Entry<String,Object> value : entry.entrySet()){
+					out.writeUTF(value.getKey());
+					write(out, value.getValue());
+				}
+			}
+			finally{
+				out.close();
+			}
+
+			if(!temp.renameTo(file)){
+				file.delete();
+				if(!temp.renameTo(file)) throw new IOException("Cannot write cache entry " + file);
+			}
+		}
+		finally{
+			temp.delete();
+		}
+
+		evict();
+	}
+
+	private static void write(DataOutputStream out, Object value) throws IOException{
+		if(value instanceof String){
+			byte[] utf = ((String) value).getBytes(StandardCharsets.UTF_8);
+			out.writeByte(STRING);
+			out.writeInt(utf.length);
+			out.write(utf);
+		}
+		else if(value instanceof int[]){
+			int[] ints = (int[]) value;
+			out.writeByte(INTS);
+			out.writeInt(ints.length);
+			for(int x : ints) out.writeInt(x);
+		}
+		else if(value instanceof long[]){
+			long[] longs = (long[]) value;
+			out.writeByte(LONGS);
+			out.writeInt(longs.length);
+			for(long x : longs) out.writeLong(x);
+		}
+		else if(value instanceof double[]){
+			double[] doubles = (double[]) value;
+			out.writeByte(DOUBLES);
+			out.writeInt(doubles.length);
+			for(double x : doubles) out.writeDouble(x);
+		}
+		else if(value == null) throw new NullPointerException();
+		else throw new IllegalArgumentException("Cannot cache a " + value.getClass().getName());
+	}
+
+	/**
+	 * Deletes the least recently used entries until the entries fit in the size bound.
+	 */
+	private void evict(){
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if(entries == null) return;
+
+		long total = 0;
+		for(File entry : entries) total += entry.length();
+		if(total <= maxBytes) return;
+
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+		for(int i = 0; i < entries.length && total > maxBytes; i++){
+			long length = entries[i].length();
+			if(entries[i].delete()) total -= length;
+		}
+	}
+
+	/**
+	 * Returns the number of gets that found an entry.
+	 * @return the number of hits
+	 */
+	public int hits(){
+		return hits;
+	}
+
+	/**
+	 * Returns the number of gets that found no entry.
+	 * @return the number of misses
+	 */
+	public int misses(){
+		return misses;
+	}
+}
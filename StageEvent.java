@@ -0,0 +1,38 @@
+package networkmetrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event committed by {@link StageProfiler} for every finished stage of a metric run.
+ * The event duration is the wall time of the stage.
+ */
+@Name("networkmetrics.MetricStage")
+@Label("Metric Stage")
+@Category("Network Metrics")
+@Description("One stage (load, degree pass, geodesic, ...) of a Driver metric run")
+public class StageEvent extends Event {
+
+	@Label("Graph")
+	String graph;
+
+	@Label("Stage")
+	String stage;
+
+	@Label("CPU Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long cpuTime;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+
+	@Label("Peak Heap")
+	@DataAmount
+	long peakHeap;
+}
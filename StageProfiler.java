@@ -0,0 +1,285 @@
+package networkmetrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures the stages of a metric run. For every stage it records the wall time, the CPU time and the bytes
+ * allocated by all threads of the JVM, so that a parallel stage counts the work of its pool threads, and the
+ * peak heap usage reached while the stage ran. The peak is the largest whole-heap usage seen at the start and
+ * end of the stage and just before each garbage collection during it, when the heap is fullest; the peaks of
+ * the single pools are not added up, since they are reached at different times. The CPU time of a thread that
+ * ends before the stage does is lost; background threads running at the same time are counted with the stage.
+ * Each finished stage is also committed as a {@link StageEvent}.
+ */
+public class StageProfiler {
+
+	/**
+	 * The measurements of one finished stage. Values that the JVM cannot provide are -1.
+	 */
+	public static class Stage {
+		private final String name;
+		private final long   wallNanos;
+		private final long   cpuNanos;
+		private final long   allocatedBytes;
+		private final long   peakHeapBytes;
+
+		public Stage(String name, long wallNanos, long cpuNanos, long allocatedBytes, long peakHeapBytes){
+			this.name           = name;
+			this.wallNanos      = wallNanos;
+			this.cpuNanos       = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.peakHeapBytes  = peakHeapBytes;
+		}
+
+		public String name(){ return name; }
+
+		public long wallNanos(){ return wallNanos; }
+
+		public long cpuNanos(){ return cpuNanos; }
+
+		public long allocatedBytes(){ return allocatedBytes; }
+
+		public long peakHeapBytes(){ return peakHeapBytes; }
+	}
+
+	private final String                  graph;
+	private final ThreadMXBean            threads;
+	private final MemoryMXBean            memory;
+	private final HashSet<String>         heapPools;
+	private final AtomicLong              peakHeap;
+	private final ArrayList<Stage>        stages;
+
+	private String     current;
+	private StageEvent event;
+	private long               startWall;
+	private HashMap<Long,Long> startCpu;
+	private HashMap<Long,Long> startAllocated;
+
+	/**
+	 * Constructs a profiler for the run on the given graph.
+	 * @param graph the name of the graph, usually the input file name
+	 */
+	public StageProfiler(String graph){
+		this.graph = graph;
+		threads    = ManagementFactory.getThreadMXBean();
+		memory     = ManagementFactory.getMemoryMXBean();
+		heapPools  = new HashSet<String>();
+		peakHeap   = new AtomicLong();
+		stages     = new ArrayList<Stage>();
+
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP && pool.isValid())
+				heapPools.add(pool.getName());
+		}
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+			if(collector instanceof NotificationEmitter)
+				((NotificationEmitter) collector).addNotificationListener(this::collected, null, null);
+		}
+	}
+
+	/**
+	 * Samples the heap usage just before a garbage collection, reported on a thread of the JVM.
+	 */
+	private void collected(Notification notification, Object handback){
+		if(!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+		long used = 0;
+		for(Map.Entry<String,MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()){
+			if(heapPools.contains(pool.getKey())) used += pool.getValue().getUsed();
+		}
+		sample(used);
+	}
+
+	private void sample(long used){
+		peakHeap.accumulateAndGet(used, Math::max);
+	}
+
+	/**
+	 * Starts timing a stage. A stage that is still running is stopped first.
+	 * @param name the name of the stage
+	 */
+	public void start(String name){
+		if(name == null) throw new NullPointerException();
+
+		if(current != null) stop();
+
+		peakHeap.set(memory.getHeapMemoryUsage().getUsed());
+
+		current = name;
+		event   = new StageEvent();
+		event.begin();
+
+		startAllocated = threadAllocatedBytes();
+		startCpu       = threadCpuNanos();
+		startWall      = System.nanoTime();
+	}
+
+	/**
+	 * Stops the running stage and records it.
+	 * @return the measurements of the stage
+	 */
+	public Stage stop(){
+		if(current == null) throw new IllegalStateException();
+
+		long wall      = System.nanoTime() - startWall;
+		long cpu       = sinceStart(startCpu, threadCpuNanos());
+		long allocated = sinceStart(startAllocated, threadAllocatedBytes());
+
+		sample(memory.getHeapMemoryUsage().getUsed());
+
+		Stage stage = new Stage(current,
+		                        wall,
+		                        cpu,
+		                        allocated,
+		                        peakHeap.get());
+		stages.add(stage);
+
+		event.end();
+		if(event.shouldCommit()){
+			event.graph     = graph;
+			event.stage     = stage.name;
+			event.cpuTime   = stage.cpuNanos;
+			event.allocated = stage.allocatedBytes;
+			event.peakHeap  = stage.peakHeapBytes;
+			event.commit();
+		}
+
+		current = null;
+		event   = null;
+		return stage;
+	}
+
+	/**
+	 * Returns the finished stages in the order they ran.
+	 * @return the finished stages
+	 */
+	public List<Stage> stages(){
+		return Collections.unmodifiableList(stages);
+	}
+
+	/**
+	 * Formats the finished stages as a fixed width table.
+	 * @return the summary table
+	 */
+	public String toTable(){
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%-22s %12s %12s %14s %14s%n", "STAGE", "WALL ms", "CPU ms", "ALLOCATED", "PEAK HEAP"));
+
+		long wall = 0;
+		for(Stage s : stages){
+			out.append(String.format("%-22s %12.1f %12s %14s %14s%n", s.name, s.wallNanos / 1e6,
+			           s.cpuNanos < 0 ? "n/a" : String.format("%.1f", s.cpuNanos / 1e6),
+			           bytes(s.allocatedBytes), bytes(s.peakHeapBytes)));
+			wall += s.wallNanos;
+		}
+		out.append(String.format("%-22s %12.1f%n", "TOTAL", wall / 1e6));
+		return out.toString();
+	}
+
+	/**
+	 * Formats the finished stages as a JSON object.
+	 * @return the JSON summary
+	 */
+	public String toJson(){
+		StringBuilder out = new StringBuilder();
+		out.append("{\"graph\":\"").append(escape(graph)).append("\",\"stages\":[");
+		for(int i = 0; i < stages.size(); i++){
+			Stage s = stages.get(i);
+			if(i > 0) out.append(',');
+			out.append("{\"stage\":\"").append(escape(s.name)).append('"')
+			   .append(",\"wallNanos\":").append(s.wallNanos)
+			   .append(",\"cpuNanos\":").append(s.cpuNanos)
+			   .append(",\"allocatedBytes\":").append(s.allocatedBytes)
+			   .append(",\"peakHeapBytes\":").append(s.peakHeapBytes)
+			   .append('}');
+		}
+		out.append("]}");
+		return out.toString();
+	}
+
+	/**
+	 * Returns the CPU time of every live thread by thread id, or null if the JVM does not measure it.
+	 */
+	private HashMap<Long,Long> threadCpuNanos(){
+		if(!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) return null;
+
+		HashMap<Long,Long> cpu = new HashMap<Long,Long>();
+		for(long id : threads.getAllThreadIds()){
+			long nanos = threads.getThreadCpuTime(id);
+			if(nanos >= 0) cpu.put(id, nanos);
+		}
+		return cpu;
+	}
+
+	/**
+	 * Returns the bytes allocated by every live thread by thread id, or null if the JVM does not measure them.
+	 */
+	private HashMap<Long,Long> threadAllocatedBytes(){
+		if(!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+
+		com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+		if(!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return null;
+
+		long[] ids   = sun.getAllThreadIds();
+		long[] bytes = sun.getThreadAllocatedBytes(ids);
+		HashMap<Long,Long> allocated = new HashMap<Long,Long>();
+		for(int i = 0; i < ids.length; i++){
+			if(bytes[i] >= 0) allocated.put(ids[i], bytes[i]);
+		}
+		return allocated;
+	}
+
+	/**
+	 * Returns the growth of the per thread counters of the live threads from start to end, a thread started
+	 * in between counting from zero; -1 if the JVM does not measure them.
+	 */
+	private static long sinceStart(HashMap<Long,Long> start, HashMap<Long,Long> end){
+		if(start == null || end == null) return -1;
+
+		long total = 0;
+		for(Long id : end.keySet()){
+			Long before = start.get(id);
+			total += end.get(id) - (before == null ? 0 : before);
+		}
+		return total;
+	}
+
+	private static String bytes(long n){
+		if(n < 0)         return "n/a";
+		if(n < 1L << 10) return n + " B";
+		if(n < 1L << 20) return String.format("%.1f KB", n / 1024.0);
+		if(n < 1L << 30) return String.format("%.1f MB", n / (1024.0 * 1024));
+		return String.format("%.2f GB", n / (1024.0 * 1024 * 1024));
+	}
+
+	static String escape(String s){
+		StringBuilder out = new StringBuilder();
+		for(int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') out.append('\\').append(c);
+			else if(c < 0x20)         out.append(String.format("\\u%04x", (int) c));
+			else                      out.append(c);
+		}
+		return out.toString();
+	}
+}
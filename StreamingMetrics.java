@@ -0,0 +1,281 @@
+package networkmetrics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Keeps the degree, density and reciprocity metrics of a growing graph up to date as arcs arrive, so that an
+ * append-only edge log does not have to be reloaded every time it changes. Every arc insertion or expiry updates
+ * the counters in constant time: the in- and out-degree histograms (from which the minimum and maximum degrees
+ * are read) and the number of reciprocated arcs.
+ *
+ * An optional sliding window expires the oldest arcs once more than a number of arcs have arrived after them,
+ * or once they are older than a number of milliseconds. An arc that arrives again while it is in the window is
+ * refreshed rather than duplicated, and stays until its last arrival expires. Vertices that were only created by
+ * arcs are removed when their last arc expires; declared vertices stay.
+ *
+ * The metrics match the ones the Driver computes on the whole file: a self loop counts as a reciprocated arc.
+ */
+public class StreamingMetrics {
+
+	/**
+	 * The metrics at one point of the stream.
+	 */
+	public static class Snapshot {
+		public final long   time;
+		public final int    vertices;
+		public final int    arcs;
+		public final double density;
+		public final double reciprocity;
+		public final int    minInDegree;
+		public final int    maxInDegree;
+		public final int    minOutDegree;
+		public final int    maxOutDegree;
+		public final double averageDegree;
+		public final long   arrived;
+		public final long   expired;
+
+		Snapshot(long time, int vertices, int arcs, int reciprocated, long[] in, long[] out, long arrived, long expired){
+			this.time     = time;
+			this.vertices = vertices;
+			this.arcs     = arcs;
+			this.arrived  = arrived;
+			this.expired  = expired;
+			density       = vertices < 2 ? 0 : (double) arcs / ((double) vertices * (vertices - 1));
+			reciprocity   = arcs == 0 ? 0 : (double) reciprocated / arcs;
+			averageDegree = vertices == 0 ? 0 : (double) arcs / vertices;
+			minInDegree   = min(in);
+			maxInDegree   = max(in);
+			minOutDegree  = min(out);
+			maxOutDegree  = max(out);
+		}
+
+		private static int min(long[] histogram){
+			for(int d = 0; d < histogram.length; d++) if(histogram[d] > 0) return d;
+			return 0;
+		}
+
+		private static int max(long[] histogram){
+			for(int d = histogram.length - 1; d >= 0; d--) if(histogram[d] > 0) return d;
+			return 0;
+		}
+
+		@Override
+		public String toString(){
+			return "|V| = "+vertices+", |E| = "+arcs+", density ~= "+density+", reciprocity ~= "+reciprocity
+			       +", in-degree "+minInDegree+".."+maxInDegree+", out-degree "+minOutDegree+".."+maxOutDegree
+			       +", average degree ~= "+averageDegree+" ("+arrived+" arcs arrived, "+expired+" expired)";
+		}
+	}
+
+	/**
+	 * One arrival of an arc in the window.
+	 */
+	private static class Arrival {
+		final String source;
+		final String target;
+		final long   time;
+
+		Arrival(String source, String target, long time){
+			this.source = source;
+			this.target = target;
+			this.time   = time;
+		}
+	}
+
+	private HashMapGraph<String,String>    graph;
+	private HashSet<String>                declared;
+	private HashMap<String,int[]>          pending;
+	private final ArrayDeque<Arrival>      window;
+	private long[]                         inHistogram;
+	private long[]                         outHistogram;
+	private int                            reciprocated;
+	private long                           arrived;
+	private long                           expired;
+	private int                            windowArcs;
+	private long                           windowMillis;
+	private boolean                        versioning;
+
+	/**
+	 * Constructs the metrics of an empty graph, without a window.
+	 */
+	public StreamingMetrics(){
+		window = new ArrayDeque<Arrival>();
+		clear();
+	}
+
+	/**
+	 * Removes every vertex and arc and resets the counters.
+	 */
+	public void clear(){
+		graph        = new HashMapGraph<String,String>();
+		graph.setVersioning(versioning);
+		declared     = new HashSet<String>();
+		pending      = new HashMap<String,int[]>();
+		inHistogram  = new long[16];
+		outHistogram = new long[16];
+		reciprocated = 0;
+		arrived      = 0;
+		expired      = 0;
+		window.clear();
+	}
+
+	/**
+	 * Keeps only the arcs among the last arrivals.
+	 * @param windowArcs the number of arrivals kept, 0 for all
+	 */
+	public void setWindowArcs(int windowArcs){
+		if(windowArcs < 0) throw new IllegalArgumentException();
+
+		this.windowArcs = windowArcs;
+	}
+
+	/**
+	 * Keeps only the arcs that arrived in the last milliseconds, as of the latest call to insertArc or expire.
+	 * @param windowMillis the length of the window, 0 for no limit
+	 */
+	public void setWindowMillis(long windowMillis){
+		if(windowMillis < 0) throw new IllegalArgumentException();
+
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Keeps the published versions of the graph, so that other threads can read snapshots of it while arcs
+	 * arrive. The versions start over with every call to clear.
+	 * @param versioning whether to keep the versions
+	 */
+	public void setVersioning(boolean versioning){
+		this.versioning = versioning;
+		graph.setVersioning(versioning);
+	}
+
+	/**
+	 * Returns the versions of the graph, to publish and read its snapshots.
+	 * @return the versions, null if versioning is off
+	 */
+	public GraphVersions<String,String> versions(){
+		return graph.versions();
+	}
+
+	/**
+	 * Returns the live graph. It must not be changed other than through this object.
+	 * @return the graph
+	 */
+	public Graph<String,String> graph(){
+		return graph;
+	}
+
+	private static long[] count(long[] histogram, int degree, int change){
+		if(degree >= histogram.length) histogram = Arrays.copyOf(histogram, Math.max(degree + 1, histogram.length * 2));
+		histogram[degree] += change;
+		return histogram;
+	}
+
+	private void addVertex(String key){
+		graph.insertVertex(key);
+		inHistogram  = count(inHistogram, 0, 1);
+		outHistogram = count(outHistogram, 0, 1);
+	}
+
+	/**
+	 * Declares a vertex, such as one from the vertex section of a VNA file. Declared vertices never expire.
+	 * @param key the vertex key
+	 */
+	public void insertVertex(String key){
+		if(key == null) throw new NullPointerException();
+
+		if(!graph.vertexExists(key)) addVertex(key);
+		declared.add(key);
+	}
+
+	/**
+	 * Applies the arrival of an arc, creating its end vertices if needed, then expires the arcs that fall out of
+	 * the window.
+	 * @param source the source key
+	 * @param target the target key
+	 * @param time the arrival time in milliseconds
+	 */
+	public void insertArc(String source, String target, long time){
+		if(source == null || target == null) throw new NullPointerException();
+
+		arrived++;
+		if(windowArcs > 0 || windowMillis > 0){
+			int[] arrivals = pending.get(source+'\t'+target);
+			if(arrivals == null) pending.put(source+'\t'+target, arrivals = new int[1]);
+			arrivals[0]++;
+			window.addLast(new Arrival(source, target, time));
+		}
+
+		if(!graph.vertexExists(source)) addVertex(source);
+		if(!graph.vertexExists(target)) addVertex(target);
+		if(!graph.arcExists(source, target)){
+			outHistogram = count(outHistogram, graph.outDegree(source), -1);
+			outHistogram = count(outHistogram, graph.outDegree(source) + 1, 1);
+			inHistogram  = count(inHistogram, graph.inDegree(target), -1);
+			inHistogram  = count(inHistogram, graph.inDegree(target) + 1, 1);
+			graph.insertArc(source, target);
+			if(source.equals(target))                 reciprocated += 1;
+			else if(graph.arcExists(target, source))  reciprocated += 2;
+		}
+
+		expire(time);
+	}
+
+	private void removeArc(String source, String target){
+		outHistogram[graph.outDegree(source)]--;
+		outHistogram[graph.outDegree(source) - 1]++;
+		inHistogram[graph.inDegree(target)]--;
+		inHistogram[graph.inDegree(target) - 1]++;
+		graph.removeArc(source, target);
+		if(source.equals(target))                 reciprocated -= 1;
+		else if(graph.arcExists(target, source))  reciprocated -= 2;
+
+		removeIfIsolated(source);
+		if(!target.equals(source)) removeIfIsolated(target);
+	}
+
+	private void removeIfIsolated(String key){
+		if(declared.contains(key) || graph.inDegree(key) > 0 || graph.outDegree(key) > 0) return;
+
+		graph.removeVertex(key);
+		inHistogram[0]--;
+		outHistogram[0]--;
+	}
+
+	/**
+	 * Expires the arcs that are out of the window at a time.
+	 * @param now the current time in milliseconds
+	 * @return the number of arrivals expired
+	 */
+	public int expire(long now){
+		int count = 0;
+		while(!window.isEmpty()){
+			Arrival oldest = window.peekFirst();
+			boolean tooMany = windowArcs > 0 && window.size() > windowArcs;
+			boolean tooOld  = windowMillis > 0 && now - oldest.time > windowMillis;
+			if(!tooMany && !tooOld) break;
+
+			window.removeFirst();
+			count++;
+			String key = oldest.source+'\t'+oldest.target;
+			if(--pending.get(key)[0] == 0){
+				pending.remove(key);
+				removeArc(oldest.source, oldest.target);
+				expired++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the current metrics.
+	 * @param time the time of the snapshot in milliseconds
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot(long time){
+		return new Snapshot(time, graph.vertexCount(), graph.arcCount(), reciprocated, inHistogram, outHistogram, arrived, expired);
+	}
+}
@@ -0,0 +1,244 @@
+package networkmetrics;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Computes the strongly connected components of a CompactGraph with an iterative version of Tarjan's algorithm,
+ * so that deep graphs cannot overflow the call stack, and builds the condensation DAG over the components.
+ *
+ * Components are numbered in the order Tarjan's algorithm completes them, which is a reverse topological order:
+ * every arc of the condensation goes from a higher component id to a lower one.
+ */
+public class StronglyConnectedComponents {
+
+	private final int[] component;
+	private final int[] memberOffsets;
+	private final int[] members;
+	private final int[] dagOffsets;
+	private final int[] dagTargets;
+	private final int   count;
+	private final int   largest;
+
+	/**
+	 * Computes the components of a graph.
+	 * @param graph the graph
+	 */
+	public StronglyConnectedComponents(CompactGraph<?> graph){
+		if(graph == null) throw new NullPointerException();
+
+		int   n       = graph.vertexCount();
+		int[] offsets = graph.outOffsets;
+		int[] targets = graph.outTargets;
+
+		component = new int[n];
+		Arrays.fill(component, -1);
+
+		int[]     index   = new int[n];
+		int[]     low     = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[]     stack   = new int[n];
+		int[]     callV   = new int[n];
+		int[]     callArc = new int[n];
+		Arrays.fill(index, -1);
+
+		int next = 0, top = 0, c = 0;
+
+		for(int root = 0; root < n; root++){
+			if(index[root] != -1) continue;
+
+			int depth = 0;
+			callV[0]   = root;
+			callArc[0] = offsets[root];
+			index[root] = low[root] = next++;
+			stack[top++] = root;
+			onStack[root] = true;
+
+			while(depth >= 0){
+				int v = callV[depth];
+
+				if(callArc[depth] < offsets[v + 1]){
+					int w = targets[callArc[depth]++];
+
+					if(index[w] == -1){
+						index[w] = low[w] = next++;
+						stack[top++] = w;
+						onStack[w] = true;
+						depth++;
+						callV[depth]   = w;
+						callArc[depth] = offsets[w];
+					}
+					else if(onStack[w] && index[w] < low[v]){
+						low[v] = index[w];
+					}
+					continue;
+				}
+
+				// all arcs of v are done, v is the root of a component if low equals index
+				if(low[v] == index[v]){
+					int w;
+					do{
+						w = stack[--top];
+						onStack[w] = false;
+						component[w] = c;
+					}while(w != v);
+					c++;
+				}
+
+				depth--;
+				if(depth >= 0){
+					int parent = callV[depth];
+					if(low[v] < low[parent]) low[parent] = low[v];
+				}
+			}
+		}
+		count = c;
+
+		memberOffsets = new int[count + 1];
+		for(int v = 0; v < n; v++)
+			memberOffsets[component[v] + 1]++;
+		for(int i = 0; i < count; i++)
+			memberOffsets[i + 1] += memberOffsets[i];
+
+		members = new int[n];
+		int[] fill = Arrays.copyOf(memberOffsets, count);
+		for(int v = 0; v < n; v++)
+			members[fill[component[v]]++] = v;
+
+		int best = -1;
+		for(int i = 0; i < count; i++){
+			if(best == -1 || size(i) > size(best)) best = i;
+		}
+		largest = best;
+
+		// condensation arcs, deduplicated with a marker holding the last source component that used each target
+		int[] mark = new int[count];
+		Arrays.fill(mark, -1);
+
+		dagOffsets = new int[count + 1];
+		for(int from = 0; from < count; from++){
+			for(int i = memberOffsets[from]; i < memberOffsets[from + 1]; i++){
+				int u = members[i];
+				for(int a = offsets[u]; a < offsets[u + 1]; a++){
+					int to = component[targets[a]];
+					if(to != from && mark[to] != from){
+						mark[to] = from;
+						dagOffsets[from + 1]++;
+					}
+				}
+			}
+		}
+		for(int i = 0; i < count; i++)
+			dagOffsets[i + 1] += dagOffsets[i];
+
+		Arrays.fill(mark, -1);
+		dagTargets = new int[dagOffsets[count]];
+		for(int from = 0; from < count; from++){
+			int k = dagOffsets[from];
+			for(int i = memberOffsets[from]; i < memberOffsets[from + 1]; i++){
+				int u = members[i];
+				for(int a = offsets[u]; a < offsets[u + 1]; a++){
+					int to = component[targets[a]];
+					if(to != from && mark[to] != from){
+						mark[to] = from;
+						dagTargets[k++] = to;
+					}
+				}
+			}
+			Arrays.sort(dagTargets, dagOffsets[from], k);
+		}
+	}
+
+	/**
+	 * Returns the number of strongly connected components.
+	 * @return the number of components
+	 */
+	public int componentCount(){
+		return count;
+	}
+
+	/**
+	 * Returns the component id of a vertex.
+	 * @param v the dense vertex id
+	 * @return the component id
+	 */
+	public int component(int v){
+		return component[v];
+	}
+
+	/**
+	 * Returns the number of vertices in a component.
+	 * @param c the component id
+	 * @return the size of the component
+	 */
+	public int size(int c){
+		return memberOffsets[c + 1] - memberOffsets[c];
+	}
+
+	/**
+	 * Returns the dense ids of the vertices in a component.
+	 * @param c the component id
+	 * @return a new array holding the members of the component
+	 */
+	public int[] members(int c){
+		return Arrays.copyOfRange(members, memberOffsets[c], memberOffsets[c + 1]);
+	}
+
+	/**
+	 * Returns the id of the largest component, or -1 for an empty graph.
+	 * @return the id of the largest component
+	 */
+	public int largestComponent(){
+		return largest;
+	}
+
+	/**
+	 * Returns the components that component c has a condensation arc to.
+	 * @param c the component id
+	 * @return a new sorted array of component ids
+	 */
+	public int[] successors(int c){
+		return Arrays.copyOfRange(dagTargets, dagOffsets[c], dagOffsets[c + 1]);
+	}
+
+	/**
+	 * Returns the number of condensation arcs leaving component c.
+	 * @param c the component id
+	 * @return the out-degree of c in the condensation DAG
+	 */
+	public int successorCount(int c){
+		return dagOffsets[c + 1] - dagOffsets[c];
+	}
+
+	/**
+	 * Returns the number of arcs in the condensation DAG.
+	 * @return the number of condensation arcs
+	 */
+	public int condensationArcCount(){
+		return dagTargets.length;
+	}
+
+	/**
+	 * Returns TRUE if the vertex can reach at least one other vertex, otherwise FALSE. A vertex reaches nothing
+	 * exactly when it is alone in its component and the component has no condensation arcs.
+	 * @param v the dense vertex id
+	 * @return TRUE if v reaches another vertex
+	 */
+	public boolean reachesOthers(int v){
+		int c = component[v];
+		return size(c) > 1 || successorCount(c) > 0;
+	}
+
+	/**
+	 * Returns the number of components of each size.
+	 * @return a map from component size to the number of components of that size, by increasing size
+	 */
+	public TreeMap<Integer,Integer> sizeDistribution(){
+		TreeMap<Integer,Integer> distribution = new TreeMap<Integer,Integer>();
+		for(int c = 0; c < count; c++){
+			Integer old = distribution.get(size(c));
+			distribution.put(size(c), old == null ? 1 : old + 1);
+		}
+		return distribution;
+	}
+}
@@ -0,0 +1,374 @@
+package networkmetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of the subgraph induced by a set of vertices of a base graph. Nothing of the base graph is
+ * copied: adjacency queries are answered by the base graph and filtered by the vertex set, so every metric that
+ * works on a Graph works on the view. Only the degrees inside the view are computed when the view is created.
+ *
+ * The vertex set can be any Set; a VertexSet keeps it as a bitset over the ids of a CompactGraph. The factories
+ * build the views of the vertices with a given annotation value and of the k-hop ego network of a vertex.
+ *
+ * The structure of the view cannot be changed. Vertex and arc annotations are stored in the base graph.
+ * The base graph must not be changed structurally while the view is in use.
+ *
+ * @param <Key> The objects for the vertices and edges
+ * @param <Data> the data that is stored for each vertex and edge
+ */
+public class SubgraphView<Key extends Comparable<Key>, Data> implements Graph<Key, Data> {
+
+	/**
+	 * Iterates an arc iterator of the base graph, skipping arcs with an end outside the view.
+	 */
+	private class FilterIterator implements Iterator<ArrayList<Key>> {
+		private final Iterator<ArrayList<Key>> base;
+		private ArrayList<Key>                 next;
+
+		public FilterIterator(Iterator<ArrayList<Key>> base){
+			this.base = base;
+			advance();
+		}
+
+		private void advance(){
+			next = null;
+			while(base.hasNext()){
+				ArrayList<Key> arc = base.next();
+				if(members.contains(arc.get(0)) && members.contains(arc.get(1))){
+					next = arc;
+					return;
+				}
+			}
+		}
+
+		public boolean hasNext(){
+			return next != null;
+		}
+
+		public ArrayList<Key> next(){
+			if(next == null) throw new NoSuchElementException();
+
+			ArrayList<Key> arc = next;
+			advance();
+			if(transpose){
+				ArrayList<Key> reversed = new ArrayList<Key>(2);
+				reversed.add(arc.get(1));
+				reversed.add(arc.get(0));
+				return reversed;
+			}
+			return arc;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Iterates the arcs of the view: the filtered out-arcs of every member in turn.
+	 */
+	private class ArcIterator implements Iterator<ArrayList<Key>> {
+		private final Iterator<Key>      vertices;
+		private Iterator<ArrayList<Key>> arcs;
+
+		public ArcIterator(){
+			vertices = members.iterator();
+			advance();
+		}
+
+		private void advance(){
+			while((arcs == null || !arcs.hasNext()) && vertices.hasNext())
+				arcs = outAdjacentVertices(vertices.next());
+		}
+
+		public boolean hasNext(){
+			return arcs != null && arcs.hasNext();
+		}
+
+		public ArrayList<Key> next(){
+			if(!hasNext()) throw new NoSuchElementException();
+
+			ArrayList<Key> arc = arcs.next();
+			advance();
+			return arc;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final Graph<Key,Data>       base;
+	private final Set<Key>              members;
+	private final HashMap<Key,Integer>  inDegrees;
+	private final HashMap<Key,Integer>  outDegrees;
+	private int                         arcCount;
+	private boolean                     transpose;
+
+	/**
+	 * Constructs the view of the subgraph of base induced by the given vertices.
+	 * @param base the base graph
+	 * @param vertices the vertices of the view; every one must exist in base
+	 */
+	public SubgraphView(Graph<Key,Data> base, Set<Key> vertices){
+		if(base == null || vertices == null) throw new NullPointerException();
+
+		this.base  = base;
+		members    = Collections.unmodifiableSet(vertices);
+		inDegrees  = new HashMap<Key,Integer>(vertices.size() * 2);
+		outDegrees = new HashMap<Key,Integer>(vertices.size() * 2);
+
+		for(Key key : vertices){
+			if(!base.vertexExists(key)) throw new NoSuchElementException();
+			inDegrees.put(key, 0);
+			outDegrees.put(key, 0);
+		}
+
+		for(Key key : vertices){
+			Iterator<ArrayList<Key>> out = base.outAdjacentVertices(key);
+			int degree = 0;
+			while(out.hasNext()){
+				Key target = CompactGraph.neighbour(out.next(), key);
+				if(members.contains(target)){
+					degree++;
+					inDegrees.put(target, inDegrees.get(target) + 1);
+				}
+			}
+			outDegrees.put(key, degree);
+			arcCount += degree;
+		}
+	}
+
+	/**
+	 * Constructs the view of the vertices whose annotation equals a value, such as the vertices of one "source"
+	 * category of a VNA file. Vertices without the annotation are left out.
+	 * @param base the base graph
+	 * @param property the annotation property
+	 * @param value the annotation value of the members
+	 * @return the view
+	 */
+	public static <Key extends Comparable<Key>, Data> SubgraphView<Key,Data> where(Graph<Key,Data> base, Object property, Object value){
+		if(base == null || property == null || value == null) throw new NullPointerException();
+
+		HashSet<Key>  members  = new HashSet<Key>();
+		Iterator<Key> vertices = base.vertices();
+		while(vertices.hasNext()){
+			Key key = vertices.next();
+			try{
+				if(value.equals(base.getAnnotation(key, property))) members.add(key);
+			}
+			catch(NoSuchElementException e){
+				// not annotated
+			}
+		}
+		return new SubgraphView<Key,Data>(base, members);
+	}
+
+	/**
+	 * Constructs the view of the ego network of a vertex: the vertices within a number of hops of it, found with
+	 * a depth limited DirectionOptimizingBfs over a compact snapshot of the base graph.
+	 * @param base the base graph
+	 * @param compact a compact snapshot of base
+	 * @param center the ego
+	 * @param hops the largest distance from the ego
+	 * @param direction OUT to follow arcs from the ego, IN to follow them towards it, TOTAL for both
+	 * @return the view
+	 */
+	public static <Key extends Comparable<Key>, Data> SubgraphView<Key,Data> ego(Graph<Key,Data> base, CompactGraph<Key> compact,
+	                                                                            Key center, int hops, CoreDecomposition.Degree direction){
+		if(base == null || compact == null || center == null || direction == null) throw new NullPointerException();
+
+		int id = compact.id(center);
+		if(id == -1) throw new NoSuchElementException();
+
+		DirectionOptimizingBfs bfs = new DirectionOptimizingBfs(compact);
+		bfs.setDirection(direction);
+		bfs.setMaxDepth(hops);
+		bfs.search(id);
+		return new SubgraphView<Key,Data>(base, VertexSet.of(compact, bfs.reached()));
+	}
+
+	/**
+	 * Returns the base graph of the view.
+	 * @return the base graph
+	 */
+	public Graph<Key,Data> base(){
+		return base;
+	}
+
+	public int vertexCount(){
+		return members.size();
+	}
+
+	public int arcCount(){
+		return arcCount;
+	}
+
+	public Iterator<ArrayList<Key>> arcs(){
+		return new ArcIterator();
+	}
+
+	public Iterator<Key> vertices(){
+		return members.iterator();
+	}
+
+	public boolean arcExists(Key sourceKey, Key destinationKey){
+		if(sourceKey == null || destinationKey == null) throw new NullPointerException();
+
+		if(!members.contains(sourceKey) || !members.contains(destinationKey)) return false;
+
+		if(!transpose) return base.arcExists(sourceKey, destinationKey);
+		else           return base.arcExists(destinationKey, sourceKey);
+	}
+
+	public boolean vertexExists(Key vertexKey){
+		if(vertexKey == null) throw new NullPointerException();
+
+		return members.contains(vertexKey);
+	}
+
+	public int inDegree(Key vertexKey){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		return !transpose ? inDegrees.get(vertexKey) : outDegrees.get(vertexKey);
+	}
+
+	public int outDegree(Key vertexKey){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		return !transpose ? outDegrees.get(vertexKey) : inDegrees.get(vertexKey);
+	}
+
+	public Iterator<ArrayList<Key>> inAdjacentVertices(Key vertexKey){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		if(!transpose) return new FilterIterator(base.inAdjacentVertices(vertexKey));
+		else           return new FilterIterator(base.outAdjacentVertices(vertexKey));
+	}
+
+	public Iterator<ArrayList<Key>> outAdjacentVertices(Key vertexKey){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		if(!transpose) return new FilterIterator(base.outAdjacentVertices(vertexKey));
+		else           return new FilterIterator(base.inAdjacentVertices(vertexKey));
+	}
+
+	public Data getVertexData(Key vertexKey){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		return base.getVertexData(vertexKey);
+	}
+
+	public Data getArcData(Key sourceKey, Key destinationKey){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		return !transpose ? base.getArcData(sourceKey, destinationKey) : base.getArcData(destinationKey, sourceKey);
+	}
+
+	public Number getArcWeight(Key sourceKey, Key destinationKey){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		return !transpose ? base.getArcWeight(sourceKey, destinationKey) : base.getArcWeight(destinationKey, sourceKey);
+	}
+
+	public void insertVertex(Key vertexKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertVertex(Key vertexKey, Data vertexData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertArc(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void insertArc(Key sourceKey, Key destinationKey, Data arcData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setVertexData(Key vertexKey, Data vertexData){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setArcData(Key sourceKey, Key destinationKey, Data arcData){
+		throw new UnsupportedOperationException();
+	}
+
+	public Data removeVertex(Key vertexKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public Data removeArc(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	public void reverseDirection(Key sourceKey, Key destinationKey){
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Reverses the direction of all arcs of the view. The base graph is not changed.
+	 */
+	public void transposeGraph(){
+		transpose = !transpose;
+	}
+
+	public void setArcWeight(Key sourceKey, Key destinationKey, Number weight){
+		throw new UnsupportedOperationException();
+	}
+
+	public void setAnnotation(Key vertexKey, Object property, Object value){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		base.setAnnotation(vertexKey, property, value);
+	}
+
+	public void setAnnotation(Key sourceKey, Key destinationKey, Object property, Object value){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		if(!transpose) base.setAnnotation(sourceKey, destinationKey, property, value);
+		else           base.setAnnotation(destinationKey, sourceKey, property, value);
+	}
+
+	public Object getAnnotation(Key vertexKey, Object property){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		return base.getAnnotation(vertexKey, property);
+	}
+
+	public Object getAnnotation(Key sourceKey, Key destinationKey, Object property){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		return !transpose ? base.getAnnotation(sourceKey, destinationKey, property)
+		                  : base.getAnnotation(destinationKey, sourceKey, property);
+	}
+
+	public Object removeAnnotation(Key vertexKey, Object property){
+		if(!vertexExists(vertexKey)) throw new NoSuchElementException();
+
+		return base.removeAnnotation(vertexKey, property);
+	}
+
+	public Object removeAnnotation(Key sourceKey, Key destinationKey, Object property){
+		if(!arcExists(sourceKey, destinationKey)) throw new NoSuchElementException();
+
+		return !transpose ? base.removeAnnotation(sourceKey, destinationKey, property)
+		                  : base.removeAnnotation(destinationKey, sourceKey, property);
+	}
+
+	/**
+	 * Removes all values for the Property property in the base graph.
+	 */
+	public void clearAnnotations(Object property){
+		base.clearAnnotations(property);
+	}
+}
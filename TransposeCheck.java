@@ -0,0 +1,81 @@
+package networkmetrics;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Checks that the snapshots taken of a transposed HashMapGraph hold the same arcs as the snapshots of the same
+ * graph built with every arc reversed. The random graph has loops, reciprocated arcs and isolated vertices.
+ * The versioned snapshots are checked after arcs are also inserted into the transposed graph once it records them.
+ * Prints one line per check and exits with status 1 if any differs.
+ *
+ * Usage: java networkmetrics.TransposeCheck [VERTICES] [ARCS] [SEED]
+ */
+public class TransposeCheck {
+
+	public static void main(String[] args){
+		int  vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int  arcs     = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		long seed     = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+
+		Random random = new Random(seed);
+		HashMapGraph<String,String> transposed = new HashMapGraph<String,String>();
+		HashMapGraph<String,String> reversed   = new HashMapGraph<String,String>();
+		for(int v = 0; v < vertices; v++){
+			transposed.insertVertex(Integer.toString(v));
+			reversed.insertVertex(Integer.toString(v));
+		}
+		for(int i = 0; i < arcs; i++){
+			String source = Integer.toString(random.nextInt(vertices));
+			String target = random.nextInt(20) == 0 ? source : Integer.toString(random.nextInt(vertices));
+			if(transposed.arcExists(source, target)) continue;
+			transposed.insertArc(source, target);
+			reversed.insertArc(target, source);
+		}
+		transposed.transposeGraph();
+
+		HashSet<String> half = new HashSet<String>();
+		for(int v = 0; v < vertices; v += 2) half.add(Integer.toString(v));
+
+		boolean same = check("CompactGraph.of", arcs(CompactGraph.of(transposed)), arcs(CompactGraph.of(reversed)));
+		same &= check("SubgraphView", arcs(CompactGraph.of(new SubgraphView<String,String>(transposed, half))),
+		              arcs(CompactGraph.of(new SubgraphView<String,String>(reversed, half))));
+		same &= check("CompressedGraph.of", arcs(CompactGraph.of(CompressedGraph.of(transposed))),
+		              arcs(CompactGraph.of(CompressedGraph.of(reversed))));
+
+		transposed.setVersioning(true);
+		for(int i = 0; i < arcs / 10; i++){
+			String source = Integer.toString(random.nextInt(vertices));
+			String target = Integer.toString(random.nextInt(vertices));
+			if(transposed.arcExists(source, target)) continue;
+			transposed.insertArc(source, target);
+			reversed.insertArc(source, target);
+		}
+		transposed.versions().publish();
+		GraphSnapshot<String,String> snapshot = transposed.versions().snapshot();
+		same &= check("GraphSnapshot.compact", arcs(snapshot.compact()), arcs(CompactGraph.of(reversed)));
+		same &= check("GraphSnapshot", arcs(CompactGraph.of(snapshot)), arcs(CompactGraph.of(reversed)));
+		if(!same) System.exit(1);
+	}
+
+	private static boolean check(String name, TreeSet<String> found, TreeSet<String> expected){
+		boolean same = found.equals(expected);
+		System.out.println(name + (same ? " ok" : " DIFFERS") + ": " + found.size() / 2 + " arcs");
+		return same;
+	}
+
+	/**
+	 * Returns the out- and in-lists of a snapshot as "out s t" and "in t s" lines in key space.
+	 */
+	static TreeSet<String> arcs(CompactGraph<String> graph){
+		TreeSet<String> arcs = new TreeSet<String>();
+		for(int v = 0; v < graph.vertexCount(); v++){
+			for(int i = graph.outOffsets[v]; i < graph.outOffsets[v + 1]; i++)
+				arcs.add("out " + graph.key(v) + " " + graph.key(graph.outTargets[i]));
+			for(int i = graph.inOffsets[v]; i < graph.inOffsets[v + 1]; i++)
+				arcs.add("in " + graph.key(v) + " " + graph.key(graph.inSources[i]));
+		}
+		return arcs;
+	}
+}
@@ -0,0 +1,87 @@
+package networkmetrics;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector kernels of Intersection, on the jdk.incubator.vector API: compile and run with
+ * --add-modules jdk.incubator.vector. Only Intersection calls this class, and only when the module is present,
+ * so a JVM without the module never loads it.
+ *
+ * Both ranges are walked in blocks of LANES elements. A block of a is compared with every rotation of the
+ * current block of b, which finds all the common elements of the two blocks in LANES vector comparisons; the
+ * block whose last element is smaller is then done, since it can match nothing further in the other range
+ * (both when the last elements are equal). The remainders are merged by the scalar kernel.
+ *
+ * The blocks are 128 bits (4 ints) wide whatever the preferred species: the all-pairs comparison costs LANES
+ * compares per block, so wider blocks do quadratically more work for linearly more elements, and measured
+ * slower than the scalar merge on both sample networks.
+ */
+final class VectorIntersection {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_128;
+
+	static final int LANES = SPECIES.length();
+
+	private static final VectorShuffle<Integer>[] ROTATIONS = rotations();
+
+	private VectorIntersection(){}
+
+	private static VectorShuffle<Integer>[] rotations(){
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		VectorShuffle<Integer>[] rotations = new VectorShuffle[LANES];
+		for(int r = 0; r < LANES; r++) rotations[r] = VectorShuffle.iota(SPECIES, r, 1, true);
+		return rotations;
+	}
+
+	static String describe(){
+		return "IntVector x" + LANES;
+	}
+
+	/**
+	 * Returns the lanes of the a block that are equal to some lane of the b block.
+	 */
+	private static VectorMask<Integer> matches(IntVector va, IntVector vb){
+		VectorMask<Integer> mask = va.compare(VectorOperators.EQ, vb);
+		for(int r = 1; r < LANES; r++) mask = mask.or(va.compare(VectorOperators.EQ, vb.rearrange(ROTATIONS[r])));
+		return mask;
+	}
+
+	static int count(int[] a, int i, int aTo, int[] b, int j, int bTo){
+		int count = 0;
+		int aLast = aTo - LANES, bLast = bTo - LANES;
+		while(i <= aLast && j <= bLast){
+			IntVector va = IntVector.fromArray(SPECIES, a, i);
+			IntVector vb = IntVector.fromArray(SPECIES, b, j);
+			count += matches(va, vb).trueCount();
+
+			int x = a[i + LANES - 1], y = b[j + LANES - 1];
+			i += x <= y ? LANES : 0;
+			j += y <= x ? LANES : 0;
+		}
+		return count + Intersection.countScalar(a, i, aTo, b, j, bTo);
+	}
+
+	static int intersect(int[] a, int i, int aTo, int[] b, int j, int bTo, int[] out){
+		int k = 0;
+		int aLast = aTo - LANES, bLast = bTo - LANES;
+		while(i <= aLast && j <= bLast){
+			IntVector va = IntVector.fromArray(SPECIES, a, i);
+			IntVector vb = IntVector.fromArray(SPECIES, b, j);
+			VectorMask<Integer> mask = matches(va, vb);
+			int found = mask.trueCount();
+			if(found > 0){
+				va.compress(mask).intoArray(out, k, SPECIES.indexInRange(0, found));
+				k += found;
+			}
+
+			int x = a[i + LANES - 1], y = b[j + LANES - 1];
+			i += x <= y ? LANES : 0;
+			j += y <= x ? LANES : 0;
+		}
+		return Intersection.intersectScalar(a, i, aTo, b, j, bTo, out, k);
+	}
+}
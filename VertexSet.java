@@ -0,0 +1,94 @@
+package networkmetrics;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of vertex keys stored as a bitset over the dense ids of a CompactGraph. It takes one bit per
+ * vertex of the graph instead of a hash table entry per member, and is the vertex filter behind the subgraph
+ * and ego network views.
+ *
+ * @param <Key> the vertex keys
+ */
+public class VertexSet<Key extends Comparable<Key>> extends AbstractSet<Key> {
+
+	private final CompactGraph<Key> graph;
+	private final BitSet            members;
+	private final int               size;
+
+	/**
+	 * Constructs the set of the vertices whose ids are set in a bitset.
+	 * @param graph the graph that assigns the ids
+	 * @param members the ids of the members; the bitset is copied
+	 */
+	public VertexSet(CompactGraph<Key> graph, BitSet members){
+		if(graph == null || members == null) throw new NullPointerException();
+
+		if(members.length() > graph.vertexCount()) throw new IllegalArgumentException();
+
+		this.graph   = graph;
+		this.members = (BitSet) members.clone();
+		size         = members.cardinality();
+	}
+
+	/**
+	 * Constructs the set of the vertices with the given ids.
+	 * @param graph the graph that assigns the ids
+	 * @param ids the ids of the members
+	 * @return the set
+	 */
+	public static <Key extends Comparable<Key>> VertexSet<Key> of(CompactGraph<Key> graph, int[] ids){
+		if(ids == null) throw new NullPointerException();
+
+		BitSet members = new BitSet(graph.vertexCount());
+		for(int id : ids){
+			if(id < 0 || id >= graph.vertexCount()) throw new IllegalArgumentException();
+			members.set(id);
+		}
+		return new VertexSet<Key>(graph, members);
+	}
+
+	/**
+	 * Returns TRUE if the vertex with the given id is a member.
+	 * @param id the dense id
+	 * @return TRUE if the vertex is a member
+	 */
+	public boolean containsId(int id){
+		return members.get(id);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object key){
+		if(key == null) return false;
+
+		int id = graph.id((Key) key);
+		return id != -1 && members.get(id);
+	}
+
+	@Override
+	public int size(){
+		return size;
+	}
+
+	@Override
+	public Iterator<Key> iterator(){
+		return new Iterator<Key>(){
+			private int next = members.nextSetBit(0);
+
+			public boolean hasNext(){
+				return next != -1;
+			}
+
+			public Key next(){
+				if(next == -1) throw new NoSuchElementException();
+
+				Key key = graph.key(next);
+				next = members.nextSetBit(next + 1);
+				return key;
+			}
+		};
+	}
+}
@@ -0,0 +1,164 @@
+package networkmetrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Streams a Netdraw VNA file into a GraphSink one line at a time. The file starts with a vertex section
+ * ("*Node data" or "*Node properties" followed by a line of column names) and continues with a tie section
+ * ("*Tie data" followed by a line of column names). Fields are separated by whitespace.
+ */
+public class VnaReader {
+
+	private VnaReader(){}
+
+	/**
+	 * Reads a VNA file into a sink.
+	 * @param file the VNA file
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the file cannot be read or is not a VNA file
+	 */
+	public static void read(File file, GraphSink sink) throws IOException{
+		if(file == null || sink == null) throw new NullPointerException();
+
+		BufferedReader in = new BufferedReader(new FileReader(file), 1 << 16);
+		try{
+			read(in, sink);
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads VNA text into a sink.
+	 * @param in the VNA text
+	 * @param sink the receiver of the vertices and arcs
+	 * @throws IOException if the text cannot be read or is not VNA
+	 */
+	public static void read(BufferedReader in, GraphSink sink) throws IOException{
+		String line = in.readLine();
+		if(line == null || !isNodeHeader(line)) throw new IOException("Invalid VNA file");
+
+		String names = in.readLine();
+		sink.vertexProperties(names == null ? new String[0] : fields(names));
+
+		while((line = in.readLine()) != null && !isTieHeader(line)){
+			String[] fields = fields(line);
+			if(fields.length > 0) sink.vertex(fields);
+		}
+		if(line == null) return;
+
+		names = in.readLine();
+		sink.arcProperties(names == null ? new String[0] : fields(names));
+
+		while((line = in.readLine()) != null){
+			String[] fields = fields(line);
+			if(fields.length == 0) continue;
+			if(fields.length < 2) throw new IOException("Invalid tie: " + line);
+			sink.arc(fields);
+		}
+	}
+
+	/**
+	 * Loads a VNA file into a new HashMapGraph. Arcs with a third column get that value as their data. The other
+	 * vertex columns are stored as vertex annotations, with the lower case column name as the property and the
+	 * field as a String value; "source" in political-blogs.vna, for example.
+	 * @param file the VNA file
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a VNA file
+	 */
+	public static HashMapGraph<String,String> load(File file) throws IOException{
+		return load(file, new HashMapGraph<String,String>());
+	}
+
+	/**
+	 * Loads a VNA file into a graph, as load(File) does, so that the graph can be set up first; with its arc
+	 * index on, for example.
+	 * @param file the VNA file
+	 * @param graph the graph that receives the vertices and arcs
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a VNA file
+	 */
+	public static HashMapGraph<String,String> load(File file, final HashMapGraph<String,String> graph) throws IOException{
+		if(graph == null) throw new NullPointerException();
+
+		read(file, sink(graph, false));
+		return graph;
+	}
+
+	/**
+	 * Returns the sink that load reads into: arcs with a third field get it as their data, the other vertex fields
+	 * become annotations named by the lower case column names.
+	 * @param graph the graph that receives the vertices and arcs
+	 * @param dropDuplicates TRUE to skip an arc that is already in the graph instead of failing on it
+	 */
+	static GraphSink sink(final HashMapGraph<String,String> graph, final boolean dropDuplicates){
+		return new GraphSink(){
+			private String[] properties = new String[0];
+
+			public void vertexProperties(String[] names){
+				properties = new String[names.length];
+				for(int i = 0; i < names.length; i++) properties[i] = names[i].toLowerCase();
+			}
+
+			public void vertex(String[] fields){
+				graph.insertVertex(fields[0]);
+				for(int i = 1; i < fields.length && i < properties.length; i++)
+					graph.setAnnotation(fields[0], properties[i], fields[i]);
+			}
+
+			public void arcProperties(String[] names){}
+
+			public void arc(String[] fields){
+				if(dropDuplicates && graph.arcExists(fields[0], fields[1])) return;
+				if(fields.length == 2) graph.insertArc(fields[0], fields[1]);
+				else                   graph.insertArc(fields[0], fields[1], fields[2]);
+			}
+		};
+	}
+
+	static boolean isNodeHeader(String line){
+		String header = line.trim().toLowerCase();
+		return header.equals("*node data") || header.equals("*node properties");
+	}
+
+	static boolean isTieHeader(String line){
+		String header = line.trim().toLowerCase();
+		return header.equals("*tie data") || header.equals("*tie properties");
+	}
+
+	/**
+	 * Splits a line at runs of whitespace, without the regular expression machinery of String.split.
+	 */
+	static String[] fields(String line){
+		ArrayList<String> fields = null;
+		String first = null;
+		int n = line.length(), i = 0, count = 0;
+
+		while(i < n){
+			while(i < n && Character.isWhitespace(line.charAt(i))) i++;
+			if(i == n) break;
+			int start = i;
+			while(i < n && !Character.isWhitespace(line.charAt(i))) i++;
+			String field = line.substring(start, i);
+
+			if(count == 0) first = field;
+			else{
+				if(fields == null){
+					fields = new ArrayList<String>(4);
+					fields.add(first);
+				}
+				fields.add(field);
+			}
+			count++;
+		}
+
+		if(count == 0) return new String[0];
+		if(count == 1) return new String[]{ first };
+		return fields.toArray(new String[count]);
+	}
+}